@@ -0,0 +1,23 @@
+#!/bin/bash
+
+# Usage: ./bench.sh [-Dbench.setting=value ...] [MainClass]
+# Runs CounterBenchmarks by default, or another benchmark such as ContentionBenchmark.
+
+# Ensure out directory exists
+mkdir -p out
+
+# Compile the app and the benchmarks into out/
+javac -d out -cp "lib/*" src/*.java bench/*.java || exit 1
+
+# Splits JVM settings from the benchmark class name
+JVM_OPTS=()
+MAIN=CounterBenchmarks
+for arg in "$@"; do
+    case "$arg" in
+        -*) JVM_OPTS+=("$arg") ;;
+        *) MAIN="$arg" ;;
+    esac
+done
+
+# Runs the benchmark with a fixed heap so runs are comparable
+java -Xms2g -Xmx2g "${JVM_OPTS[@]}" -cp "out:lib/*" "$MAIN"
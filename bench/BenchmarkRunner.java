@@ -0,0 +1,237 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * BenchmarkRunner is a small benchmark harness for the word counter.
+ *
+ * Each benchmark runs a few warm-up iterations and then several measured
+ * iterations. For every benchmark it reports the best and average time per
+ * operation, the throughput, and what a gc profiler would show: bytes
+ * allocated per operation, the allocation rate, and the GC count and time.
+ * Allocation is measured on the calling thread, so multi-threaded benchmarks
+ * only report what the calling thread allocated.
+ *
+ * Results are printed as a table and can be written to a CSV file. If a
+ * baseline CSV from an earlier run is given, each result is compared against
+ * it and slowdowns beyond the tolerance are flagged as regressions.
+ *
+ * Settings (system properties):
+ * <pre>
+ *   bench.warmup     warm-up iterations (default 3)
+ *   bench.iterations measured iterations (default 5)
+ *   bench.filter     only run benchmarks whose name contains this text
+ *   bench.results    CSV file to write the results to
+ *   bench.baseline   CSV file of an earlier run to compare against
+ *   bench.tolerance  allowed slowdown against the baseline (default 0.10)
+ * </pre>
+ *
+ * @author Zak Sheikh
+ */
+public class BenchmarkRunner {
+
+    /**
+     * The code being measured.
+     */
+    public interface Body {
+
+        /**
+         * Runs one operation.
+         *
+         * @return Any value, which is kept so the work is not optimized away.
+         */
+        Object run() throws Exception;
+    }
+
+    /**
+     * Prepares fresh state before each operation, outside the measured time.
+     */
+    public interface Setup {
+        void run() throws Exception;
+    }
+
+    /** The measured result of one benchmark */
+    private static class Result {
+        String name;
+        long bytesPerOp;
+        double bestNanos;
+        double averageNanos;
+        double allocatedPerOp;
+        long gcCount;
+        long gcMillis;
+    }
+
+    private final int warmup = Integer.getInteger("bench.warmup", 3);
+    private final int iterations = Integer.getInteger("bench.iterations", 5);
+    private final String filter = System.getProperty("bench.filter", "");
+    private final List<Result> results = new ArrayList<>();
+
+    /** Keeps benchmark results alive so the JIT cannot drop the work */
+    private int sink;
+
+    /**
+     * Creates a runner and prints the table header.
+     */
+    public BenchmarkRunner() {
+        System.out.printf("%-44s %12s %12s %10s %14s %12s %8s %8s%n",
+            "benchmark", "best ms/op", "avg ms/op", "MB/s", "alloc B/op", "alloc MB/s", "gc", "gc ms");
+    }
+
+    /**
+     * Measures one benchmark.
+     *
+     * @param name       The name of the benchmark.
+     * @param bytesPerOp The number of input bytes each operation handles, for
+     *                   the MB/s column, or 0 if it does not apply.
+     * @param setup      Runs before each operation, outside the measurement.
+     * @param body       The operation to measure.
+     */
+    public void run(String name, long bytesPerOp, Setup setup, Body body) throws Exception {
+        if (!name.contains(filter)) {
+            return;
+        }
+        for (int i = 0; i < warmup; i++) {
+            setup.run();
+            sink += System.identityHashCode(body.run());
+        }
+
+        Result result = new Result();
+        result.name = name;
+        result.bytesPerOp = bytesPerOp;
+        result.bestNanos = Double.MAX_VALUE;
+        long totalNanos = 0;
+        long totalAllocated = 0;
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcMillis();
+        for (int i = 0; i < iterations; i++) {
+            setup.run();
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            sink += System.identityHashCode(body.run());
+            long elapsed = System.nanoTime() - start;
+            totalAllocated += allocatedBytes() - allocatedBefore;
+            totalNanos += elapsed;
+            result.bestNanos = Math.min(result.bestNanos, elapsed);
+        }
+        result.averageNanos = totalNanos / (double) iterations;
+        result.allocatedPerOp = totalAllocated / (double) iterations;
+        result.gcCount = gcCount() - gcCountBefore;
+        result.gcMillis = gcMillis() - gcTimeBefore;
+        results.add(result);
+        print(result);
+    }
+
+    /**
+     * Measures one benchmark that needs no setup.
+     */
+    public void run(String name, long bytesPerOp, Body body) throws Exception {
+        run(name, bytesPerOp, () -> { }, body);
+    }
+
+    /**
+     * Writes the results to the bench.results CSV file and compares them with
+     * the bench.baseline file, if either is set.
+     *
+     * @return false if any benchmark regressed against the baseline.
+     */
+    public boolean finish() throws IOException {
+        String resultsFile = System.getProperty("bench.results");
+        if (resultsFile != null) {
+            Path path = Paths.get(resultsFile);
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(path))) {
+                writer.println("benchmark,best_ns,avg_ns,alloc_bytes_per_op,gc_count,gc_ms");
+                for (Result r : results) {
+                    writer.printf(Locale.ROOT, "%s,%.0f,%.0f,%.0f,%d,%d%n",
+                        r.name, r.bestNanos, r.averageNanos, r.allocatedPerOp, r.gcCount, r.gcMillis);
+                }
+            }
+            System.out.println("Results saved to " + path);
+        }
+
+        String baselineFile = System.getProperty("bench.baseline");
+        if (baselineFile == null) {
+            return true;
+        }
+        double tolerance = Double.parseDouble(System.getProperty("bench.tolerance", "0.10"));
+        Map<String, Double> baseline = new HashMap<>();
+        for (String line : Files.readAllLines(Paths.get(baselineFile))) {
+            String[] fields = line.split(",");
+            if (fields.length > 1 && !fields[0].equals("benchmark")) {
+                baseline.put(fields[0], Double.parseDouble(fields[1]));
+            }
+        }
+        boolean ok = true;
+        System.out.println();
+        System.out.printf("%-44s %12s %12s %8s%n", "benchmark", "base ms/op", "best ms/op", "change");
+        for (Result r : results) {
+            Double before = baseline.get(r.name);
+            if (before == null) {
+                continue;
+            }
+            double change = r.bestNanos / before - 1;
+            boolean regressed = change > tolerance;
+            ok &= !regressed;
+            System.out.printf(Locale.ROOT, "%-44s %12.3f %12.3f %+7.1f%% %s%n", r.name, before / 1e6,
+                r.bestNanos / 1e6, change * 100, regressed ? "REGRESSION" : "");
+        }
+        return ok;
+    }
+
+    /**
+     * Prints one row of the results table.
+     */
+    private static void print(Result r) {
+        String throughput = r.bytesPerOp > 0
+            ? String.format(Locale.ROOT, "%.1f", r.bytesPerOp / (r.bestNanos / 1e9) / (1 << 20))
+            : "-";
+        double allocationRate = r.allocatedPerOp / (r.averageNanos / 1e9) / (1 << 20);
+        System.out.printf(Locale.ROOT, "%-44s %12.3f %12.3f %10s %14.0f %12.1f %8d %8d%n",
+            r.name, r.bestNanos / 1e6, r.averageNanos / 1e6, throughput,
+            r.allocatedPerOp, allocationRate, r.gcCount, r.gcMillis);
+    }
+
+    /**
+     * Returns the number of bytes the current thread has allocated so far.
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the number of collections so far, over all collectors.
+     */
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Returns the time spent collecting so far, over all collectors.
+     */
+    private static long gcMillis() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+}
@@ -0,0 +1,115 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+/**
+ * ContentionBenchmark measures how well word counting scales when many
+ * threads feed lines into one counter.
+ *
+ * It compares ConcurrentBookWordCounter against the single-threaded
+ * BookWordCounter guarded by one lock, at 1, 4, 16 and 64 threads. Every
+ * thread counts the lines of the sample books, so the total work grows with
+ * the thread count and a perfectly scaling counter keeps the same time per
+ * line.
+ *
+ * Usage (from the project root):
+ * <pre>
+ *   ./bench.sh ContentionBenchmark
+ * </pre>
+ *
+ * @author Zak Sheikh
+ */
+public class ContentionBenchmark {
+
+    /** Thread counts to measure */
+    private static final int[] THREADS = {1, 4, 16, 64};
+
+    /** Measured rounds per configuration, after one warm-up round */
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        List<String> lines = readLines("sample_inputs/PrideAndPrejudice.txt", "sample_inputs/TheGreatGatsby.txt");
+        System.out.printf("%-28s %8s %14s %14s%n", "counter", "threads", "ns/line", "lines/s");
+        for (int threads : THREADS) {
+            run("BookWordCounter (locked)", threads, lines, () -> {
+                BookWordCounter counter = new BookWordCounter();
+                return line -> {
+                    synchronized (counter) {
+                        counter.processLine(line);
+                    }
+                };
+            });
+            run("ConcurrentBookWordCounter", threads, lines, () -> {
+                ConcurrentBookWordCounter counter = new ConcurrentBookWordCounter();
+                return counter::processLine;
+            });
+        }
+    }
+
+    /**
+     * Creates a fresh counter for each round.
+     */
+    private interface CounterFactory {
+        Consumer<String> create();
+    }
+
+    /**
+     * Runs one configuration and prints the best round.
+     */
+    private static void run(String name, int threads, List<String> lines, CounterFactory factory) throws InterruptedException {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round <= ROUNDS; round++) {
+            long elapsed = runRound(threads, lines, factory.create());
+            if (round > 0) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        long totalLines = (long) lines.size() * threads;
+        System.out.printf("%-28s %8d %14.1f %14.0f%n", name, threads,
+            best / (double) totalLines, totalLines / (best / 1e9));
+    }
+
+    /**
+     * Starts the threads together and waits for all of them to finish.
+     *
+     * @return The elapsed time in nanoseconds.
+     */
+    private static long runRound(int threads, List<String> lines, Consumer<String> counter) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    for (String line : lines) {
+                        counter.accept(line);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        return System.nanoTime() - begin;
+    }
+
+    /**
+     * Reads all lines of the given files.
+     */
+    private static List<String> readLines(String... files) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String file : files) {
+            lines.addAll(Files.readAllLines(Paths.get(file)));
+        }
+        return lines;
+    }
+}
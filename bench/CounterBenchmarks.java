@@ -0,0 +1,167 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * CounterBenchmarks is the benchmark suite of the word counter.
+ *
+ * It measures tokenizing and counting (processLine, processBook with and
+ * without metrics and its mapped and parallel variants), reading the
+ * results (getAllWordCounts, totalWordCount), saving them (saveResults) and
+ * the GUI's table sorting, searching and chart, on the two sample books and
+ * on a synthetic corpus built from them, counting within a memory budget
+ * (ExternalWordCounter), and phrase counting (NGramCounter) on the sample
+ * books.
+ *
+ * Usage (from the project root):
+ * <pre>
+ *   ./bench.sh                                   # whole suite, 256 MB corpus
+ *   ./bench.sh -Dbench.corpusSize=4g             # scale the corpus up
+ *   ./bench.sh -Dbench.filter=processBook        # only matching benchmarks
+ *   ./bench.sh -Dbench.results=bench/results/after.csv -Dbench.baseline=bench/results/before.csv
+ * </pre>
+ * See BenchmarkRunner for the other settings.
+ *
+ * @author Zak Sheikh
+ */
+public class CounterBenchmarks {
+
+    public static void main(String[] args) throws Exception {
+        Path pride = Paths.get("sample_inputs/PrideAndPrejudice.txt");
+        Path gatsby = Paths.get("sample_inputs/TheGreatGatsby.txt");
+        long corpusSize = SyntheticCorpus.parseSize(System.getProperty("bench.corpusSize", "256m"));
+        Path corpus = SyntheticCorpus.create(Paths.get("bench/corpus"), corpusSize, pride, gatsby);
+        Path output = Files.createTempFile("bench-results", ".txt");
+        output.toFile().deleteOnExit();
+        Path gzipped = Paths.get(output + ".gz");
+        gzipped.toFile().deleteOnExit();
+
+        BenchmarkRunner runner = new BenchmarkRunner();
+        CounterMetrics metrics = new CounterMetrics();
+
+        // ----- tokenizing and counting -----
+        List<String> lines = Files.readAllLines(pride);
+        long prideSize = Files.size(pride);
+        runner.run("processLine PrideAndPrejudice", prideSize, () -> {
+            BookWordCounter counter = new BookWordCounter();
+            for (String line : lines) {
+                counter.processLine(line);
+            }
+            return counter;
+        });
+        for (Path book : new Path[] {pride, gatsby, corpus}) {
+            String name = book.getFileName().toString().replace(".txt", "");
+            String file = book.toString();
+            long size = Files.size(book);
+            runner.run("processBook " + name, size, () -> {
+                BookWordCounter counter = new BookWordCounter();
+                counter.processBook(file);
+                return counter;
+            });
+            runner.run("processBook with metrics " + name, size, () -> {
+                BookWordCounter counter = new BookWordCounter();
+                counter.setMetrics(metrics);
+                counter.processBook(file);
+                return counter;
+            });
+            runner.run("processBookMapped " + name, size, () -> {
+                BookWordCounter counter = new BookWordCounter();
+                counter.processBookMapped(file);
+                return counter;
+            });
+            runner.run("processBookParallel " + name, size, () -> {
+                BookWordCounter counter = new BookWordCounter();
+                counter.processBookParallel(file);
+                return counter;
+            });
+            runner.run("processBookMapped skipping stop words " + name, size, () -> {
+                BookWordCounter counter = new BookWordCounter(StopWordFilter.english());
+                counter.processBookMapped(file);
+                return counter;
+            });
+        }
+
+        // ----- reading and saving results -----
+        for (Path book : new Path[] {pride, corpus}) {
+            String name = book.getFileName().toString().replace(".txt", "");
+            BookWordCounter counter = new BookWordCounter();
+            counter.processBookMapped(book.toString());
+
+            runner.run("getAllWordCounts " + name, 0, counter::getAllWordCounts);
+            runner.run("totalWordCount " + name, 0, counter::totalWordCount);
+            runner.run("saveResults " + name, 0, () -> {
+                counter.saveResults(output.toString());
+                return output;
+            });
+            runner.run("saveResults gzipped " + name, 0, () -> {
+                counter.saveResults(gzipped.toString());
+                return gzipped;
+            });
+            StopWordFilter stopWords = StopWordFilter.english();
+            runner.run("GUI table by frequency " + name, 0, () -> new WordCountTableModel(counter, true, Set.of()));
+            runner.run("GUI table alphabetically " + name, 0, () -> new WordCountTableModel(counter, false, Set.of()));
+            WordCountTableModel model = new WordCountTableModel(counter, true, Set.of());
+            runner.run("GUI table re-sort " + name, 0, () -> {
+                model.setOrder(false, stopWords);
+                model.setOrder(true, Set.of());
+                return model;
+            });
+            model.prepareSearch();
+            runner.run("GUI search as typed " + name, 0, () -> {
+                for (String search : new String[] {"t", "th", "the", "ther", "there", "", "12", ""}) {
+                    model.setFilter(search);
+                }
+                return model;
+            });
+            runner.run("GUI top 10 chart " + name, 0, () -> counter.topWords(10, stopWords));
+            runner.run("HeavyHitters top 10 " + name, book.toFile().length(), () -> {
+                HeavyHitters heavyHitters = new HeavyHitters(1_000);
+                heavyHitters.processBook(book.toString());
+                return heavyHitters.top(10);
+            });
+        }
+
+        // ----- counting within a memory budget -----
+        Path spill = Files.createTempDirectory("bench-spill");
+        spill.toFile().deleteOnExit();
+        for (Path book : new Path[] {pride, corpus}) {
+            String name = book.getFileName().toString().replace(".txt", "");
+            String file = book.toString();
+            long size = Files.size(book);
+            runner.run("ExternalWordCounter 64 KB budget " + name, size, () -> {
+                try (ExternalWordCounter counter = new ExternalWordCounter(64 << 10, spill)) {
+                    counter.processBookMapped(file);
+                    counter.saveResults(output.toString());
+                }
+                return output;
+            });
+        }
+
+        // ----- phrases -----
+        for (Path book : new Path[] {pride, gatsby}) {
+            String name = book.getFileName().toString().replace(".txt", "");
+            String file = book.toString();
+            long size = Files.size(book);
+            for (int n : new int[] {2, 3, 5}) {
+                runner.run("NGramCounter " + n + "-grams " + name, size, () -> {
+                    NGramCounter counter = new NGramCounter(n);
+                    counter.processBookMapped(file);
+                    return counter;
+                });
+            }
+            NGramCounter bigrams = new NGramCounter(2);
+            bigrams.processBookMapped(file);
+            runner.run("NGramCounter top 10 bigrams " + name, 0, () -> bigrams.topNGrams(10));
+            runner.run("NGramCounter saveResults bigrams " + name, 0, () -> {
+                bigrams.saveResults(output.toString());
+                return output;
+            });
+        }
+
+        if (!runner.finish()) {
+            System.exit(1);
+        }
+    }
+}
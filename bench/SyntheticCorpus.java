@@ -0,0 +1,90 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/**
+ * SyntheticCorpus builds large text files for benchmarks out of the sample
+ * books.
+ *
+ * The books are repeated until the file reaches the requested size. To keep
+ * the vocabulary growing the way it does in a real concatenated corpus, every
+ * copy of a book also gets a sprinkling of made-up words. Files are cached, so
+ * a multi-gigabyte corpus is only written once.
+ *
+ * @author Zak Sheikh
+ */
+public class SyntheticCorpus {
+
+    /** Made-up words added per copy of a book */
+    private static final int NEW_WORDS_PER_COPY = 2_000;
+
+    /**
+     * Returns a corpus file of about the given size, creating it if needed.
+     *
+     * @param directory Where to keep generated files.
+     * @param size      The size of the corpus in bytes.
+     * @param books     The books to repeat.
+     * @return The path of the corpus file.
+     */
+    public static Path create(Path directory, long size, Path... books) throws IOException {
+        Path corpus = directory.resolve("synthetic-" + size + ".txt");
+        if (Files.exists(corpus) && Files.size(corpus) >= size) {
+            return corpus;
+        }
+        Files.createDirectories(directory);
+        byte[][] contents = new byte[books.length][];
+        for (int i = 0; i < books.length; i++) {
+            contents[i] = Files.readAllBytes(books[i]);
+        }
+
+        Random random = new Random(1);
+        Path partial = directory.resolve(corpus.getFileName() + ".part");
+        try (OutputStream out = Files.newOutputStream(partial)) {
+            long written = 0;
+            for (int copy = 0; written < size; copy++) {
+                byte[] book = contents[copy % contents.length];
+                out.write(book);
+                written += book.length;
+                // adds made-up words so the vocabulary keeps growing
+                StringBuilder words = new StringBuilder();
+                for (int i = 0; i < NEW_WORDS_PER_COPY; i++) {
+                    int length = 3 + random.nextInt(8);
+                    for (int j = 0; j < length; j++) {
+                        words.append((char) ('a' + random.nextInt(26)));
+                    }
+                    words.append(i % 12 == 11 ? '\n' : ' ');
+                }
+                byte[] extra = words.toString().getBytes();
+                out.write(extra);
+                written += extra.length;
+            }
+        }
+        Files.move(partial, corpus, StandardCopyOption.REPLACE_EXISTING);
+        return corpus;
+    }
+
+    /**
+     * Parses a size such as "512m" or "4g".
+     *
+     * @param text The size text.
+     * @return The size in bytes.
+     */
+    public static long parseSize(String text) {
+        String lower = text.trim().toLowerCase();
+        long unit = 1;
+        if (lower.endsWith("k")) {
+            unit = 1L << 10;
+        } else if (lower.endsWith("m")) {
+            unit = 1L << 20;
+        } else if (lower.endsWith("g")) {
+            unit = 1L << 30;
+        }
+        if (unit > 1) {
+            lower = lower.substring(0, lower.length() - 1);
+        }
+        return Long.parseLong(lower) * unit;
+    }
+}
@@ -6,6 +6,9 @@ mkdir -p out
 # Compile all Java files into out/
 javac -d out -cp "lib/*" src/*.java
 
+# Copy the test fixtures next to the classes, where the tests look for them
+cp -r src/fixtures out/
+
 # Run the GUI app from out
 java -cp "out:lib/*" BookCounterGUI
 
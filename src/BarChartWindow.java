@@ -19,7 +19,7 @@ public class BarChartWindow extends JFrame {
      * 
      * @param topWords A list of the top 10 word-count pairs
      */
-    public BarChartWindow(List<Map.Entry<String, Integer>> topWords) {
+    public BarChartWindow(List<Map.Entry<String, Long>> topWords) {
         // sets window title
         setTitle("Top 10 Words - Bar Chart");
         // closes only this window
@@ -40,14 +40,14 @@ public class BarChartWindow extends JFrame {
      */
     private static class BarChartPanel extends JPanel {
         // stores the top 10 word-count entries
-        private final List<Map.Entry<String, Integer>> topWords;
+        private final List<Map.Entry<String, Long>> topWords;
 
         /**
          * Constructor initializes the panel with word data and white background.
          * 
          * @param topWords A list of word-count pairs to display
          */
-        public BarChartPanel(List<Map.Entry<String, Integer>> topWords) {
+        public BarChartPanel(List<Map.Entry<String, Long>> topWords) {
             this.topWords = topWords;
             // sets background color
             setBackground(Color.WHITE);
@@ -73,13 +73,13 @@ public class BarChartWindow extends JFrame {
             int chartHeight = getHeight() - 2 * padding;
             int barWidth = chartWidth / topWords.size() - 10;
             int maxBarHeight = chartHeight - 50;
-            int maxCount = topWords.get(0).getValue();
+            long maxCount = topWords.get(0).getValue();
 
             // draws each bar and label
             for (int i = 0; i < topWords.size(); i++) {
-                Map.Entry<String, Integer> entry = topWords.get(i);
+                Map.Entry<String, Long> entry = topWords.get(i);
                 String word = entry.getKey();
-                int count = entry.getValue();
+                long count = entry.getValue();
 
                 // calculates position and height
                 int x = padding + i * (barWidth + 10);
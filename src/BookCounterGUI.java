@@ -1,17 +1,22 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import javax.swing.table.DefaultTableModel;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
-import java.util.List;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
-import javax.swing.table.TableRowSorter;
 
 
 /**
@@ -22,6 +27,13 @@ import javax.swing.table.TableRowSorter;
  * - Load a book file with a file chooser.
  * - View the total word count.
  * - Enter a word and see how many times it appears.
+ *
+ * Books are loaded in the background by a BookLoader, so the window stays
+ * responsive and the load can be cancelled.
+ *
+ * Stop words can be hidden from the table and chart, or skipped while
+ * counting. The built-in English list can be replaced by a list loaded
+ * from a file.
  * 
  * @author Zak Sheikh
  */
@@ -29,12 +41,37 @@ public class BookCounterGUI extends JFrame {
 
     // intialize the gui components
     private BookWordCounter counter;
+    private File countedFile;
     private JTextField wordInput;
     private JTable wordTable;
-    private DefaultTableModel tableModel;
+    private WordCountTableModel tableModel;
     private JLabel fileLabel;
     private JComboBox<String> sortModeSelector;
     private JCheckBox stopWordsCheckbox;
+    private JCheckBox skipStopWordsCheckbox;
+    private StopWordFilter stopWords = StopWordFilter.english();
+    private final DefinitionService definitions = new DefinitionService();
+    private JTextField filterInput;
+    private JProgressBar progressBar;
+    private JButton cancelLoadBtn;
+    private BookLoader loader;
+    /** Label and table of the last book loaded in full, put back when a load is cancelled or fails */
+    private String countedLabel;
+    private WordCountTableModel countedModel;
+    private Timer filterTimer;
+    private Timer prefetchTimer;
+    private JCheckBox prefetchCheckbox;
+    /** Whether a search filter is typed, read by BookLoader off the EDT */
+    private volatile boolean filtering;
+
+    /** Time to wait after the last keystroke before filtering the table */
+    private static final int FILTER_DELAY_MS = 150;
+
+    /** Time to wait after the table stops scrolling before prefetching definitions */
+    private static final int PREFETCH_DELAY_MS = 500;
+
+    /** Most visible rows whose definitions are prefetched at a time */
+    private static final int PREFETCH_ROWS = 20;
 
 
     // constructor
@@ -55,12 +92,77 @@ public class BookCounterGUI extends JFrame {
         JPanel topPanel = new JPanel(new FlowLayout());
         topPanel.add(chooseFileBtn);
         topPanel.add(fileLabel);
+
+        // adds a progress bar and cancel button, shown only while a book loads
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        cancelLoadBtn = new JButton("Cancel");
+        cancelLoadBtn.setVisible(false);
+        cancelLoadBtn.addActionListener(e -> {
+            if (loader != null) {
+                loader.cancel(true);
+            }
+        });
+        topPanel.add(progressBar);
+        topPanel.add(cancelLoadBtn);
         
         // ----- Filter Panel: Live search -----
         JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        JTextField filterInput = new JTextField(20);
+        filterInput = new JTextField(20);
         filterPanel.add(new JLabel("Search Table:"));
         filterPanel.add(filterInput);
+
+        // ----- Filter Panel: Stop word list and counting mode -----
+        // creates a button to load a stop word list, such as stopwords/en.txt
+        JButton stopWordsBtn = new JButton("Load Stop Words");
+        stopWordsBtn.setToolTipText("Using the built-in English list");
+        filterPanel.add(stopWordsBtn);
+        stopWordsBtn.addActionListener(e -> {
+            JFileChooser fileChooser = new JFileChooser(new File("stopwords"));
+            fileChooser.setDialogTitle("Load Stop Word List");
+            if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+                File file = fileChooser.getSelectedFile();
+                try {
+                    stopWords = StopWordFilter.load(file.toPath());
+                    stopWordsBtn.setToolTipText("Using " + file.getName() + " (" + stopWords.size() + " words)");
+                    populateTable();
+                } catch (IOException ex) {
+                    // displays an error message
+                    JOptionPane.showMessageDialog(this, "❌ Error: " + ex.getMessage(),
+                    "File Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+        // creates a checkbox to leave stop words out while counting, instead of only hiding them
+        skipStopWordsCheckbox = new JCheckBox("Skip stop words while counting");
+        skipStopWordsCheckbox.setToolTipText("Applies to the next book loaded; stop words are then not in the total either");
+        filterPanel.add(skipStopWordsCheckbox);
+
+        // creates a button to load a local dictionary, so definitions work offline
+        JButton dictionaryBtn = new JButton("Load Dictionary");
+        dictionaryBtn.setToolTipText("Definitions come from the Free Dictionary API and are cached");
+        filterPanel.add(dictionaryBtn);
+        dictionaryBtn.addActionListener(e -> {
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setDialogTitle("Load Dictionary (word, tab, definition)");
+            if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+                File file = fileChooser.getSelectedFile();
+                try {
+                    int loaded = definitions.preload(file.toPath());
+                    dictionaryBtn.setToolTipText("Using " + file.getName() + " (" + loaded + " words), then the Free Dictionary API");
+                } catch (IOException ex) {
+                    // displays an error message
+                    JOptionPane.showMessageDialog(this, "❌ Error: " + ex.getMessage(),
+                    "File Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+        // creates a checkbox to look up the definitions of the visible rows ahead of a double-click
+        prefetchCheckbox = new JCheckBox("Prefetch definitions");
+        prefetchCheckbox.setToolTipText("Looks up the definitions of the top " + PREFETCH_ROWS + " visible rows in the background");
+        filterPanel.add(prefetchCheckbox);
+        prefetchCheckbox.addActionListener(e -> prefetchTimer.restart());
         
         // Combines both panels into one vertical wrapper
         JPanel topWrapperPanel = new JPanel();
@@ -71,60 +173,44 @@ public class BookCounterGUI extends JFrame {
         // Add the wrapper to the top of the frame
         add(topWrapperPanel, BorderLayout.NORTH);
 
+        // filters the table once the user pauses typing, not on every keystroke
+        filterTimer = new Timer(FILTER_DELAY_MS, e -> filterTable());
+        filterTimer.setRepeats(false);
+
         // adds a document listener to track input changes in the filter field
         filterInput.getDocument().addDocumentListener(new DocumentListener() {
 
             // triggers when characters are added
             public void insertUpdate(DocumentEvent e) {
-                filterTable();
+                filterTimer.restart();
             }
             // triggers when characters are removed
             public void removeUpdate(DocumentEvent e) {
-                filterTable();
+                filterTimer.restart();
             }
             // triggers when characters are changed
             public void changedUpdate(DocumentEvent e) {
-                filterTable();
-            }
-
-            // filters the table
-            private void filterTable() {
-                // gets the search term from the input field
-                String search = filterInput.getText().trim().toLowerCase();
-                // creates a new row sorter based on the table model
-                TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(tableModel);
-                // applies the sorter to the word table
-                wordTable.setRowSorter(sorter);
-
-                // if input is empty, remove any filters
-                if (search.length() == 0) {
-                    // removes any existing filters
-                    sorter.setRowFilter(null);
-                } else {
-                    // creates a regex filter to match the search term
-                    sorter.setRowFilter(RowFilter.regexFilter("(?i)" + search));
-                }
+                filterTimer.restart();
             }
         });
 
 
         // ----- Center Panel: JTable for word display -----
-        // creates a table to display word counts
-        String[] columnNames = {"Word", "Count"};
         // creates a table model
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            // returns false to indicate that the table is not editable
-            public boolean isCellEditable(int row, int column) {
-                return false; 
-            }
-        };
+        tableModel = new WordCountTableModel(counter, false, Set.of());
+        countedLabel = fileLabel.getText();
+        countedModel = tableModel;
         // creates a table
         wordTable = new JTable(tableModel);
         // creates a scroll pane
         JScrollPane scrollPane = new JScrollPane(wordTable);
         // adds the scroll pane
         add(scrollPane, BorderLayout.CENTER);
+
+        // prefetches definitions once the table stops scrolling or changing
+        prefetchTimer = new Timer(PREFETCH_DELAY_MS, e -> prefetchVisibleWords());
+        prefetchTimer.setRepeats(false);
+        scrollPane.getViewport().addChangeListener(e -> prefetchTimer.restart());
     
         // Adds mouse click listener for dictionary lookup
         wordTable.addMouseListener(new MouseAdapter() {
@@ -137,10 +223,10 @@ public class BookCounterGUI extends JFrame {
                 if (row != -1 && e.getClickCount() == 2) {
                     // gets the word from the selected row and its model index
                     int modelRow = wordTable.convertRowIndexToModel(row);
-                    String word = tableModel.getValueAt(modelRow, 0).toString();
+                    String word = tableModel.getWord(modelRow);
 
                     // opens a popup dialog with word definition from Dictionary API
-                    SwingUtilities.invokeLater(() -> new DictionaryLookupDialog(BookCounterGUI.this, word).setVisible(true));
+                    SwingUtilities.invokeLater(() -> new DictionaryLookupDialog(BookCounterGUI.this, word, definitions).setVisible(true));
 
                 }
             }
@@ -189,23 +275,8 @@ public class BookCounterGUI extends JFrame {
         bottomPanel.add(chartBtn);
         // adds action listener to chart button
         chartBtn.addActionListener(e -> {
-            // gets all word counts and filters out stop words
-            Map<String, Integer> wordCounts = counter.getAllWordCounts();
-            List<String> stopWords = stopWordsCheckbox.isSelected() ? getStopWords() : List.of();
-
-            // list to store filtered word counts
-            List<Map.Entry<String, Integer>> filtered = new ArrayList<>(); 
-            // filters out stop words
-            for (Map.Entry<String, Integer> entry : wordCounts.entrySet()) { 
-                if (!stopWords.contains(entry.getKey())) {
-                    filtered.add(entry);
-                }
-            }
-            
-            // sorts the word counts
-            filtered.sort((a, b) -> b.getValue().compareTo(a.getValue()));
-            // gets the top 10
-            List<Map.Entry<String, Integer>> top10 = filtered.subList(0, Math.min(10, filtered.size()));
+            // gets the top 10 word counts without stop words
+            List<Map.Entry<String, Long>> top10 = counter.topWords(10, excludedWords());
             // displays the chart
             SwingUtilities.invokeLater(() -> new BarChartWindow(top10));
         });
@@ -234,8 +305,8 @@ public class BookCounterGUI extends JFrame {
                     writer.println("Word,Count");
                     // write table rows
                     for (int i = 0; i < tableModel.getRowCount(); i++) {
-                        String word = tableModel.getValueAt(i, 0).toString();
-                        String count = tableModel.getValueAt(i, 1).toString();
+                        String word = tableModel.getWord(i);
+                        long count = tableModel.getCount(i);
                         writer.println(word + "," + count);
                     }
                     // display success message
@@ -260,18 +331,13 @@ public class BookCounterGUI extends JFrame {
             // if the user selects a file
             if (result == JFileChooser.APPROVE_OPTION) {
                 File file = fileChooser.getSelectedFile();
-                fileLabel.setText(file.getName());
-                try {
-                    counter = new BookWordCounter();
-                    counter.processBook(file.getAbsolutePath());
-                    populateTable();  // new helper method to display data in table
-
-                } catch (IOException ex) {
-                    // displays an error message
-                    JOptionPane.showMessageDialog(this, "❌ Error: " + ex.getMessage(),
-                    "File Error", JOptionPane.ERROR_MESSAGE);
-
+                // stops any book that is still loading
+                if (loader != null) {
+                    loader.cancel(true);
                 }
+                // loads the book in the background
+                loader = new BookLoader(file);
+                loader.execute();
             }
         });
 
@@ -282,7 +348,7 @@ public class BookCounterGUI extends JFrame {
             // displays the word count
             if (!word.isEmpty()) {
                 // gets the word count
-                int count = counter.getWordCount(word);
+                long count = counter.getWordCount(word);
                 // displays the word count in a message dialog
                 JOptionPane.showMessageDialog(this, "The word '" + word + "' appears " + count + " times.",
                 "Word Count Result", JOptionPane.INFORMATION_MESSAGE);
@@ -297,50 +363,219 @@ public class BookCounterGUI extends JFrame {
         setVisible(true);
     }
 
-    /** Helper method to display data in table */
+    /** Helper method to apply the sort mode and stop word setting to the table */
     private void populateTable() {
-        // clears the table
-        tableModel.setRowCount(0); 
-        // gets all word counts
-        Map<String, Integer> wordCounts = counter.getAllWordCounts();
-        // sorts the word counts
-        List<Map.Entry<String, Integer>> entries = new ArrayList<>(wordCounts.entrySet());
-        // gets the selected sort mode
-        String selectedSort = (String) sortModeSelector.getSelectedItem();
-        // sorts the word counts
-        if ("Frequency (High to Low)".equals(selectedSort)) {
-            // Sort by frequency
-            entries.sort((a, b) -> b.getValue().compareTo(a.getValue()));
-        } else {
-            // Sort alphabetically
-            entries.sort(Map.Entry.comparingByKey());
+        CounterEvents.PopulateTable event = new CounterEvents.PopulateTable();
+        event.begin();
+        // re-indexes the rows in place; the counts themselves are not copied again
+        tableModel.setOrder(isSortedByFrequency(), excludedWords());
+        prefetchTimer.restart();
+        // records the refresh in a flight recording, if one is running
+        if (event.shouldCommit()) {
+            event.fileName = countedFile == null ? null : countedFile.getPath();
+            event.bytes = countedFile == null ? 0 : countedFile.length();
+            event.tokens = counter.totalWordCount();
+            event.distinctWords = tableModel.getRowCount();
+            event.commit();
         }
+    }
 
-        // gets the stop words
-        List<String> stopWords = stopWordsCheckbox.isSelected() ? getStopWords() : List.of();
-        // adds the word counts to the table 
-        for (Map.Entry<String, Integer> entry : entries) {
-            // filters out stop words
-            if (!stopWords.contains(entry.getKey())) {
-                tableModel.addRow(new Object[]{entry.getKey(), entry.getValue()});
-            }
+    /** Helper method to warm the definition cache for the rows on screen */
+    private void prefetchVisibleWords() {
+        if (!prefetchCheckbox.isSelected()) {
+            return;
+        }
+        // finds the first and last visible rows
+        Rectangle visible = wordTable.getVisibleRect();
+        int first = wordTable.rowAtPoint(visible.getLocation());
+        if (first < 0) {
+            return;
         }
+        int last = wordTable.rowAtPoint(new Point(visible.x, visible.y + visible.height - 1));
+        if (last < 0) {
+            last = wordTable.getRowCount() - 1;
+        }
+        // looks up the top rows only, so a tall window does not send a burst of requests
+        List<String> words = new ArrayList<>();
+        for (int row = first; row <= last && words.size() < PREFETCH_ROWS; row++) {
+            words.add(tableModel.getWord(wordTable.convertRowIndexToModel(row)));
+        }
+        definitions.prefetch(words);
     }
 
-    /** Helper method to get stop words */
-    private List<String> getStopWords() {
-        // returns a list of stop words
-        return List.of(
-            "a", "an", "and", "are", "as", "at", "be", "been", "being", "but", "by",
-            "do", "did", "does", "for", "from", "had", "has", "have", "he", "her", "him", "his", "i",
-            "if", "in", "into", "is", "it", "it's", "me", "my", "no", "not", "of",
-            "on", "or", "so", "such", "that", "the", "their", "them", "then", "there",
-            "these", "they", "this", "to", "was", "we", "were", "what", "when", "where",
-            "which", "who", "will", "with", "would", "you", "your"
-        );
+    /** Helper method to swap in a new table model, keeping the search filter */
+    private void setTableModel(WordCountTableModel model) {
+        tableModel = model;
+        wordTable.setModel(model);
+        filterTable();
     }
 
+    /** Helper method to filter the table by the search term */
+    private void filterTable() {
+        // gets the search term from the input field
+        String search = filterInput.getText();
+        filtering = !search.isBlank();
+        // narrows the rows through the model's search index
+        tableModel.setFilter(search);
+        prefetchTimer.restart();
+    }
+
+    /** Helper method to check the selected sort mode */
+    private boolean isSortedByFrequency() {
+        return "Frequency (High to Low)".equals(sortModeSelector.getSelectedItem());
+    }
+
+    /** Helper method to get the words left out of the table and chart */
+    private Set<String> excludedWords() {
+        return stopWordsCheckbox.isSelected() ? stopWords : Set.of();
+    }
+
+
+    /**
+     * BookLoader counts the words of a book on a background thread.
+     *
+     * An up-to-date saved index is reused; otherwise the book is read in
+     * chunks through a WordCountStream. Progress is the share of the file's
+     * bytes read so far, the table shows the counts so far every half second,
+     * and the worker checks for cancellation between chunks. The sorted
+     * table models are built in the background, so the EDT only swaps them in.
+     */
+    private class BookLoader extends SwingWorker<BookWordCounter, WordCountTableModel> {
+
+        /** Time between table updates while loading */
+        private static final long PUBLISH_INTERVAL = TimeUnit.MILLISECONDS.toNanos(500);
+
+        /** Bytes read per chunk */
+        private static final int CHUNK_SIZE = 64 * 1024;
+
+        private final File file;
+        private final boolean byFrequency;
+        private final Set<String> excluded;
+        private final StopWordFilter skipped;
+
+        /** The table model of the finished counts */
+        private WordCountTableModel finalModel;
+
+        // created on the EDT, so the settings are read there
+        BookLoader(File file) {
+            this.file = file;
+            this.byFrequency = isSortedByFrequency();
+            this.excluded = excludedWords();
+            this.skipped = skipStopWordsCheckbox.isSelected() ? stopWords : StopWordFilter.NONE;
+
+            fileLabel.setText("Loading " + file.getName() + "...");
+            progressBar.setValue(0);
+            progressBar.setVisible(true);
+            cancelLoadBtn.setVisible(true);
+            // updates the progress bar on the EDT
+            addPropertyChangeListener(e -> {
+                if ("progress".equals(e.getPropertyName()) && loader == this) {
+                    progressBar.setValue((Integer) e.getNewValue());
+                }
+            });
+        }
+
+        @Override
+        protected BookWordCounter doInBackground() throws IOException {
+            String book = file.getAbsolutePath();
+            String indexFile = WordCountIndex.cacheFileFor(file.toPath()).toString();
+
+            // reuses the saved counts if the book has not changed
+            BookWordCounter loaded = BookWordCounter.loadIndexIfUpToDate(book, indexFile);
+            if (loaded != null && !skipped.isEmpty()) {
+                // copies the saved counts without the stop words
+                BookWordCounter withoutStopWords = new BookWordCounter(skipped);
+                loaded.forEachSorted(withoutStopWords::addWordCount);
+                loaded = withoutStopWords;
+            } else if (loaded == null) {
+                // reads the book's state first, so an edit made while it is read makes the index stale
+                WordCountIndex.SourceState source = WordCountIndex.SourceState.of(file.toPath());
+                loaded = new BookWordCounter(skipped);
+                long size = Math.max(1, file.length());
+                long read = 0;
+                long nextPublish = System.nanoTime() + PUBLISH_INTERVAL;
+                byte[] buffer = new byte[CHUNK_SIZE];
+                try (InputStream in = new FileInputStream(file); WordCountStream stream = loaded.openStream()) {
+                    int n;
+                    while ((n = in.read(buffer)) != -1) {
+                        if (isCancelled()) {
+                            return null;
+                        }
+                        stream.accept(ByteBuffer.wrap(buffer, 0, n));
+                        read += n;
+                        // the file may grow while it is read, so 100 waits until the end
+                        setProgress((int) Math.min(99, read * 100 / size));
+
+                        // shows the counts so far
+                        if (System.nanoTime() - nextPublish >= 0) {
+                            WordCountTableModel model = new WordCountTableModel(stream.snapshot(), byFrequency, excluded);
+                            if (filtering) {
+                                model.prepareSearch();
+                            }
+                            publish(model);
+                            nextPublish = System.nanoTime() + PUBLISH_INTERVAL;
+                        }
+                    }
+                }
+                // the saved index is shared by every stop word setting, so it must hold every word
+                if (skipped.isEmpty()) {
+                    loaded.saveIndex(indexFile, source);
+                }
+            }
+            finalModel = new WordCountTableModel(loaded, byFrequency, excluded);
+            finalModel.prepareSearch();
+            setProgress(100);
+            return loaded;
+        }
+
+        @Override
+        protected void process(List<WordCountTableModel> models) {
+            // only the latest counts are worth showing
+            if (loader == this && !isCancelled()) {
+                setTableModel(models.get(models.size() - 1));
+            }
+        }
 
+        @Override
+        protected void done() {
+            // a newer load has taken over
+            if (loader != this) {
+                return;
+            }
+            loader = null;
+            progressBar.setVisible(false);
+            cancelLoadBtn.setVisible(false);
+
+            try {
+                counter = get();
+                countedFile = file;
+                countedLabel = file.getName();
+                countedModel = finalModel;
+                fileLabel.setText(countedLabel);
+                setTableModel(finalModel);
+                // the sort or stop word settings may have changed during the load
+                if (byFrequency != isSortedByFrequency() || !excluded.equals(excludedWords())) {
+                    populateTable();
+                }
+            } catch (CancellationException | InterruptedException ex) {
+                // goes back to the last book loaded in full, not whatever was on screen when this load began
+                restoreCountedBook();
+            } catch (ExecutionException ex) {
+                restoreCountedBook();
+                // displays an error message
+                JOptionPane.showMessageDialog(BookCounterGUI.this, "❌ Error: " + ex.getCause().getMessage(),
+                "File Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+
+        /** Puts back the label and table of the book the counter holds */
+        private void restoreCountedBook() {
+            fileLabel.setText(countedLabel);
+            setTableModel(countedModel);
+            // the settings may have changed since that table was sorted
+            populateTable();
+        }
+    }
 
     // main
     public static void main(String[] args) {
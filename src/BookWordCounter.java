@@ -1,27 +1,96 @@
 import java.io.*;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
 
 /**
  * BookWordCounter is a Java program that reads a book from a text file,
- * counts the occurrences of each word, and stores the results in a HashMap.
+ * counts the occurrences of each word, and stores the results in a WordCountTable.
  * The program outputs the words in alphabetical order along with their count.
  *
  * @author Zak Sheikh
  */
 public class BookWordCounter {
 
-    /** A HashMap to store word counts */
-    private Map<String, Integer> wordCountMap;
+    /** A table to store word counts */
+    private final WordCountTable wordCounts;
+
+    /** Counts loaded from a saved index, read in place until the counter is changed */
+    private WordCountIndex savedIndex;
+
+    /** Creates a tokenizer for each input that is read */
+    private final Supplier<? extends Tokenizer> tokenizers;
+
+    /** Tokenizer used by processLine */
+    private final Tokenizer lineTokenizer;
+
+    /** Counts each word the tokenizer finds, through the recorder if there is one */
+    private Tokenizer.TokenSink countingSink = this::countWord;
+
+    /** Measures this counter, or null if metrics are off */
+    private CounterMetrics.Recorder recorder;
+
+    /** Words that are never counted */
+    private final StopWordFilter stopWords;
 
     /**
      * Constructor for the BookWordCounter class.
-     * Initializes the HashMap to store word counts.
+     * Initializes the table to store word counts.
      */
     public BookWordCounter() {
-        // initializes the HashMap
-        wordCountMap = new HashMap<>();
+        this(WordTokenizer::new);
+    }
+
+    /**
+     * Constructor for the BookWordCounter class with a custom tokenizer.
+     * Tokenizers keep state between calls, so a new one is created for
+     * each input that is read.
+     *
+     * @param tokenizers Creates the tokenizers used to split text into words.
+     */
+    public BookWordCounter(Supplier<? extends Tokenizer> tokenizers) {
+        this(tokenizers, StopWordFilter.NONE);
+    }
+
+    /**
+     * Constructor for the BookWordCounter class that skips stop words while
+     * counting, so they never appear in the results or the total.
+     *
+     * @param stopWords The words not to count.
+     */
+    public BookWordCounter(StopWordFilter stopWords) {
+        this(WordTokenizer::new, stopWords);
+    }
+
+    /**
+     * Constructor for the BookWordCounter class with a custom tokenizer that
+     * skips stop words while counting.
+     *
+     * @param tokenizers Creates the tokenizers used to split text into words.
+     * @param stopWords  The words not to count.
+     */
+    public BookWordCounter(Supplier<? extends Tokenizer> tokenizers, StopWordFilter stopWords) {
+        // initializes the table
+        wordCounts = new WordCountTable();
+        this.tokenizers = tokenizers;
+        this.lineTokenizer = tokenizers.get();
+        this.stopWords = stopWords;
+    }
+
+    /**
+     * Turns metrics on or off. While they are on, each book read and each
+     * results or index file written is measured and added to the metrics.
+     * Metrics are off by default and cost nothing while off.
+     *
+     * @param metrics The metrics to add to, or null to turn them off.
+     */
+    public void setMetrics(CounterMetrics metrics) {
+        recorder = metrics == null ? null : metrics.newRecorder(wordCounts, this::countWord);
+        countingSink = recorder == null ? this::countWord : recorder;
     }
 
     /**
@@ -31,33 +100,163 @@ public class BookWordCounter {
      * @param word The word to search for.
      * @return The count of the word, or 0 if not found.
      */
-    public int getWordCount(String word) {
+    public long getWordCount(String word) {
         // returns the count of the given word
-        return wordCountMap.getOrDefault(word.toLowerCase(), 0);
+        if (savedIndex != null) {
+            return savedIndex.get(word.toLowerCase());
+        }
+        return wordCounts.get(word.toLowerCase());
     }
 
     /**
-     * Returns the total number of words in the book.
+     * Returns the total number of words in the book. The total is kept as
+     * words are counted, so this does not add up the counts.
      * 
      * @return The total word count.
      */
-    public int totalWordCount() {
-        return wordCountMap.values().stream().mapToInt(Integer::intValue).sum();
+    public long totalWordCount() {
+        if (savedIndex != null) {
+            return savedIndex.totalWordCount();
+        }
+        return wordCounts.total();
     }
 
     /**
-     * Reads a text file and counts occurrences of words.
+     * Returns the number of different words in the book.
+     *
+     * @return The number of distinct words.
+     */
+    public int distinctWordCount() {
+        if (savedIndex != null) {
+            return savedIndex.size();
+        }
+        return wordCounts.size();
+    }
+
+    /**
+     * Reads a text file and counts occurrences of words. Each book read is
+     * a ProcessBook event in a flight recording.
      *
      * @param filePath The path of the text file to be read.
      */
     public void processBook(String filePath) throws IOException {
+        CounterEvents.ProcessBook event = new CounterEvents.ProcessBook();
+        event.begin();
+        long totalBefore = totalWordCount();
         // reads the file
-        BufferedReader reader = new BufferedReader(new FileReader(filePath)); 
-        // reads the file line by line
-        String line;
-        while ((line = reader.readLine()) != null) {
-            processLine(line);
-        }   
+        Reader in = new FileReader(filePath);
+        if (recorder != null) {
+            recorder.begin();
+            in = recorder.timeReads(in);
+        }
+        try (BufferedReader reader = new BufferedReader(in)) {
+            // reads the file line by line
+            String line;
+            long lines = 0;
+            while ((line = reader.readLine()) != null) {
+                processLine(line);
+                lines++;
+            }
+            if (recorder != null) {
+                recorder.endRead(Files.size(Paths.get(filePath)), lines);
+            }
+        }
+        commit(event, Paths.get(filePath), totalWordCount() - totalBefore);
+    }
+
+    /**
+     * Reads a text file on all available processors and counts occurrences
+     * of words.
+     *
+     * @param filePath The path of the text file to be read.
+     */
+    public void processBookParallel(String filePath) throws IOException {
+        processBookParallel(filePath, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Reads a text file on several threads and counts occurrences of words.
+     * The file is split into ranges that are counted separately and merged,
+     * which gives the same counts as processBook().
+     *
+     * Falls back to processBook() if the default charset cannot be split on
+     * byte boundaries.
+     *
+     * @param filePath The path of the text file to be read.
+     * @param threads  The number of threads to use.
+     */
+    public void processBookParallel(String filePath, int threads) throws IOException {
+        // reads the file with the same charset as processBook
+        Charset charset = Charset.defaultCharset();
+        if (!ParallelBookReader.supports(charset)) {
+            processBook(filePath);
+            return;
+        }
+        ParallelBookReader reader = new ParallelBookReader(tokenizers, charset, threads,
+            ParallelBookReader.DEFAULT_MIN_CHUNK_SIZE);
+        if (recorder != null) {
+            recorder.begin();
+        }
+        // merges the counts of the whole file into this counter
+        WordCountTable counts = reader.count(Paths.get(filePath));
+        if (stopWords.isEmpty()) {
+            table().addAll(counts);
+        } else {
+            counts.forEach(this::addWordCount);
+        }
+        if (recorder != null) {
+            recorder.endParallelRead(Files.size(Paths.get(filePath)), counts.total());
+        }
+    }
+
+    /**
+     * Reads a text file through a memory mapping and counts occurrences of
+     * words. ASCII text is tokenized straight from the mapped bytes without
+     * creating a String per line, which gives the same counts as
+     * processBook() with far less copying on large files.
+     *
+     * Falls back to processBook() if the default charset is not ASCII based.
+     *
+     * @param filePath The path of the text file to be read.
+     */
+    public void processBookMapped(String filePath) throws IOException {
+        // reads the file with the same charset as processBook
+        Charset charset = Charset.defaultCharset();
+        if (!ParallelBookReader.supports(charset)) {
+            processBook(filePath);
+            return;
+        }
+        MappedBookReader reader = new MappedBookReader(charset, MappedBookReader.DEFAULT_WINDOW_SIZE);
+        table();
+        if (recorder == null) {
+            reader.read(Paths.get(filePath), tokenizers.get(), countingSink);
+            return;
+        }
+        // pages are read as they are tokenized, so reading is timed as tokenizing
+        recorder.begin();
+        reader.read(Paths.get(filePath), tokenizers.get(), countingSink);
+        recorder.endRead(Files.size(Paths.get(filePath)), 0);
+    }
+
+    /**
+     * Opens a stream for counting text that arrives in chunks, decoding
+     * bytes with the default charset like processBook() does.
+     *
+     * @return A new stream that counts into this counter.
+     */
+    public WordCountStream openStream() {
+        return openStream(Charset.defaultCharset());
+    }
+
+    /**
+     * Opens a stream for counting text that arrives in chunks.
+     *
+     * @param charset The charset used to decode bytes given to the stream.
+     * @return A new stream that counts into this counter.
+     */
+    public WordCountStream openStream(Charset charset) {
+        table();
+        return new WordCountStream(this, tokenizers.get(), countingSink, charset);
     }
 
     /**
@@ -69,52 +268,325 @@ public class BookWordCounter {
         if (line == null || line.isEmpty()) {
             return; // do nothing on null or empty input
         }
-        // removes special characters and convert to lowercase
-        line = line.toLowerCase().replaceAll("[^a-z']", " "); 
-        String[] words = line.toLowerCase().replaceAll("[^a-zA-Z\\s]", " ").split("\\s+");
-        // counts the frequency of each word
-        for (String word : words) {
-            // checks if the word is a single character or a contraction
-            if (word.length() > 1 && !word.matches("'[a-z]")) {
-                // adds the word to the HashMap
-                wordCountMap.put(word, wordCountMap.getOrDefault(word, 0) + 1);
-            }
+        if (savedIndex != null) {
+            table();
+        }
+        // splits the line into lowercase words and counts each one
+        lineTokenizer.tokenize(line, countingSink);
+        // a word cannot continue past the end of the line
+        lineTokenizer.finish(countingSink);
+    }
+
+    /**
+     * Adds to the count of a word directly, without tokenizing. Used when
+     * copying counts from another counter. Stop words are skipped.
+     *
+     * @param word  The lowercase word.
+     * @param count The amount to add.
+     */
+    void addWordCount(String word, long count) {
+        if (!stopWords.contains(word)) {
+            table().add(word, count);
+        }
+    }
+
+    /**
+     * Counts one word found by the tokenizer.
+     *
+     * @param buffer The buffer holding the word.
+     * @param offset The index of the first character of the word.
+     * @param length The number of characters in the word.
+     */
+    private void countWord(char[] buffer, int offset, int length) {
+        // adds the word to the table, creating a String only for new words
+        if (!stopWords.contains(buffer, offset, length)) {
+            wordCounts.increment(buffer, offset, length);
         }
     }
 
     /**
-     * Writes the word count result to a file in dictionary order.
+     * Writes the word count result to a file in dictionary order. A file
+     * name ending in .gz is written gzip-compressed. Each file written is a
+     * SaveResults event in a flight recording.
      *
      * @param outputFilePath The file path to save the results.
      */
     public void saveResults(String outputFilePath) throws IOException {
-        // creates a new file 
-        PrintWriter writer = new PrintWriter(new FileWriter(outputFilePath));
-        // sorts words in dictionary order
-        List<String> sortedWords = new ArrayList<>(wordCountMap.keySet());
-        Collections.sort(sortedWords);
+        // writes the total and the words in dictionary order, gzipped if the name ends in .gz
+        Path outputFile = Paths.get(outputFilePath);
+        CounterEvents.SaveResults event = new CounterEvents.SaveResults();
+        event.begin();
+        long start = recorder == null ? 0 : recorder.beginOutput();
+        WordCountWriter.write(table(), outputFile);
+        if (recorder != null) {
+            recorder.endOutput(start, Files.size(outputFile));
+        }
+        commit(event, outputFile, totalWordCount());
+    }
+
+    /**
+     * Reads word counts back from a file written by saveResults(), gzipped
+     * or not.
+     *
+     * @param resultsFilePath The results file.
+     * @return A counter holding the saved counts.
+     */
+    public static BookWordCounter loadResults(String resultsFilePath) throws IOException {
+        BookWordCounter counter = new BookWordCounter();
+        InputStream in = new FileInputStream(resultsFilePath);
+        if (resultsFilePath.endsWith(".gz")) {
+            in = new GZIPInputStream(in, 1 << 16);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, Charset.defaultCharset()))) {
+            String line = reader.readLine();
+            if (line == null || !line.startsWith("Total words counted: ")) {
+                throw new IOException("Not a word count results file: " + resultsFilePath);
+            }
+            // reads each "word: count" line
+            while ((line = reader.readLine()) != null) {
+                int colon = line.lastIndexOf(": ");
+                if (colon <= 0) {
+                    throw new IOException("Bad line in " + resultsFilePath + ": " + line);
+                }
+                try {
+                    counter.wordCounts.add(line.substring(0, colon), Long.parseLong(line.substring(colon + 2)));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Bad count in " + resultsFilePath + ": " + line);
+                }
+            }
+        }
+        return counter;
+    }
 
-        // writes the total word count 
-        int totalWords = wordCountMap.values().stream().mapToInt(Integer::intValue).sum();
-        writer.println("Total words counted: " + totalWords); 
+    /**
+     * Retrieves the most frequent words, most frequent first. Ties are
+     * broken alphabetically.
+     *
+     * @param k The number of words to return.
+     * @return Up to k word-count pairs.
+     */
+    public List<Map.Entry<String, Long>> topWords(int k) {
+        return topWords(k, Set.of());
+    }
+
+    /**
+     * Retrieves the most frequent words that are not excluded, most frequent
+     * first. Ties are broken alphabetically. Takes O(n log k) time without
+     * copying or sorting the whole vocabulary.
+     *
+     * @param k        The number of words to return.
+     * @param excluded Words to leave out, such as stop words.
+     * @return Up to k word-count pairs.
+     */
+    public List<Map.Entry<String, Long>> topWords(int k, Set<String> excluded) {
+        return table().top(k, excluded);
+    }
 
-        // writes each word and its count 
-        for (String word : sortedWords) {
-            writer.println(word + ": " + wordCountMap.get(word));
+    /**
+     * Adds all the counts of another counter to this one, without reading
+     * its book again.
+     *
+     * @param other The counter to add.
+     */
+    public void merge(BookWordCounter other) {
+        if (other.savedIndex != null) {
+            // reads the other counter's index in place
+            other.savedIndex.forEach(this::addWordCount);
+        } else if (stopWords.isEmpty()) {
+            table().addAll(other.wordCounts);
+        } else {
+            other.wordCounts.forEach(this::addWordCount);
         }
+    }
 
-        // closes the file
-        writer.close();
+    /**
+     * Takes the counts of another counter away from this one, such as a
+     * book that was merged in before and has since changed. Words whose
+     * count drops to zero are removed.
+     *
+     * @param other The counter to subtract.
+     * @throws IllegalArgumentException if the other counter has a word this
+     *         one lacks, or more of a word, in which case nothing is
+     *         subtracted.
+     */
+    public void subtract(BookWordCounter other) {
+        table().subtractAll(other.table());
+    }
 
+    /**
+     * Retrieves all word counts from the table.
+     *
+     * @return A HashMap containing a copy of the word counts.
+     */
+    public Map<String, Long> getAllWordCounts() {
+        // returns a copy of the table
+        return table().toMap();
     }
+
+    /**
+     * Calls the visitor once for every word in sorted order, with its count.
+     * Counts still in a loaded index are read in place, in the UTF-8 byte
+     * order of the index; otherwise the words come in the String order of
+     * WordCountTable.forEachSorted(). The two orders only differ for words
+     * with characters above U+FFFF.
+     *
+     * @param visitor Receives each word and its count.
+     */
+    void forEachSorted(WordCountTable.EntryVisitor visitor) {
+        if (savedIndex != null) {
+            savedIndex.forEach(visitor);
+            return;
+        }
+        wordCounts.forEachSorted(visitor);
+    }
+
     /**
-     * Retrieves all word counts from the HashMap.
+     * Returns the table of word counts, reading in any counts still in a
+     * loaded index first. The table is not copied.
      *
-     * @return A copy of the HashMap containing word counts.
+     * @return The table.
      */
-    public Map<String, Integer> getAllWordCounts() {
-        // returns a copy of the HashMap
-        return new HashMap<>(wordCountMap);
+    WordCountTable wordCountTable() {
+        return table();
+    }
+
+    /**
+     * Saves the word counts to a binary index file that can be loaded back
+     * without reading the book again. The book's size, modification time
+     * and checksum are read now, so this is only safe if the book has not
+     * changed since it was counted; otherwise use saveIndex(String,
+     * WordCountIndex.SourceState) with the state read before counting.
+     *
+     * @param indexFilePath  The index file to write.
+     * @param sourceFilePath The book the counts came from.
+     */
+    public void saveIndex(String indexFilePath, String sourceFilePath) throws IOException {
+        saveIndex(indexFilePath, WordCountIndex.SourceState.of(Paths.get(sourceFilePath)));
+    }
+
+    /**
+     * Saves the word counts to a binary index file that can be loaded back
+     * without reading the book again.
+     *
+     * @param indexFilePath The index file to write.
+     * @param source        The size, modification time and checksum of the
+     *                      book, read before it was counted.
+     */
+    public void saveIndex(String indexFilePath, WordCountIndex.SourceState source) throws IOException {
+        Path indexFile = Paths.get(indexFilePath);
+        if (recorder == null) {
+            WordCountIndex.write(table(), source, indexFile);
+            return;
+        }
+        long start = recorder.beginOutput();
+        WordCountIndex.write(table(), source, indexFile);
+        recorder.endOutput(start, Files.size(indexFile));
+    }
+
+    /**
+     * Loads word counts from a binary index file. The index is memory-mapped
+     * and getWordCount() searches it in place; it is only copied into the
+     * heap once the counter is changed or all its words are needed.
+     *
+     * @param indexFilePath The index file to read.
+     * @return A counter holding the saved counts.
+     */
+    public static BookWordCounter loadIndex(String indexFilePath) throws IOException {
+        BookWordCounter counter = new BookWordCounter();
+        counter.savedIndex = WordCountIndex.open(Paths.get(indexFilePath));
+        return counter;
+    }
+
+    /**
+     * Counts the words of a book, reusing a saved index if it is up to date.
+     * Otherwise the book is read and a new index is saved for next time.
+     *
+     * @param filePath      The path of the text file to be read.
+     * @param indexFilePath The index file to read or write.
+     * @return A counter holding the counts of the book.
+     */
+    public static BookWordCounter loadOrProcessBook(String filePath, String indexFilePath) throws IOException {
+        return loadOrProcessBook(filePath, indexFilePath, null);
+    }
+
+    /**
+     * Counts the words of a book like loadOrProcessBook(filePath,
+     * indexFilePath), adding to metrics while it reads the book and writes
+     * the index, and whenever the counter saves its results later.
+     *
+     * @param filePath      The path of the text file to be read.
+     * @param indexFilePath The index file to read or write.
+     * @param metrics       The metrics to add to, or null for none.
+     * @return A counter holding the counts of the book.
+     */
+    public static BookWordCounter loadOrProcessBook(String filePath, String indexFilePath,
+            CounterMetrics metrics) throws IOException {
+        BookWordCounter counter = loadIndexIfUpToDate(filePath, indexFilePath);
+        if (counter == null) {
+            // reads the book's state first, so an edit made while it is counted makes the index stale
+            WordCountIndex.SourceState source = WordCountIndex.SourceState.of(Paths.get(filePath));
+            counter = new BookWordCounter();
+            counter.setMetrics(metrics);
+            counter.processBook(filePath);
+            counter.saveIndex(indexFilePath, source);
+        } else {
+            counter.setMetrics(metrics);
+        }
+        return counter;
+    }
+
+    /**
+     * Loads a saved index, but only if it was built from the current
+     * contents of the book.
+     *
+     * @param filePath      The path of the book the index was built from.
+     * @param indexFilePath The index file to read.
+     * @return A counter holding the saved counts, or null if the index is
+     *         missing, out of date or unreadable.
+     */
+    public static BookWordCounter loadIndexIfUpToDate(String filePath, String indexFilePath) {
+        Path indexFile = Paths.get(indexFilePath);
+        if (!Files.exists(indexFile)) {
+            return null;
+        }
+        try {
+            WordCountIndex index = WordCountIndex.open(indexFile);
+            if (!index.isUpToDate(Paths.get(filePath))) {
+                return null;
+            }
+            BookWordCounter counter = new BookWordCounter();
+            counter.savedIndex = index;
+            return counter;
+        } catch (IOException e) {
+            // an unreadable index is treated like a missing one
+            return null;
+        }
+    }
+
+    /**
+     * Ends a flight recorder event about a file, filling in its fields only
+     * if a recording wants it.
+     */
+    private void commit(CounterEvents.BookEvent event, Path file, long tokens) throws IOException {
+        if (event.shouldCommit()) {
+            event.fileName = file.toString();
+            event.bytes = Files.size(file);
+            event.tokens = tokens;
+            event.distinctWords = distinctWordCount();
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns the word table, first copying in any counts that are still
+     * only in a loaded index.
+     */
+    private WordCountTable table() {
+        if (savedIndex != null) {
+            savedIndex.forEach(wordCounts::add);
+            savedIndex = null;
+        }
+        return wordCounts;
     }
 
 
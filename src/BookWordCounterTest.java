@@ -5,9 +5,19 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 /**
  * Unit tests of the BookWordCounter class, to be run with JUnit 5.
@@ -69,6 +79,171 @@ public class BookWordCounterTest {
         Files.deleteIfExists(Paths.get(testFile));
     }
 
+    /**
+     * Tests that counting a file in parallel ranges gives the same counts
+     * as reading it line by line.
+     */
+    @Test
+    void testProcessBookParallel() throws IOException {
+        System.out.println("Running processBookParallel() test");
+        // writes a test file with many short lines of mixed words
+        StringBuilder sb = new StringBuilder();
+        Random random = new Random(7);
+        String[] words = {"Hi", "hello", "Zak's", "book", "well-being", "TEST", "a", "wow—really", "café"};
+        for (int i = 0; i < 20_000; i++) {
+            sb.append(words[random.nextInt(words.length)]);
+            sb.append(random.nextInt(10) == 0 ? "\n" : " ");
+        }
+        Files.write(Paths.get(testFile), sb.toString().getBytes(Charset.defaultCharset()));
+
+        // counts the file line by line and in small parallel ranges
+        counter.processBook(testFile);
+        ParallelBookReader reader = new ParallelBookReader(WordTokenizer::new, Charset.defaultCharset(), 4, 1024);
+        Map<String, Long> parallel = reader.count(Paths.get(testFile)).toMap();
+
+        // checks that both ways agree
+        assertEquals(counter.getAllWordCounts(), parallel, "Expected the same counts from both paths");
+        BookWordCounter other = new BookWordCounter();
+        other.processBookParallel(testFile, 2);
+        assertEquals(counter.getAllWordCounts(), other.getAllWordCounts(), "Expected the same counts from both paths");
+
+        // deletes the test file
+        Files.deleteIfExists(Paths.get(testFile));
+    }
+
+    /**
+     * Tests that reading a file through a memory mapping gives the same
+     * counts as reading it line by line, including across mapping windows.
+     */
+    @Test
+    void testProcessBookMapped() throws IOException {
+        System.out.println("Running processBookMapped() test");
+        // writes a test file mixing ASCII and non-ASCII words
+        StringBuilder sb = new StringBuilder();
+        Random random = new Random(11);
+        String[] words = {"Hello", "WORLD", "naïve", "café", "Zak's", "\u212aelvin", "x", "—", "über"};
+        for (int i = 0; i < 5_000; i++) {
+            sb.append(words[random.nextInt(words.length)]);
+            sb.append(random.nextInt(8) == 0 ? "\r\n" : " ");
+        }
+        Files.write(Paths.get(testFile), sb.toString().getBytes(Charset.defaultCharset()));
+
+        // counts the file line by line and through the mapping
+        counter.processBook(testFile);
+        BookWordCounter mapped = new BookWordCounter();
+        mapped.processBookMapped(testFile);
+        assertEquals(counter.getAllWordCounts(), mapped.getAllWordCounts(), "Expected the same counts from both paths");
+
+        // maps the file in small windows so words cross window boundaries
+        WordCountTable windowed = new WordCountTable();
+        new MappedBookReader(Charset.defaultCharset(), 100)
+            .read(Paths.get(testFile), new WordTokenizer(), windowed::increment);
+        assertEquals(counter.getAllWordCounts(), windowed.toMap(), "Expected the same counts with small windows");
+
+        // deletes the test file
+        Files.deleteIfExists(Paths.get(testFile));
+    }
+
+    /**
+     * Tests that counts saved to an index load back the same, and that the
+     * index is rebuilt once the book changes.
+     */
+    @Test
+    void testSaveAndLoadIndex() throws IOException {
+        System.out.println("Running saveIndex() and loadIndex() test");
+        String indexFile = "testBook.bwci";
+        // writes a test file with enough distinct words to fill several index blocks
+        StringBuilder sb = new StringBuilder("Hi hi, my name is Zak. Test, test, book book book\n");
+        for (int i = 0; i < 500; i++) {
+            sb.append("word").append((char) ('a' + i % 26)).append((char) ('a' + i / 26)).append(' ');
+        }
+        Files.write(Paths.get(testFile), sb.toString().getBytes());
+        counter.processBook(testFile);
+        counter.saveIndex(indexFile, testFile);
+
+        // checks that the loaded counts match
+        BookWordCounter loaded = BookWordCounter.loadIndex(indexFile);
+        assertEquals(3, loaded.getWordCount("BOOK"), "Expected: 3");
+        assertEquals(0, loaded.getWordCount("missing"), "Expected 0 for a word not in the book");
+        assertEquals(counter.totalWordCount(), loaded.totalWordCount(), "Expected the same total");
+        assertEquals(counter.getAllWordCounts(), loaded.getAllWordCounts(), "Expected the same counts");
+
+        // counts more words on top of the loaded counts
+        loaded = BookWordCounter.loadIndex(indexFile);
+        loaded.processLine("book");
+        assertEquals(4, loaded.getWordCount("book"), "Expected: 4");
+
+        // reuses the index while the book is unchanged, and recounts once it changes
+        assertEquals(3, BookWordCounter.loadOrProcessBook(testFile, indexFile).getWordCount("book"), "Expected: 3");
+        Files.write(Paths.get(testFile), "book".getBytes());
+        assertEquals(1, BookWordCounter.loadOrProcessBook(testFile, indexFile).getWordCount("book"), "Expected: 1");
+        assertEquals(1, BookWordCounter.loadIndex(indexFile).totalWordCount(), "Expected the index to be rebuilt");
+
+        // stamps an index with the state read before counting, so an edit made meanwhile makes it stale
+        WordCountIndex.SourceState before = WordCountIndex.SourceState.of(Paths.get(testFile));
+        BookWordCounter counted = new BookWordCounter();
+        counted.processBook(testFile);
+        Files.write(Paths.get(testFile), "book book".getBytes());
+        counted.saveIndex(indexFile, before);
+        assertNull(BookWordCounter.loadIndexIfUpToDate(testFile, indexFile), "Expected the index to be stale");
+        assertEquals(2, BookWordCounter.loadOrProcessBook(testFile, indexFile).getWordCount("book"), "Expected: 2");
+
+        // deletes the test files
+        Files.deleteIfExists(Paths.get(testFile));
+        Files.deleteIfExists(Paths.get(indexFile));
+    }
+
+    /**
+     * Tests that text fed to a stream in chunks that split words and
+     * characters counts the same as the whole text.
+     */
+    @Test
+    void testStreamChunks() throws IOException {
+        System.out.println("Running openStream() test");
+        String text = "Hello wörld, hello café! Zak's BOOK book naïve über book ";
+        byte[] bytes = text.repeat(50).getBytes(StandardCharsets.UTF_8);
+        counter.processLine(text.repeat(50));
+
+        // feeds the bytes in chunks of 1 to 6 bytes
+        BookWordCounter streamed = new BookWordCounter();
+        Random random = new Random(3);
+        try (WordCountStream stream = streamed.openStream(StandardCharsets.UTF_8)) {
+            for (int i = 0; i < bytes.length; ) {
+                int n = Math.min(bytes.length - i, 1 + random.nextInt(6));
+                stream.accept(ByteBuffer.wrap(bytes, i, n));
+                i += n;
+            }
+        }
+        assertEquals(counter.getAllWordCounts(), streamed.getAllWordCounts(), "Expected the same counts from byte chunks");
+
+        // reads the same bytes from an input stream
+        BookWordCounter fromInput = new BookWordCounter();
+        try (WordCountStream stream = fromInput.openStream(StandardCharsets.UTF_8)) {
+            assertEquals(bytes.length, stream.readFrom(new ByteArrayInputStream(bytes)), "Expected every byte to be read");
+        }
+        assertEquals(counter.getAllWordCounts(), fromInput.getAllWordCounts(), "Expected the same counts from an input stream");
+    }
+
+    /**
+     * Tests that a snapshot taken mid-stream only holds completed words.
+     */
+    @Test
+    void testStreamSnapshot() {
+        System.out.println("Running stream snapshot test");
+        WordCountStream stream = counter.openStream();
+        stream.accept("hello hello wor");
+        Map<String, Long> snapshot = stream.snapshot();
+        assertEquals(2, snapshot.get("hello"), "Expected: 2 for 'hello'");
+        assertNull(snapshot.get("wor"), "Expected the unfinished word to be left out");
+
+        // completes the word in the next chunk
+        char[] rest = "ld hello".toCharArray();
+        stream.accept(rest, 0, rest.length);
+        stream.finish();
+        assertEquals(1, counter.getWordCount("world"), "Expected: 1 for 'world'");
+        assertEquals(3, counter.getWordCount("hello"), "Expected: 3 for 'hello'");
+    }
+
     /**
      * Tests the processLine() method to ensure words are counted correctly.
      */
@@ -189,6 +364,136 @@ public class BookWordCounterTest {
         assertEquals(0, counter.getWordCount("banana"), "Expected 0 for 'banana'");
     }
 
+    /**
+     * Tests that topWords() returns the most frequent words in order,
+     * breaks ties alphabetically and leaves out excluded words.
+     */
+    @Test
+    void testTopWords() {
+        System.out.println("Running topWords() test");
+        counter.processLine("the the the the cat cat cat sat sat on on mat mat hat");
+
+        // checks the order, including the sat/on/mat tie
+        List<Map.Entry<String, Long>> top = counter.topWords(4);
+        assertEquals(List.of(Map.entry("the", 4L), Map.entry("cat", 3L), Map.entry("mat", 2L), Map.entry("on", 2L)), top,
+            "Expected the four most frequent words");
+
+        // checks that excluded words are skipped
+        top = counter.topWords(2, Set.of("the", "cat"));
+        assertEquals(List.of(Map.entry("mat", 2L), Map.entry("on", 2L)), top, "Expected stop words to be left out");
+
+        // asks for more words than there are
+        assertEquals(6, counter.topWords(100).size(), "Expected every word");
+        assertTrue(counter.topWords(0).isEmpty(), "Expected no words");
+    }
+
+    /**
+     * Tests that counts survive the word table growing well past its
+     * initial size.
+     */
+    /**
+     * Tests that saved results load back, and that subtracting a counter
+     * removes its words, leaving the table usable for the words after them.
+     */
+    @Test
+    void testLoadResultsAndSubtract() throws IOException {
+        System.out.println("Running loadResults() and subtract() test");
+        String resultsFile = "testResults.txt";
+        // makes enough words that removals shift the probe runs of others
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) {
+            sb.append("zz").append((char) ('a' + i % 26)).append((char) ('a' + i / 26 % 26)).append(' ');
+        }
+        counter.processLine(sb.toString());
+        counter.processLine("the cat sat on the mat");
+        counter.saveResults(resultsFile);
+        BookWordCounter loaded = BookWordCounter.loadResults(resultsFile);
+        assertEquals(counter.getAllWordCounts(), loaded.getAllWordCounts(), "Expected the same counts");
+        assertEquals(counter.totalWordCount(), loaded.totalWordCount(), "Expected the same total");
+
+        // takes the first book's words back out
+        BookWordCounter part = new BookWordCounter();
+        part.processLine(sb.toString());
+        loaded.subtract(part);
+        BookWordCounter rest = new BookWordCounter();
+        rest.processLine("the cat sat on the mat");
+        assertEquals(rest.getAllWordCounts(), loaded.getAllWordCounts(), "Expected only the second line's words");
+        assertEquals(6, loaded.totalWordCount(), "Expected: 6");
+        assertEquals(0, loaded.getWordCount("zzaa"), "Expected removed words to be gone");
+        loaded.processLine("zzaa");
+        assertEquals(1, loaded.getWordCount("zzaa"), "Expected a removed word to be counted again");
+
+        // deletes the test file
+        Files.deleteIfExists(Paths.get(resultsFile));
+    }
+
+    /**
+     * Tests that counts and totals past the int range are kept exactly,
+     * through merging, saved results, the index and the GUI table.
+     */
+    @Test
+    void testLongCounts() throws IOException {
+        System.out.println("Running long counts test");
+        BookWordCounter book = new BookWordCounter();
+        book.addWordCount("the", Integer.MAX_VALUE);
+        book.addWordCount("cat", 3_000_000_000L);
+        counter.processLine("the cat sat");
+        counter.merge(book);
+        counter.merge(book);
+        assertEquals(2L * Integer.MAX_VALUE + 1, counter.getWordCount("the"), "Expected a count past the int range");
+        assertEquals(6_000_000_001L, counter.getWordCount("cat"), "Expected: 6,000,000,001");
+        assertEquals(2L * Integer.MAX_VALUE + 6_000_000_003L, counter.totalWordCount(), "Expected a long total");
+        assertEquals(List.of(Map.entry("cat", 6_000_000_001L), Map.entry("the", 2L * Integer.MAX_VALUE + 1)),
+            counter.topWords(2), "Expected the top words by their long counts");
+
+        // saves and loads the counts back
+        String resultsFile = "testLongResults.txt";
+        String indexFile = "testLongResults.idx";
+        counter.saveResults(resultsFile);
+        assertEquals("Total words counted: " + counter.totalWordCount(), Files.readAllLines(Paths.get(resultsFile)).get(0),
+            "Expected the long total in the results");
+        assertEquals(counter.getAllWordCounts(), BookWordCounter.loadResults(resultsFile).getAllWordCounts(),
+            "Expected the same counts from the results");
+        counter.saveIndex(indexFile, resultsFile);
+        BookWordCounter indexed = BookWordCounter.loadIndex(indexFile);
+        assertEquals(6_000_000_001L, indexed.getWordCount("cat"), "Expected the long count from the index");
+        assertEquals(counter.totalWordCount(), indexed.totalWordCount(), "Expected the long total from the index");
+        WordCountTableModel model = new WordCountTableModel(counter, true, Set.of());
+        assertEquals("cat", model.getWord(0), "Expected the most frequent word first");
+        assertEquals(6_000_000_001L, model.getCount(0), "Expected the long count in the table");
+
+        // takes one book back out
+        counter.subtract(book);
+        assertEquals(Integer.MAX_VALUE + 1L, counter.getWordCount("the"), "Expected the count after subtracting");
+        assertEquals(Integer.MAX_VALUE + 3_000_000_003L, counter.totalWordCount(), "Expected the total after subtracting");
+
+        // deletes the test files
+        Files.deleteIfExists(Paths.get(resultsFile));
+        Files.deleteIfExists(Paths.get(indexFile));
+    }
+
+    @Test
+    void testManyDistinctWords() {
+        System.out.println("Running testManyDistinctWords()");
+        // builds 50,000 distinct words such as "ab", "ac", ... from base 26 digits
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 50_000; i++) {
+            sb.append("zz");
+            for (int n = i; n > 0; n /= 26) {
+                sb.append((char) ('a' + n % 26));
+            }
+            sb.append(' ');
+        }
+        counter.processLine(sb.toString());
+        counter.processLine(sb.toString());
+
+        // checks the counts and totals
+        assertEquals(50_000, counter.getAllWordCounts().size(), "Expected 50,000 distinct words");
+        assertEquals(100_000, counter.totalWordCount(), "Expected 100,000 words in total");
+        assertEquals(2, counter.getWordCount("zzb"), "Expected 2 for 'zzb'");
+        assertEquals(2, counter.getWordCount("zzbcd"), "Expected 2 for 'zzbcd'");
+    }
+
     /**
      * Tests edge cases such as null input, punctuation, and case sensitivity.
      */
@@ -217,6 +522,37 @@ public class BookWordCounterTest {
         assertEquals(0, counter.getWordCount("!!!"), "Expected 0 for '!!!'");
     }
 
+    /**
+     * Tests that the tokenizer counts exactly the same words as the original
+     * regex based processLine() on random mixed input.
+     */
+    @Test
+    void testTokenizerMatchesRegexRules() {
+        System.out.println("Running testTokenizerMatchesRegexRules()");
+        // characters to build random lines from, including a few that
+        // lowercase to ASCII letters (Kelvin sign, dotted capital I)
+        String alphabet = "abcXYZ' \t.,-!?19\u00e9\u00df\u2014\u212a\u0130";
+        Random random = new Random(42);
+        Map<String, Long> expected = new HashMap<>();
+        for (int i = 0; i < 2_000; i++) {
+            StringBuilder line = new StringBuilder();
+            int length = random.nextInt(40);
+            for (int j = 0; j < length; j++) {
+                line.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            counter.processLine(line.toString());
+
+            // counts the same line with the original regex rules
+            String text = line.toString().toLowerCase(Locale.ROOT).replaceAll("[^a-z']", " ");
+            for (String word : text.replaceAll("[^a-zA-Z\\s]", " ").split("\\s+")) {
+                if (word.length() > 1 && !word.matches("'[a-z]")) {
+                    expected.merge(word, 1L, Long::sum);
+                }
+            }
+        }
+        assertEquals(expected, counter.getAllWordCounts(), "Expected the same counts as the regex rules");
+    }
+
 
     
 }
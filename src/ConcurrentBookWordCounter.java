@@ -0,0 +1,226 @@
+import java.io.*;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * ConcurrentBookWordCounter is a thread-safe version of BookWordCounter.
+ *
+ * processLine() and processBook() can be called from many threads at once,
+ * all counting into the same table. Each word has its own LongAdder in a
+ * ConcurrentHashMap, so threads counting different words never wait for each
+ * other and threads counting the same word spread their updates over
+ * separate cells. getWordCount() reads without taking any lock.
+ *
+ * Words are looked up straight from the tokenizer's buffer, through a
+ * WordKey that each thread reuses, so a String is only made the first time
+ * a word is seen.
+ *
+ * Counts are only exact once every writer has finished; a read made while
+ * words are being counted sees some recent state of each word.
+ *
+ * @author Zak Sheikh
+ */
+public class ConcurrentBookWordCounter {
+
+    /** One counter per word */
+    private final ConcurrentHashMap<WordKey, LongAdder> wordCountMap = new ConcurrentHashMap<>();
+
+    /** Number of words counted so far */
+    private final LongAdder totalWords = new LongAdder();
+
+    /** Each thread gets its own tokenizer and lookup key, since both keep state */
+    private final ThreadLocal<LineCounter> lineCounter;
+
+    /**
+     * A word used as a map key. A stored key holds its word as a String; a
+     * lookup key points at a word in a tokenizer's buffer and is reused for
+     * every word its thread looks up. Both hash like String.hashCode(), so
+     * either can find the other.
+     */
+    private static final class WordKey {
+        private String word;
+        private char[] buffer;
+        private int offset;
+        private int length;
+        private int hash;
+
+        /** Creates a stored key */
+        WordKey(String word) {
+            this.word = word;
+            length = word.length();
+            hash = word.hashCode();
+        }
+
+        /** Creates a lookup key, to be set before each lookup */
+        WordKey() {
+        }
+
+        /** Points this lookup key at the word buffer[offset, offset + length) */
+        WordKey set(char[] buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+            hash = WordHashing.hash(buffer, offset, length);
+            return this;
+        }
+
+        /** Returns a stored key of the same word */
+        WordKey copy() {
+            return word != null ? this : new WordKey(new String(buffer, offset, length));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof WordKey)) {
+                return false;
+            }
+            WordKey other = (WordKey) o;
+            if (other.hash != hash) {
+                return false;
+            } else if (word != null && other.word != null) {
+                return word.equals(other.word);
+            } else if (word != null) {
+                return WordHashing.matches(word, other.buffer, other.offset, other.length);
+            } else if (other.word != null) {
+                return WordHashing.matches(other.word, buffer, offset, length);
+            }
+            return Arrays.equals(buffer, offset, offset + length, other.buffer, other.offset, other.offset + other.length);
+        }
+
+        @Override
+        public String toString() {
+            return word != null ? word : new String(buffer, offset, length);
+        }
+    }
+
+    /**
+     * The tokenizer and lookup key of one thread, counting each word the
+     * tokenizer finds.
+     */
+    private final class LineCounter implements Tokenizer.TokenSink {
+        final Tokenizer tokenizer;
+        final WordKey key = new WordKey();
+
+        LineCounter(Tokenizer tokenizer) {
+            this.tokenizer = tokenizer;
+        }
+
+        @Override
+        public void accept(char[] buffer, int offset, int length) {
+            LongAdder count = wordCountMap.get(key.set(buffer, offset, length));
+            if (count == null) {
+                // only the first sighting of a word makes its String and takes the bin lock
+                count = wordCountMap.computeIfAbsent(key.copy(), w -> new LongAdder());
+            }
+            count.increment();
+            totalWords.increment();
+        }
+    }
+
+    /**
+     * Constructor for the ConcurrentBookWordCounter class.
+     */
+    public ConcurrentBookWordCounter() {
+        this(WordTokenizer::new);
+    }
+
+    /**
+     * Constructor for the ConcurrentBookWordCounter class with a custom tokenizer.
+     *
+     * @param tokenizers Creates the tokenizer used by each thread.
+     */
+    public ConcurrentBookWordCounter(Supplier<? extends Tokenizer> tokenizers) {
+        lineCounter = ThreadLocal.withInitial(() -> new LineCounter(tokenizers.get()));
+    }
+
+    /**
+     * Retrieves the count of a specific word without blocking writers.
+     *
+     * @param word The word to search for.
+     * @return The count of the word, or 0 if not found.
+     */
+    public long getWordCount(String word) {
+        LongAdder count = wordCountMap.get(new WordKey(word.toLowerCase()));
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * Returns the total number of words counted.
+     *
+     * @return The total word count.
+     */
+    public long totalWordCount() {
+        return totalWords.sum();
+    }
+
+    /**
+     * Reads a text file and counts occurrences of words. Several threads
+     * can read different files into the same counter.
+     *
+     * @param filePath The path of the text file to be read.
+     */
+    public void processBook(String filePath) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                processLine(line);
+            }
+        }
+    }
+
+    /**
+     * Processes a line of text by extracting words and counting their
+     * occurrences. Safe to call from many threads at once.
+     *
+     * @param line The line of text to process.
+     */
+    public void processLine(String line) {
+        if (line == null || line.isEmpty()) {
+            return; // do nothing on null or empty input
+        }
+        LineCounter counter = lineCounter.get();
+        counter.tokenizer.tokenize(line, counter);
+        counter.tokenizer.finish(counter);
+    }
+
+    /**
+     * Retrieves all word counts.
+     *
+     * @return A HashMap containing a copy of the word counts.
+     */
+    public Map<String, Long> getAllWordCounts() {
+        Map<String, Long> counts = new HashMap<>(wordCountMap.size() * 2);
+        wordCountMap.forEach((word, count) -> counts.put(word.toString(), count.sum()));
+        return counts;
+    }
+
+    /**
+     * Copies the current counts into a single-threaded BookWordCounter.
+     *
+     * @return A new counter holding the same counts.
+     */
+    public BookWordCounter snapshot() {
+        BookWordCounter copy = new BookWordCounter();
+        wordCountMap.forEach((word, count) -> copy.addWordCount(word.toString(), count.sum()));
+        return copy;
+    }
+
+    /**
+     * Writes the word count result to a file in dictionary order, in the
+     * same format as BookWordCounter.saveResults().
+     *
+     * @param outputFilePath The file path to save the results.
+     */
+    public void saveResults(String outputFilePath) throws IOException {
+        snapshot().saveResults(outputFilePath);
+    }
+}
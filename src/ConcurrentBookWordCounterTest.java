@@ -0,0 +1,54 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests of the ConcurrentBookWordCounter class, to be run with JUnit 5.
+ *
+ * @author Zak Sheikh
+ */
+public class ConcurrentBookWordCounterTest {
+
+    @BeforeAll
+    public static void setUpClass() {
+        System.out.println("Running ConcurrentBookWordCounterTest 📚");
+    }
+
+    /**
+     * Tests that lines counted from several threads at once give the same
+     * counts as counting them one after another.
+     */
+    @Test
+    void testProcessLineFromManyThreads() throws InterruptedException {
+        System.out.println("Running concurrent processLine() test");
+        String line = "Hi hi, my name is Zak. It's Zak's book. Test, test, book book book 123 Nice-Book!";
+        ConcurrentBookWordCounter counter = new ConcurrentBookWordCounter();
+
+        // counts the line 1,000 times on each of 8 threads
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    counter.processLine(line);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // checks against a single-threaded counter that saw the line once
+        BookWordCounter single = new BookWordCounter();
+        single.processLine(line);
+        assertEquals(8_000 * single.getWordCount("book"), counter.getWordCount("book"), "Expected: 40,000 for 'book'");
+        assertEquals(8_000 * single.getWordCount("zak"), counter.getWordCount("Zak"), "Expected: 16,000 for 'zak'");
+        assertEquals(8_000 * single.totalWordCount(), counter.totalWordCount(), "Expected 8,000 times the line total");
+        assertEquals(single.getAllWordCounts().keySet(), counter.getAllWordCounts().keySet(), "Expected the same words");
+        assertEquals(counter.getAllWordCounts(), counter.snapshot().getAllWordCounts(), "Expected the snapshot to match");
+    }
+}
@@ -0,0 +1,606 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * CorpusCounter counts the words of many books in one run and merges them
+ * into corpus-wide totals.
+ *
+ * Books are counted concurrently on a fixed pool of threads. At most twice
+ * as many books as threads are in flight at a time, so a corpus of tens of
+ * thousands of books does not hold every counter in memory: each finished
+ * book is written to its own results file, merged into the corpus counter
+ * and dropped. Books whose cached index is up to date are not read again,
+ * and the indexes of books no longer in the corpus are deleted after each
+ * run.
+ *
+ * A manifest of each book's size, modification time, checksum and results
+ * file is kept next to the results, so update() can re-count a corpus by
+ * reading only the books that were added or changed. The manifest also
+ * records the checksum of the corpus results it was written with, and a
+ * changed book's new results go to a new file, so a run that stops part way
+ * never leaves a manifest that disagrees with the files next to it.
+ *
+ * @author Zak Sheikh
+ */
+public class CorpusCounter {
+
+    /** Name of the corpus-wide results file */
+    public static final String CORPUS_RESULTS_FILE = "WordCountResults-corpus.txt";
+
+    /** Name of the file listing the counted books, used by update() */
+    public static final String MANIFEST_FILE = "corpus-manifest.tsv";
+
+    /** Starts the manifest line holding the checksum of the corpus results */
+    private static final String CORPUS_CHECKSUM_PREFIX = "# corpus\t";
+
+    /** Number of books counted at the same time */
+    private final int threads;
+
+    /** Where the results files are written */
+    private final Path outputDirectory;
+
+    /** Where book indexes are cached, or null to always read the books */
+    private final Path indexDirectory;
+
+    /** Books that could not be counted, with the reason */
+    private final Map<Path, String> failures = new LinkedHashMap<>();
+
+    /** Number of unchanged books skipped by the last update */
+    private int skipped;
+
+    /** Number of books removed from the corpus by the last update */
+    private int removed;
+
+    /** Metrics every book is measured into, or null */
+    private CounterMetrics metrics;
+
+    /**
+     * Creates a corpus counter.
+     *
+     * @param threads         Number of books to count at the same time.
+     * @param outputDirectory Where to write the per-book and corpus results.
+     * @param indexDirectory  Where to cache book indexes, or null to always
+     *                        read the books. Indexes in it that are not of
+     *                        the books counted are deleted, so it should not
+     *                        be shared with other corpora.
+     */
+    public CorpusCounter(int threads, Path outputDirectory, Path indexDirectory) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        this.threads = threads;
+        this.outputDirectory = outputDirectory;
+        this.indexDirectory = indexDirectory;
+    }
+
+    /**
+     * Measures every book read and every results file written from now on,
+     * including the corpus results.
+     *
+     * @param metrics The metrics to add to, or null to turn them off.
+     */
+    public void setMetrics(CounterMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Finds the books named by files, directories and glob patterns.
+     * Directories are searched recursively for .txt files. A pattern such
+     * as books/*.txt or books/**.txt is matched below its first directory
+     * without wildcards.
+     *
+     * @param inputs The files, directories and patterns.
+     * @return The books found, sorted and without duplicates.
+     */
+    public static List<Path> findBooks(List<String> inputs) throws IOException {
+        TreeSet<Path> books = new TreeSet<>();
+        for (String input : inputs) {
+            if (isPattern(input)) {
+                // walks from the part of the pattern before the first wildcard
+                StringBuilder base = new StringBuilder();
+                for (String part : input.split("[/\\\\]", -1)) {
+                    if (isPattern(part)) {
+                        break;
+                    }
+                    base.append(part).append('/');
+                }
+                Path root = Paths.get(base.length() == 0 ? "." : base.toString());
+                // matches against normalized paths, which have no leading ./
+                String glob = input.startsWith("./") ? input.substring(2) : input;
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+                if (Files.isDirectory(root)) {
+                    try (Stream<Path> files = Files.walk(root)) {
+                        files.filter(Files::isRegularFile)
+                            .map(Path::normalize)
+                            .filter(matcher::matches)
+                            .forEach(books::add);
+                    }
+                }
+            } else {
+                Path path = Paths.get(input);
+                if (Files.isDirectory(path)) {
+                    try (Stream<Path> files = Files.walk(path)) {
+                        files.filter(file -> Files.isRegularFile(file) && file.toString().endsWith(".txt"))
+                            .forEach(file -> books.add(file.normalize()));
+                    }
+                } else if (Files.isRegularFile(path)) {
+                    books.add(path.normalize());
+                } else {
+                    throw new IOException("No such file or directory: " + input);
+                }
+            }
+        }
+        return new ArrayList<>(books);
+    }
+
+    /**
+     * Counts every book, writes each book's results and the corpus results,
+     * and returns the merged counts. A manifest of the books is written with
+     * the results, so a later update() can skip the books that did not
+     * change.
+     *
+     * @param books The books to count.
+     * @return A counter holding the counts of all books that were counted.
+     */
+    public BookWordCounter run(List<Path> books) throws IOException, InterruptedException {
+        Files.createDirectories(outputDirectory);
+        // results files are overwritten below, so an old manifest no longer describes them
+        Files.deleteIfExists(outputDirectory.resolve(MANIFEST_FILE));
+        failures.clear();
+        skipped = 0;
+        removed = 0;
+        Map<Path, ManifestEntry> manifest = new LinkedHashMap<>();
+        BookWordCounter corpus = new BookWordCounter();
+        corpus.setMetrics(metrics);
+        countAll(books, outputFilesFor(books, manifest), corpus, manifest);
+
+        Path corpusFile = outputDirectory.resolve(CORPUS_RESULTS_FILE);
+        saveCorpus(corpus, corpusFile);
+        writeManifest(manifest, WordCountIndex.checksum(corpusFile));
+        pruneIndexes(books);
+        return corpus;
+    }
+
+    /**
+     * Updates the results of an earlier run to match the given books,
+     * reading only the books that changed.
+     *
+     * A book whose size and modification time match the manifest, or whose
+     * contents still have the same checksum, is skipped. A changed book has
+     * its old results subtracted from the corpus and its new counts added,
+     * and a book that is gone has its old results subtracted and deleted.
+     * So the time taken follows the amount of changed data, not the size of
+     * the corpus. Without a manifest, with results files missing, with
+     * corpus results that are not the ones the manifest was written with,
+     * or with book results holding more of a word than the corpus, every
+     * book is counted as in run().
+     *
+     * @param books The books of the corpus now.
+     * @return A counter holding the counts of all books in the corpus.
+     */
+    public BookWordCounter update(List<Path> books) throws IOException, InterruptedException {
+        Path manifestFile = outputDirectory.resolve(MANIFEST_FILE);
+        Path corpusFile = outputDirectory.resolve(CORPUS_RESULTS_FILE);
+        if (!Files.isRegularFile(manifestFile) || !Files.isRegularFile(corpusFile)) {
+            return run(books);
+        }
+        // falls back to a full run if the corpus results were replaced without the manifest
+        Long corpusChecksum = readCorpusChecksum(manifestFile);
+        if (corpusChecksum == null || corpusChecksum != WordCountIndex.checksum(corpusFile)) {
+            return run(books);
+        }
+        Map<Path, ManifestEntry> manifest = readManifest(manifestFile);
+        // falls back to a full run if any stored results are gone
+        for (ManifestEntry entry : manifest.values()) {
+            if (!Files.isRegularFile(outputDirectory.resolve(entry.resultsFile))) {
+                return run(books);
+            }
+        }
+        failures.clear();
+        skipped = 0;
+        removed = 0;
+
+        // sorts the books into unchanged and changed or new
+        List<Path> changed = new ArrayList<>();
+        Set<Path> current = new HashSet<>();
+        Set<Path> changedKeys = new HashSet<>();
+        for (Path book : books) {
+            Path key = key(book);
+            current.add(key);
+            ManifestEntry entry = manifest.get(key);
+            if (entry != null && isUnchanged(book, entry)) {
+                skipped++;
+            } else {
+                changed.add(book);
+                changedKeys.add(key);
+            }
+        }
+
+        // takes the old counts of changed and removed books out of the corpus
+        BookWordCounter corpus = BookWordCounter.loadResults(corpusFile.toString());
+        corpus.setMetrics(metrics);
+        List<Path> oldResults = new ArrayList<>();
+        for (Iterator<Map.Entry<Path, ManifestEntry>> it = manifest.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, ManifestEntry> stored = it.next();
+            boolean gone = !current.contains(stored.getKey());
+            if (gone || changedKeys.contains(stored.getKey())) {
+                Path resultsFile = outputDirectory.resolve(stored.getValue().resultsFile);
+                try {
+                    corpus.subtract(BookWordCounter.loadResults(resultsFile.toString()));
+                } catch (IllegalArgumentException e) {
+                    // the stored results were not all merged into the corpus, so it is counted again
+                    return run(books);
+                }
+                oldResults.add(resultsFile);
+                if (gone) {
+                    it.remove();
+                    removed++;
+                }
+            }
+        }
+
+        // changed books get new results files, so the old ones stay until the new manifest is written
+        countAll(changed, outputFilesFor(changed, manifest), corpus, manifest);
+        saveCorpus(corpus, corpusFile);
+        writeManifest(manifest, WordCountIndex.checksum(corpusFile));
+        for (Path resultsFile : oldResults) {
+            Files.deleteIfExists(resultsFile);
+        }
+        pruneIndexes(books);
+        return corpus;
+    }
+
+    /**
+     * Returns the books that could not be counted by the last run, with the
+     * reason.
+     *
+     * @return A map from book to error message.
+     */
+    public Map<Path, String> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Returns the results file of a book: WordCountResults-name.txt, like
+     * Main writes for a single book.
+     *
+     * @param book The book.
+     * @return The file name.
+     */
+    public static String resultsFileName(Path book) {
+        return "WordCountResults-" + book.getFileName().toString().replace(".txt", "") + ".txt";
+    }
+
+    /**
+     * Returns the number of unchanged books skipped by the last update().
+     *
+     * @return The number of books skipped.
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Returns the number of books the last update() found gone from the
+     * corpus.
+     *
+     * @return The number of books removed.
+     */
+    public int getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Counts the books on the pool, merging each into the corpus and
+     * recording it in the manifest as it finishes.
+     */
+    private void countAll(List<Path> books, Map<Path, Path> outputFiles, BookWordCounter corpus,
+            Map<Path, ManifestEntry> manifest) throws InterruptedException {
+        if (books.isEmpty()) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CompletionService<CountedBook> completed = new ExecutorCompletionService<>(executor);
+            Map<Future<CountedBook>, Path> running = new HashMap<>();
+            int next = 0;
+            while (next < books.size() || !running.isEmpty()) {
+                // keeps a few books queued per thread, but no more
+                while (next < books.size() && running.size() < threads * 2) {
+                    Path book = books.get(next++);
+                    Path outputFile = outputFiles.get(book);
+                    running.put(completed.submit(() -> countBook(book, outputFile)), book);
+                }
+                // merges whichever book finishes first
+                Future<CountedBook> done = completed.take();
+                Path book = running.remove(done);
+                try {
+                    CountedBook counted = done.get();
+                    corpus.merge(counted.counter);
+                    manifest.put(key(book), counted.entry);
+                } catch (ExecutionException e) {
+                    // leaves the book out of the manifest so the next update counts it again
+                    manifest.remove(key(book));
+                    failures.put(book, String.valueOf(e.getCause().getMessage()));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Picks the results file of each book. Books whose file name is taken,
+     * by another book or by results in the manifest, get a hash of their
+     * path added, and a number after that if it is taken too. So a changed
+     * book never writes over the results the manifest still points at.
+     */
+    private Map<Path, Path> outputFilesFor(List<Path> books, Map<Path, ManifestEntry> manifest) {
+        // keeps a book named corpus.txt from overwriting the corpus results
+        Set<String> taken = new HashSet<>();
+        taken.add(CORPUS_RESULTS_FILE);
+        for (ManifestEntry entry : manifest.values()) {
+            taken.add(entry.resultsFile);
+        }
+        Map<String, Integer> uses = new HashMap<>();
+        for (Path book : books) {
+            uses.merge(resultsFileName(book), 1, Integer::sum);
+        }
+        Map<Path, Path> outputFiles = new HashMap<>();
+        for (Path book : books) {
+            String name = resultsFileName(book);
+            if (uses.get(name) > 1 || taken.contains(name)) {
+                String base = name.substring(0, name.length() - ".txt".length()) + "-"
+                    + Integer.toHexString(key(book).toString().hashCode());
+                name = base + ".txt";
+                for (int n = 2; taken.contains(name); n++) {
+                    name = base + "-" + n + ".txt";
+                }
+            }
+            taken.add(name);
+            outputFiles.put(book, outputDirectory.resolve(name));
+        }
+        return outputFiles;
+    }
+
+    /**
+     * Counts one book, reusing its cached index if it is up to date, and
+     * writes its results. The book's size, time and checksum are taken
+     * first, so a change made while it is counted is seen by the next
+     * update.
+     */
+    private CountedBook countBook(Path book, Path outputFile) throws IOException {
+        ManifestEntry entry = new ManifestEntry(Files.size(book), Files.getLastModifiedTime(book).toMillis(),
+            WordCountIndex.checksum(book), outputFile.getFileName().toString());
+        BookWordCounter counter;
+        if (indexDirectory != null) {
+            counter = BookWordCounter.loadOrProcessBook(book.toString(),
+                WordCountIndex.cacheFileFor(book, indexDirectory).toString(), metrics);
+        } else {
+            counter = new BookWordCounter();
+            counter.setMetrics(metrics);
+            counter.processBook(book.toString());
+        }
+        try {
+            counter.saveResults(outputFile.toString());
+        } catch (IOException | RuntimeException e) {
+            // leaves no half-written results behind, since no manifest will name them
+            Files.deleteIfExists(outputFile);
+            throw e;
+        }
+        return new CountedBook(counter, entry);
+    }
+
+    /**
+     * Checks whether a book matches its manifest entry. The checksum is
+     * only read when the modification time changed but the size did not,
+     * and the entry takes the new time if the contents are the same.
+     */
+    private static boolean isUnchanged(Path book, ManifestEntry entry) {
+        try {
+            if (Files.size(book) != entry.size) {
+                return false;
+            }
+            long modified = Files.getLastModifiedTime(book).toMillis();
+            if (modified == entry.modified) {
+                return true;
+            }
+            if (WordCountIndex.checksum(book) != entry.checksum) {
+                return false;
+            }
+            entry.modified = modified;
+            return true;
+        } catch (IOException e) {
+            // counts the book again, which reports the error
+            return false;
+        }
+    }
+
+    /**
+     * Reads the manifest written by an earlier run. Each line holds a
+     * book's path, size, modification time, checksum and results file,
+     * separated by tabs.
+     */
+    private static Map<Path, ManifestEntry> readManifest(Path manifestFile) throws IOException {
+        Map<Path, ManifestEntry> manifest = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(manifestFile, StandardCharsets.UTF_8)) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            // splits from the right, so a tab in a path is kept
+            String[] fields = new String[5];
+            int end = line.length();
+            for (int i = 4; i > 0; i--) {
+                int tab = line.lastIndexOf('\t', end - 1);
+                if (tab < 0) {
+                    throw new IOException("Bad manifest line: " + line);
+                }
+                fields[i] = line.substring(tab + 1, end);
+                end = tab;
+            }
+            fields[0] = line.substring(0, end);
+            try {
+                manifest.put(Paths.get(fields[0]), new ManifestEntry(Long.parseLong(fields[1]),
+                    Long.parseLong(fields[2]), Long.parseLong(fields[3], 16), fields[4]));
+            } catch (NumberFormatException e) {
+                throw new IOException("Bad manifest line: " + line, e);
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Reads the checksum of the corpus results the manifest was written
+     * with, from its "# corpus" line.
+     *
+     * @return The checksum, or null for a manifest without one.
+     */
+    private static Long readCorpusChecksum(Path manifestFile) throws IOException {
+        for (String line : Files.readAllLines(manifestFile, StandardCharsets.UTF_8)) {
+            if (line.startsWith(CORPUS_CHECKSUM_PREFIX)) {
+                try {
+                    return Long.parseUnsignedLong(line.substring(CORPUS_CHECKSUM_PREFIX.length()), 16);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Bad manifest line: " + line, e);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes the manifest of the books counted so far, with the checksum of
+     * the corpus results it goes with. It is written last, so a run that
+     * stops earlier leaves the old manifest, which no longer matches the
+     * corpus results.
+     */
+    private void writeManifest(Map<Path, ManifestEntry> manifest, long corpusChecksum) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("# path\tsize\tmodified\tcrc32c\tresults");
+        lines.add(CORPUS_CHECKSUM_PREFIX + Long.toHexString(corpusChecksum));
+        for (Map.Entry<Path, ManifestEntry> stored : manifest.entrySet()) {
+            ManifestEntry entry = stored.getValue();
+            lines.add(stored.getKey() + "\t" + entry.size + "\t" + entry.modified + "\t"
+                + Long.toHexString(entry.checksum) + "\t" + entry.resultsFile);
+        }
+        writeAtomically(outputDirectory.resolve(MANIFEST_FILE),
+            temp -> Files.write(temp, lines, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes the corpus-wide results.
+     */
+    private void saveCorpus(BookWordCounter corpus, Path corpusFile) throws IOException {
+        writeAtomically(corpusFile, temp -> corpus.saveResults(temp.toString()));
+    }
+
+    /**
+     * Deletes the cached indexes of books that are not in the corpus, such
+     * as books that were removed or moved.
+     */
+    private void pruneIndexes(List<Path> books) throws IOException {
+        if (indexDirectory == null || !Files.isDirectory(indexDirectory)) {
+            return;
+        }
+        Set<Path> kept = new HashSet<>();
+        for (Path book : books) {
+            kept.add(WordCountIndex.cacheFileFor(book, indexDirectory));
+        }
+        try (DirectoryStream<Path> indexes = Files.newDirectoryStream(indexDirectory, "*.bwci")) {
+            for (Path index : indexes) {
+                if (!kept.contains(index)) {
+                    Files.deleteIfExists(index);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a file under a temporary name and then moves it into place,
+     * so a run that fails part way leaves the last complete file behind
+     * rather than half of a new one.
+     */
+    private void writeAtomically(Path file, FileContents contents) throws IOException {
+        Path temp = Files.createTempFile(outputDirectory, file.getFileName().toString(), ".tmp");
+        try {
+            contents.writeTo(temp);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Writes the contents of a file.
+     */
+    private interface FileContents {
+        void writeTo(Path file) throws IOException;
+    }
+
+    /**
+     * Returns the path a book is stored under in the manifest.
+     */
+    private static Path key(Path book) {
+        return book.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Checks whether an input has glob wildcards.
+     */
+    private static boolean isPattern(String input) {
+        return input.contains("*") || input.contains("?") || input.contains("[") || input.contains("{");
+    }
+
+    /**
+     * What the manifest records about a counted book.
+     */
+    private static final class ManifestEntry {
+        final long size;
+        long modified;
+        final long checksum;
+        final String resultsFile;
+
+        ManifestEntry(long size, long modified, long checksum, String resultsFile) {
+            this.size = size;
+            this.modified = modified;
+            this.checksum = checksum;
+            this.resultsFile = resultsFile;
+        }
+    }
+
+    /**
+     * A book's counts with its manifest entry.
+     */
+    private static final class CountedBook {
+        final BookWordCounter counter;
+        final ManifestEntry entry;
+
+        CountedBook(BookWordCounter counter, ManifestEntry entry) {
+            this.counter = counter;
+            this.entry = entry;
+        }
+    }
+}
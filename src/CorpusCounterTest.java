@@ -0,0 +1,180 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Unit tests of the CorpusCounter class, to be run with JUnit 5.
+ *
+ * @author Zak Sheikh
+ */
+public class CorpusCounterTest {
+
+    @BeforeAll
+    public static void setUpClass() {
+        System.out.println("Running CorpusCounterTest 📚");
+    }
+
+    /**
+     * Tests that the corpus counts are the sum of the book counts, and that
+     * each book's results are written.
+     */
+    @Test
+    void testRun(@TempDir Path directory) throws Exception {
+        System.out.println("Running CorpusCounter run() test");
+        Path books = Files.createDirectories(directory.resolve("books"));
+        Path first = Files.writeString(books.resolve("first.txt"), "The cat sat on the mat");
+        Path second = Files.writeString(Files.createDirectories(books.resolve("more")).resolve("second.txt"), "The dog sat");
+        Path third = Files.writeString(Files.createDirectories(books.resolve("other")).resolve("first.txt"), "cat cat");
+        Path output = directory.resolve("output");
+
+        CorpusCounter corpusCounter = new CorpusCounter(2, output, directory.resolve("index"));
+        BookWordCounter corpus = corpusCounter.run(List.of(first, second, third));
+        assertEquals(11, corpus.totalWordCount(), "Expected the words of all books");
+        assertEquals(3, corpus.getWordCount("the"), "Expected: 3");
+        assertEquals(3, corpus.getWordCount("cat"), "Expected: 3");
+        assertTrue(corpusCounter.getFailures().isEmpty(), "Expected no failures");
+
+        // checks the results files, including the two books named first.txt
+        assertTrue(Files.readString(output.resolve(CorpusCounter.CORPUS_RESULTS_FILE)).startsWith("Total words counted: 11"),
+            "Expected the corpus results");
+        assertTrue(Files.exists(output.resolve("WordCountResults-second.txt")), "Expected the results of second.txt");
+        try (Stream<Path> files = Files.list(output)) {
+            assertEquals(5, files.count(), "Expected three book results, the corpus results and the manifest");
+        }
+
+        // counts again from the cached indexes, and reports a missing book
+        Files.delete(second);
+        corpus = corpusCounter.run(List.of(first, second, third));
+        assertEquals(8, corpus.totalWordCount(), "Expected the words of the remaining books");
+        assertEquals(List.of(second), List.copyOf(corpusCounter.getFailures().keySet()), "Expected the missing book to fail");
+
+        // deletes the indexes of books that are no longer counted
+        Path index = directory.resolve("index");
+        try (Stream<Path> files = Files.list(index)) {
+            assertEquals(3, files.count(), "Expected an index of each book counted");
+        }
+        corpusCounter.run(List.of(first));
+        try (Stream<Path> files = Files.list(index)) {
+            assertEquals(List.of(WordCountIndex.cacheFileFor(first, index)), files.collect(Collectors.toList()),
+                "Expected only the index of the remaining book");
+        }
+    }
+
+    /**
+     * Tests that an update after books are changed, added and removed gives
+     * the same results as counting the corpus again.
+     */
+    @Test
+    void testUpdate(@TempDir Path directory) throws Exception {
+        System.out.println("Running CorpusCounter update() test");
+        Path books = Files.createDirectories(directory.resolve("books"));
+        Path first = Files.writeString(books.resolve("first.txt"), "The cat sat on the mat");
+        Path second = Files.writeString(books.resolve("second.txt"), "The dog sat");
+        Path third = Files.writeString(books.resolve("third.txt"), "cat cat");
+        Path output = directory.resolve("output");
+        CorpusCounter corpusCounter = new CorpusCounter(2, output, null);
+
+        // counts everything the first time
+        corpusCounter.update(List.of(first, second, third));
+        assertEquals(0, corpusCounter.getSkipped(), "Expected no earlier run to reuse");
+
+        // skips books that were only touched
+        Files.setLastModifiedTime(third, FileTime.fromMillis(0));
+        BookWordCounter corpus = corpusCounter.update(List.of(first, second, third));
+        assertEquals(3, corpusCounter.getSkipped(), "Expected all books to be skipped");
+        assertEquals(11, corpus.totalWordCount(), "Expected: 11");
+
+        // changes one book, removes one and adds one
+        Files.writeString(first, "The bird sat");
+        Path fourth = Files.writeString(books.resolve("fourth.txt"), "dog dog bird");
+        corpus = corpusCounter.update(List.of(first, third, fourth));
+        assertEquals(1, corpusCounter.getSkipped(), "Expected third.txt to be skipped");
+        assertEquals(1, corpusCounter.getRemoved(), "Expected second.txt to be removed");
+        assertFalse(Files.exists(output.resolve("WordCountResults-second.txt")), "Expected the old results deleted");
+
+        // checks against a full count into another directory
+        BookWordCounter full = new CorpusCounter(2, directory.resolve("full"), null).run(List.of(first, third, fourth));
+        assertEquals(full.getAllWordCounts(), corpus.getAllWordCounts(), "Expected the same counts as a full run");
+        assertEquals(full.totalWordCount(), corpus.totalWordCount(), "Expected the same total as a full run");
+        assertEquals(Files.readString(directory.resolve("full").resolve(CorpusCounter.CORPUS_RESULTS_FILE)),
+            Files.readString(output.resolve(CorpusCounter.CORPUS_RESULTS_FILE)), "Expected the same corpus results");
+
+        // counts everything again if the manifest is gone
+        Files.delete(output.resolve(CorpusCounter.MANIFEST_FILE));
+        corpus = corpusCounter.update(List.of(first, third, fourth));
+        assertEquals(0, corpusCounter.getSkipped(), "Expected a full run");
+        assertEquals(full.getAllWordCounts(), corpus.getAllWordCounts(), "Expected the same counts as a full run");
+    }
+
+    /**
+     * Tests that an update which stopped before writing its manifest is not
+     * trusted: the old manifest still names the old results of a changed
+     * book, and no longer matches the corpus results. Also tests that stored
+     * results which cannot be subtracted cause a full count.
+     */
+    @Test
+    void testInterruptedUpdate(@TempDir Path directory) throws Exception {
+        System.out.println("Running CorpusCounter interrupted update() test");
+        Path books = Files.createDirectories(directory.resolve("books"));
+        Path first = Files.writeString(books.resolve("first.txt"), "The cat sat on the mat");
+        Path second = Files.writeString(books.resolve("second.txt"), "The dog sat");
+        Path output = directory.resolve("output");
+        CorpusCounter corpusCounter = new CorpusCounter(2, output, null);
+        corpusCounter.run(List.of(first, second));
+        Path manifest = output.resolve(CorpusCounter.MANIFEST_FILE);
+        String oldManifest = Files.readString(manifest);
+        String oldResults = Files.readString(output.resolve("WordCountResults-first.txt"));
+
+        // changes a book, then puts the old manifest back as if the update had stopped before writing it
+        Files.writeString(first, "The bird sat");
+        corpusCounter.update(List.of(first, second));
+        assertFalse(Files.readString(manifest).contains("WordCountResults-first.txt\n"),
+            "Expected the changed book's results in a new file");
+        Files.writeString(output.resolve("WordCountResults-first.txt"), oldResults);
+        Files.writeString(manifest, oldManifest);
+
+        BookWordCounter corpus = corpusCounter.update(List.of(first, second));
+        assertEquals(0, corpusCounter.getSkipped(), "Expected a full run");
+        BookWordCounter full = new CorpusCounter(2, directory.resolve("full"), null).run(List.of(first, second));
+        assertEquals(full.getAllWordCounts(), corpus.getAllWordCounts(), "Expected the same counts as a full run");
+
+        // counts everything again if a book's stored results hold more than the corpus
+        Files.writeString(output.resolve("WordCountResults-second.txt"),
+            "Total words counted: 9" + System.lineSeparator() + "dog: 9" + System.lineSeparator());
+        Files.writeString(second, "The dog sat down");
+        corpus = corpusCounter.update(List.of(first, second));
+        assertEquals(0, corpusCounter.getSkipped(), "Expected a full run");
+        full = new CorpusCounter(2, directory.resolve("full"), null).run(List.of(first, second));
+        assertEquals(full.getAllWordCounts(), corpus.getAllWordCounts(), "Expected the same counts as a full run");
+        assertEquals(full.totalWordCount(), corpus.totalWordCount(), "Expected the same total as a full run");
+    }
+
+    /**
+     * Tests that files, directories and patterns find the right books.
+     */
+    @Test
+    void testFindBooks(@TempDir Path directory) throws IOException {
+        System.out.println("Running CorpusCounter findBooks() test");
+        Path books = Files.createDirectories(directory.resolve("books"));
+        Path nested = Files.createDirectories(books.resolve("nested"));
+        Path a = Files.writeString(books.resolve("a.txt"), "a");
+        Path b = Files.writeString(nested.resolve("b.txt"), "b");
+        Path notes = Files.writeString(books.resolve("notes.md"), "c");
+
+        assertEquals(List.of(a, b), CorpusCounter.findBooks(List.of(books.toString())), "Expected the .txt files");
+        assertEquals(List.of(a), CorpusCounter.findBooks(List.of(books + "/*.txt")), "Expected the top level match");
+        assertEquals(List.of(a, b), CorpusCounter.findBooks(List.of(books + "/**.txt")), "Expected the nested match");
+        assertEquals(List.of(notes), CorpusCounter.findBooks(List.of(notes.toString(), notes.toString())),
+            "Expected a named file once");
+        assertThrows(IOException.class, () -> CorpusCounter.findBooks(List.of(books.resolve("missing.txt").toString())));
+    }
+}
@@ -0,0 +1,100 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * CounterEvents holds the Java Flight Recorder events of the word counter,
+ * so a run recorded with -XX:StartFlightRecording shows when each book was
+ * read, each results file written, the GUI table filled and each definition
+ * fetched, next to the garbage collections and allocations of the JVM.
+ *
+ * Each event times itself from begin() to commit(). While no recording has
+ * the events enabled, shouldCommit() is false and the event costs next to
+ * nothing, so the fields are only filled in when it is true.
+ *
+ * @author Zak Sheikh
+ */
+final class CounterEvents {
+
+    /** The category all events are shown under */
+    static final String CATEGORY = "Book Word Counter";
+
+    private CounterEvents() {
+    }
+
+    /**
+     * The fields shared by events about a book and its counts.
+     */
+    @Category(CATEGORY)
+    @StackTrace(false)
+    abstract static class BookEvent extends Event {
+
+        @Label("File")
+        String fileName;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Tokens")
+        @Description("Words counted, not including skipped stop words")
+        long tokens;
+
+        @Label("Distinct Words")
+        long distinctWords;
+    }
+
+    /**
+     * Emitted by BookWordCounter.processBook() for each book read.
+     */
+    @Name("bookwordcounter.ProcessBook")
+    @Label("Process Book")
+    static final class ProcessBook extends BookEvent {
+    }
+
+    /**
+     * Emitted by BookWordCounter.saveResults() for each results file written.
+     */
+    @Name("bookwordcounter.SaveResults")
+    @Label("Save Results")
+    static final class SaveResults extends BookEvent {
+    }
+
+    /**
+     * Emitted each time the GUI fills its table, with the rows shown as the
+     * distinct words.
+     */
+    @Name("bookwordcounter.PopulateTable")
+    @Label("Populate Table")
+    static final class PopulateTable extends BookEvent {
+    }
+
+    /**
+     * Emitted when the definition dialog has its definition, or gives up.
+     */
+    @Name("bookwordcounter.DefinitionFetch")
+    @Label("Definition Fetch")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class DefinitionFetch extends Event {
+
+        @Label("Word")
+        String word;
+
+        @Label("Bytes")
+        @Description("Length of the definition in UTF-8")
+        @DataAmount
+        long bytes;
+
+        @Label("Cached")
+        @Description("Whether the definition was already in memory")
+        boolean cached;
+
+        @Label("Failed")
+        boolean failed;
+    }
+}
@@ -0,0 +1,139 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Unit tests of the flight recorder events in CounterEvents, to be run with
+ * JUnit 5. Each test records the events it causes with a RecordingStream.
+ *
+ * @author Zak Sheikh
+ */
+public class CounterEventsTest {
+
+    @BeforeAll
+    public static void setUpClass() {
+        System.out.println("Running CounterEventsTest 📚");
+    }
+
+    /**
+     * Records the events with the given names while the action runs, and
+     * waits until the expected number of each has arrived.
+     */
+    private static Map<String, List<RecordedEvent>> record(Map<String, Integer> expected, Action action)
+            throws Exception {
+        Map<String, List<RecordedEvent>> events = new ConcurrentHashMap<>();
+        CountDownLatch arrived = new CountDownLatch(expected.values().stream().mapToInt(Integer::intValue).sum());
+        try (RecordingStream stream = new RecordingStream()) {
+            for (String name : expected.keySet()) {
+                events.put(name, new CopyOnWriteArrayList<>());
+                stream.enable(name);
+                stream.onEvent(name, event -> {
+                    events.get(name).add(event);
+                    arrived.countDown();
+                });
+            }
+            stream.startAsync();
+            action.run();
+            assertTrue(arrived.await(30, TimeUnit.SECONDS), "Expected the events to arrive");
+        }
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), events.get(entry.getKey()).size(), "Expected each " + entry.getKey());
+        }
+        return events;
+    }
+
+    /** Work to record */
+    private interface Action {
+        void run() throws Exception;
+    }
+
+    /**
+     * Tests that reading a book and saving its results are recorded with
+     * the file, its size and the counts.
+     */
+    @Test
+    void testBookEvents(@TempDir Path directory) throws Exception {
+        System.out.println("Running CounterEvents book test");
+        Path book = directory.resolve("book.txt");
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(book))) {
+            for (int i = 0; i < 1_000; i++) {
+                writer.println("The cat sat on mat " + i % 10 + ".");
+            }
+        }
+        Path results = directory.resolve("results.txt");
+        BookWordCounter counter = new BookWordCounter();
+
+        Map<String, List<RecordedEvent>> events = record(
+            Map.of("bookwordcounter.ProcessBook", 1, "bookwordcounter.SaveResults", 1), () -> {
+                counter.processBook(book.toString());
+                counter.saveResults(results.toString());
+            });
+
+        RecordedEvent read = events.get("bookwordcounter.ProcessBook").get(0);
+        assertEquals(book.toString(), read.getString("fileName"), "Expected the book");
+        assertEquals(Files.size(book), read.getLong("bytes"), "Expected the size of the book");
+        assertEquals(counter.totalWordCount(), read.getLong("tokens"), "Expected the words counted");
+        assertEquals(counter.distinctWordCount(), read.getLong("distinctWords"), "Expected the distinct words");
+        assertFalse(read.getDuration().isNegative(), "Expected a duration");
+
+        RecordedEvent saved = events.get("bookwordcounter.SaveResults").get(0);
+        assertEquals(results.toString(), saved.getString("fileName"), "Expected the results file");
+        assertEquals(Files.size(results), saved.getLong("bytes"), "Expected the size of the results");
+        assertEquals(counter.totalWordCount(), saved.getLong("tokens"), "Expected the words saved");
+        assertEquals(counter.distinctWordCount(), saved.getLong("distinctWords"), "Expected the words saved");
+        assertEquals("Book Word Counter", saved.getEventType().getCategoryNames().get(0), "Expected the category");
+    }
+
+    /**
+     * Tests that fetched, cached and failed definitions are recorded.
+     */
+    @Test
+    void testDefinitionFetchEvents() throws Exception {
+        System.out.println("Running CounterEvents definition fetch test");
+        DefinitionService service = new DefinitionService(word -> {
+            if (word.equals("zzz")) {
+                throw new IOException("No such word");
+            }
+            return "noun: a " + word;
+        }, 10, Duration.ofMinutes(1), null);
+        try {
+            Map<String, List<RecordedEvent>> events = record(Map.of("bookwordcounter.DefinitionFetch", 3), () -> {
+                assertEquals("noun: a café", DictionaryLookupDialog.fetch("café", service, part -> { }).get());
+                assertEquals("noun: a café", DictionaryLookupDialog.fetch("café", service, part -> { }).get());
+                DictionaryLookupDialog.fetch("zzz", service, part -> { }).handle((definition, error) -> null).get();
+            });
+
+            List<RecordedEvent> fetches = events.get("bookwordcounter.DefinitionFetch");
+            for (RecordedEvent fetch : fetches) {
+                if (fetch.getString("word").equals("zzz")) {
+                    assertTrue(fetch.getBoolean("failed"), "Expected the failure");
+                    assertEquals(0, fetch.getLong("bytes"), "Expected no definition");
+                } else {
+                    assertEquals("café", fetch.getString("word"), "Expected the word");
+                    assertEquals("noun: a café".getBytes("UTF-8").length, fetch.getLong("bytes"),
+                        "Expected the UTF-8 length");
+                    assertFalse(fetch.getBoolean("failed"), "Expected no failure");
+                }
+            }
+            assertEquals(1, fetches.stream().filter(fetch -> fetch.getBoolean("cached")).count(),
+                "Expected the second lookup from memory");
+        } finally {
+            service.shutdown();
+        }
+    }
+}
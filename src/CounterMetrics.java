@@ -0,0 +1,437 @@
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Locale;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * CounterMetrics records where the time goes while books are counted: how
+ * many bytes, lines and words were read and how fast, how the number of
+ * distinct words grew, how often the word table had to grow, how the time
+ * splits between reading input, tokenizing, counting and writing results,
+ * and how much was allocated per word.
+ *
+ * A counter only measures itself once it is given a CounterMetrics with
+ * setMetrics(). Until then no clock is read and nothing is recorded, so
+ * counting costs the same as without metrics. Once enabled, input is timed
+ * a block at a time and only one word in every SAMPLE_INTERVAL is timed.
+ * Each counter keeps its own figures in a Recorder that is added to the
+ * shared totals once per book, so the metrics can stay on and be shared by
+ * counters on several threads.
+ *
+ * The totals can be read over JMX once register() is called, or as JSON
+ * from toJson().
+ *
+ * @author Zak Sheikh
+ */
+public class CounterMetrics implements CounterMetricsMBean {
+
+    /** The name the metrics are registered under */
+    public static final String OBJECT_NAME = "BookWordCounter:type=CounterMetrics";
+
+    /** One word counted in this many is timed */
+    static final int SAMPLE_INTERVAL = 64;
+
+    /** Words read before the first point of the distinct word growth */
+    static final long FIRST_GROWTH_POINT = 1024;
+
+    /** Measures the memory allocated by the current thread, if the JVM can */
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationBean();
+
+    // totals of every book read so far
+    private long books;
+    private long bytesRead;
+    private long linesRead;
+    private long wordsRead;
+    private long distinctWords;
+    private long tableResizes;
+
+    // time spent on each step, in nanoseconds
+    private long ioNanos;
+    private long tokenizeNanos;
+    private long countNanos;
+    private long outputNanos;
+
+    /** Bytes of results and indexes written */
+    private long bytesWritten;
+
+    /** Bytes allocated while reading the words in allocationWords */
+    private long allocatedBytes;
+    private long allocationWords;
+
+    /** Distinct word growth of the counter that read the most words */
+    private long[] growth = new long[0];
+    private long growthWords;
+
+    /**
+     * Creates a recorder for one counter. A recorder is not thread-safe and
+     * is only used by the thread counting into its table.
+     *
+     * @param table The table the counter counts into.
+     * @param sink  The sink that counts each word.
+     * @return A recorder that times the sink and reports to these metrics.
+     */
+    Recorder newRecorder(WordCountTable table, Tokenizer.TokenSink sink) {
+        return new Recorder(this, table, sink);
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, replacing any
+     * metrics registered before.
+     */
+    public void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(this, name);
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server, if they were
+     * registered.
+     */
+    public void unregister() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+    }
+
+    @Override
+    public synchronized long getBooks() {
+        return books;
+    }
+
+    @Override
+    public synchronized long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public synchronized long getLinesRead() {
+        return linesRead;
+    }
+
+    @Override
+    public synchronized long getWordsRead() {
+        return wordsRead;
+    }
+
+    @Override
+    public synchronized long getDistinctWords() {
+        return distinctWords;
+    }
+
+    @Override
+    public synchronized long getTableResizes() {
+        return tableResizes;
+    }
+
+    @Override
+    public synchronized double getBytesPerSecond() {
+        return perSecond(bytesRead);
+    }
+
+    @Override
+    public synchronized double getLinesPerSecond() {
+        return perSecond(linesRead);
+    }
+
+    @Override
+    public synchronized double getWordsPerSecond() {
+        return perSecond(wordsRead);
+    }
+
+    @Override
+    public synchronized long getIoMillis() {
+        return ioNanos / 1_000_000;
+    }
+
+    @Override
+    public synchronized long getTokenizeMillis() {
+        return tokenizeNanos / 1_000_000;
+    }
+
+    @Override
+    public synchronized long getCountMillis() {
+        return countNanos / 1_000_000;
+    }
+
+    @Override
+    public synchronized long getOutputMillis() {
+        return outputNanos / 1_000_000;
+    }
+
+    @Override
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public synchronized double getAllocatedBytesPerWord() {
+        return allocationWords == 0 ? -1 : (double) allocatedBytes / allocationWords;
+    }
+
+    @Override
+    public synchronized long[] getDistinctWordGrowth() {
+        return growth.clone();
+    }
+
+    @Override
+    public synchronized void reset() {
+        books = bytesRead = linesRead = wordsRead = distinctWords = tableResizes = 0;
+        ioNanos = tokenizeNanos = countNanos = outputNanos = bytesWritten = 0;
+        allocatedBytes = allocationWords = 0;
+        growth = new long[0];
+        growthWords = 0;
+    }
+
+    /**
+     * Writes the metrics as a JSON object, with times in milliseconds.
+     *
+     * @return The metrics as JSON.
+     */
+    public synchronized String toJson() {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"books\": ").append(books).append(",\n");
+        json.append("  \"bytesRead\": ").append(bytesRead).append(",\n");
+        json.append("  \"linesRead\": ").append(linesRead).append(",\n");
+        json.append("  \"wordsRead\": ").append(wordsRead).append(",\n");
+        json.append("  \"distinctWords\": ").append(distinctWords).append(",\n");
+        json.append("  \"tableResizes\": ").append(tableResizes).append(",\n");
+        json.append("  \"bytesPerSecond\": ").append(number(getBytesPerSecond())).append(",\n");
+        json.append("  \"linesPerSecond\": ").append(number(getLinesPerSecond())).append(",\n");
+        json.append("  \"wordsPerSecond\": ").append(number(getWordsPerSecond())).append(",\n");
+        json.append("  \"timeMillis\": {\"io\": ").append(getIoMillis())
+            .append(", \"tokenize\": ").append(getTokenizeMillis())
+            .append(", \"count\": ").append(getCountMillis())
+            .append(", \"output\": ").append(getOutputMillis()).append("},\n");
+        json.append("  \"bytesWritten\": ").append(bytesWritten).append(",\n");
+        json.append("  \"allocatedBytesPerWord\": ")
+            .append(allocationWords == 0 ? "null" : number(getAllocatedBytesPerWord())).append(",\n");
+        json.append("  \"distinctWordGrowth\": ").append(Arrays.toString(growth)).append("\n");
+        return json.append("}").toString();
+    }
+
+    /**
+     * Adds what a recorder measured while one book was read.
+     */
+    private synchronized void addRead(long bytes, long lines, long words, int distinct, int resizes, long io,
+            long tokenize, long count, long allocated, long[] counterGrowth, long counterWords) {
+        books++;
+        bytesRead += bytes;
+        linesRead += lines;
+        wordsRead += words;
+        distinctWords = Math.max(distinctWords, distinct);
+        tableResizes += resizes;
+        ioNanos += io;
+        tokenizeNanos += tokenize;
+        countNanos += count;
+        if (allocated >= 0) {
+            allocatedBytes += allocated;
+            allocationWords += words;
+        }
+        if (counterWords > growthWords) {
+            growth = counterGrowth;
+            growthWords = counterWords;
+        }
+    }
+
+    /**
+     * Adds the time taken to write results.
+     */
+    private synchronized void addOutput(long nanos, long bytes) {
+        outputNanos += nanos;
+        bytesWritten += bytes;
+    }
+
+    /**
+     * Divides an amount by the time spent reading books.
+     */
+    private double perSecond(long amount) {
+        long nanos = ioNanos + tokenizeNanos + countNanos;
+        return nanos == 0 ? 0 : amount * 1e9 / nanos;
+    }
+
+    /**
+     * Formats a number for JSON with one decimal place.
+     */
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    /**
+     * Returns the bean that measures allocation, or null if the JVM cannot.
+     */
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                return bean;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Measures one counter and reports each book it reads to the shared
+     * metrics. Wraps the counter's sink so it sees every word.
+     */
+    static final class Recorder implements Tokenizer.TokenSink {
+
+        /** The metrics this recorder reports to */
+        private final CounterMetrics metrics;
+
+        /** The table the counter counts into */
+        private final WordCountTable table;
+
+        /** The sink that counts each word */
+        private final Tokenizer.TokenSink sink;
+
+        /** Words counted through this recorder since it was created */
+        private long words;
+
+        /** Words to read before the next growth point */
+        private long nextGrowthPoint = FIRST_GROWTH_POINT;
+
+        /** Distinct words at each growth point so far */
+        private long[] growth = new long[0];
+
+        // figures for the book being read
+        private long startNanos;
+        private long startWords;
+        private long startAllocated;
+        private int startResizes;
+        private long readNanos;
+        private long sampledCountNanos;
+
+        private Recorder(CounterMetrics metrics, WordCountTable table, Tokenizer.TokenSink sink) {
+            this.metrics = metrics;
+            this.table = table;
+            this.sink = sink;
+        }
+
+        /**
+         * Counts a word, timing one word in every SAMPLE_INTERVAL.
+         */
+        @Override
+        public void accept(char[] buffer, int offset, int length) {
+            if ((++words & (SAMPLE_INTERVAL - 1)) != 0) {
+                sink.accept(buffer, offset, length);
+            } else {
+                long start = System.nanoTime();
+                sink.accept(buffer, offset, length);
+                sampledCountNanos += System.nanoTime() - start;
+            }
+            if (words == nextGrowthPoint) {
+                addGrowthPoint();
+            }
+        }
+
+        /**
+         * Starts measuring a book.
+         */
+        void begin() {
+            startNanos = System.nanoTime();
+            startWords = words;
+            startResizes = table.resizeCount();
+            startAllocated = ALLOCATIONS == null ? -1 : ALLOCATIONS.getCurrentThreadAllocatedBytes();
+            readNanos = 0;
+            sampledCountNanos = 0;
+        }
+
+        /**
+         * Wraps a reader so that the time spent reading from it is timed.
+         * A BufferedReader reads from it in large blocks, so every read is
+         * timed without sampling.
+         *
+         * @param in The reader to time.
+         * @return A reader with the same contents.
+         */
+        Reader timeReads(Reader in) {
+            return new FilterReader(in) {
+                @Override
+                public int read(char[] buffer, int offset, int length) throws IOException {
+                    long start = System.nanoTime();
+                    int n = super.read(buffer, offset, length);
+                    readNanos += System.nanoTime() - start;
+                    return n;
+                }
+            };
+        }
+
+        /**
+         * Ends a book whose words were all counted through this recorder on
+         * the current thread.
+         *
+         * @param bytes The size of the book.
+         * @param lines The number of lines read, or 0 if not read by line.
+         */
+        void endRead(long bytes, long lines) {
+            long allocated = startAllocated < 0 ? -1 : ALLOCATIONS.getCurrentThreadAllocatedBytes() - startAllocated;
+            report(bytes, lines, words - startWords, allocated);
+        }
+
+        /**
+         * Ends a book whose words were counted on other threads and then
+         * added to the table. Reading and tokenizing are not told apart, and
+         * neither the allocation of the other threads nor the growth of
+         * their words is seen.
+         *
+         * @param bytes     The size of the book.
+         * @param bookWords The number of words the other threads found.
+         */
+        void endParallelRead(long bytes, long bookWords) {
+            report(bytes, 0, bookWords, -1);
+        }
+
+        /**
+         * Starts timing output.
+         *
+         * @return The time output started.
+         */
+        long beginOutput() {
+            return System.nanoTime();
+        }
+
+        /**
+         * Ends timing output.
+         *
+         * @param start The time returned by beginOutput().
+         * @param bytes The number of bytes written.
+         */
+        void endOutput(long start, long bytes) {
+            metrics.addOutput(System.nanoTime() - start, bytes);
+        }
+
+        /**
+         * Splits the time since begin() and adds the book to the metrics.
+         */
+        private void report(long bytes, long lines, long bookWords, long allocated) {
+            long elapsed = System.nanoTime() - startNanos;
+            long io = Math.min(elapsed, readNanos);
+            long count = Math.min(elapsed - io, sampledCountNanos * SAMPLE_INTERVAL);
+            metrics.addRead(bytes, lines, bookWords, table.size(), table.resizeCount() - startResizes,
+                io, elapsed - io - count, count, allocated, growth.clone(), words);
+        }
+
+        /**
+         * Records the number of distinct words now, and doubles the words
+         * to read before the next point.
+         */
+        private void addGrowthPoint() {
+            growth = Arrays.copyOf(growth, growth.length + 1);
+            growth[growth.length - 1] = table.size();
+            nextGrowthPoint *= 2;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * The attributes and operations of CounterMetrics that can be read over
+ * JMX, for example in JConsole under BookWordCounter/CounterMetrics.
+ *
+ * @author Zak Sheikh
+ */
+public interface CounterMetricsMBean {
+
+    /**
+     * @return The number of books read.
+     */
+    long getBooks();
+
+    /**
+     * @return The number of bytes read from books.
+     */
+    long getBytesRead();
+
+    /**
+     * @return The number of lines read from books read line by line.
+     */
+    long getLinesRead();
+
+    /**
+     * @return The number of words the tokenizers found, stop words included.
+     */
+    long getWordsRead();
+
+    /**
+     * @return The most distinct words held by one counter.
+     */
+    long getDistinctWords();
+
+    /**
+     * @return The number of times a word table had to grow.
+     */
+    long getTableResizes();
+
+    /**
+     * @return Bytes read per second spent reading books.
+     */
+    double getBytesPerSecond();
+
+    /**
+     * @return Lines read per second spent reading books.
+     */
+    double getLinesPerSecond();
+
+    /**
+     * @return Words read per second spent reading books.
+     */
+    double getWordsPerSecond();
+
+    /**
+     * @return Milliseconds spent waiting for input.
+     */
+    long getIoMillis();
+
+    /**
+     * @return Milliseconds spent splitting text into words.
+     */
+    long getTokenizeMillis();
+
+    /**
+     * @return Milliseconds spent counting words, stop word checks included.
+     */
+    long getCountMillis();
+
+    /**
+     * @return Milliseconds spent writing results and indexes.
+     */
+    long getOutputMillis();
+
+    /**
+     * @return The number of bytes of results and indexes written.
+     */
+    long getBytesWritten();
+
+    /**
+     * @return Bytes allocated per word read, or -1 if not measured.
+     */
+    double getAllocatedBytesPerWord();
+
+    /**
+     * @return The distinct words after 1024 words were read, then after
+     *         2048, 4096 and so on, for the counter that read the most.
+     */
+    long[] getDistinctWordGrowth();
+
+    /**
+     * Sets every metric back to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,135 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Unit tests of the CounterMetrics class, to be run with JUnit 5.
+ *
+ * @author Zak Sheikh
+ */
+public class CounterMetricsTest {
+
+    /** Number of lines in the test book */
+    private static final int LINES = 5_000;
+
+    @BeforeAll
+    public static void setUpClass() {
+        System.out.println("Running CounterMetricsTest 📚");
+    }
+
+    /**
+     * Writes a book of LINES lines with a growing number of distinct words.
+     */
+    private static Path writeBook(Path directory) throws IOException {
+        Path book = directory.resolve("book.txt");
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(book))) {
+            for (int i = 0; i < LINES; i++) {
+                writer.println("The cat and w" + Integer.toString(i, 26).replaceAll("[0-9]", "x") + " sat.");
+            }
+        }
+        return book;
+    }
+
+    /**
+     * Tests that a measured book is counted the same as an unmeasured one,
+     * and that the sizes, growth and times add up.
+     */
+    @Test
+    void testReadMetrics(@TempDir Path directory) throws IOException {
+        System.out.println("Running CounterMetrics read test");
+        Path book = writeBook(directory);
+        BookWordCounter plain = new BookWordCounter();
+        plain.processBook(book.toString());
+
+        CounterMetrics metrics = new CounterMetrics();
+        BookWordCounter measured = new BookWordCounter();
+        measured.setMetrics(metrics);
+        measured.processBook(book.toString());
+        assertEquals(plain.getAllWordCounts(), measured.getAllWordCounts(), "Expected the same counts");
+
+        assertEquals(1, metrics.getBooks(), "Expected one book");
+        assertEquals(Files.size(book), metrics.getBytesRead(), "Expected the size of the book");
+        assertEquals(LINES, metrics.getLinesRead(), "Expected every line");
+        assertEquals(plain.totalWordCount(), metrics.getWordsRead(), "Expected every word");
+        assertEquals(plain.distinctWordCount(), metrics.getDistinctWords(), "Expected the distinct words");
+        assertTrue(metrics.getTableResizes() > 0, "Expected the table to grow");
+        assertTrue(metrics.getWordsPerSecond() > 0, "Expected a rate");
+        assertTrue(metrics.getAllocatedBytesPerWord() != 0, "Expected allocation measured or -1");
+
+        // 25000 words give points after 1024 up to 16384 words
+        long[] growth = metrics.getDistinctWordGrowth();
+        assertEquals(5, growth.length, "Expected a point per doubling");
+        for (int i = 1; i < growth.length; i++) {
+            assertTrue(growth[i] >= growth[i - 1], "Expected the distinct words never to shrink");
+        }
+        assertTrue(growth[growth.length - 1] <= metrics.getDistinctWords(), "Expected no more than at the end");
+
+        // adds a mapped read and a parallel read, which count no lines
+        measured.processBookMapped(book.toString());
+        BookWordCounter parallel = new BookWordCounter();
+        parallel.setMetrics(metrics);
+        parallel.processBookParallel(book.toString(), 2);
+        assertEquals(3, metrics.getBooks(), "Expected three books");
+        assertEquals(3 * plain.totalWordCount(), metrics.getWordsRead(), "Expected every word of each");
+        assertEquals(LINES, metrics.getLinesRead(), "Expected only the lines read by line");
+        assertEquals(2 * plain.totalWordCount(), measured.totalWordCount(), "Expected the book counted twice");
+
+        // measures writing the results
+        Path results = directory.resolve("results.txt");
+        measured.saveResults(results.toString());
+        assertEquals(Files.size(results), metrics.getBytesWritten(), "Expected the size of the results");
+        plain.saveResults(directory.resolve("plain.txt").toString());
+        assertEquals(Files.size(results), metrics.getBytesWritten(), "Expected an unmeasured counter left out");
+
+        metrics.reset();
+        assertEquals(0, metrics.getWordsRead(), "Expected no words after a reset");
+        assertEquals(0, metrics.getDistinctWordGrowth().length, "Expected no growth after a reset");
+        measured.setMetrics(null);
+        measured.processBook(book.toString());
+        assertEquals(0, metrics.getBooks(), "Expected nothing measured once turned off");
+    }
+
+    /**
+     * Tests that the metrics can be read over JMX and written as JSON.
+     */
+    @Test
+    void testJmxAndJson(@TempDir Path directory) throws IOException, JMException {
+        System.out.println("Running CounterMetrics JMX test");
+        CounterMetrics metrics = new CounterMetrics();
+        BookWordCounter counter = new BookWordCounter();
+        counter.setMetrics(metrics);
+        counter.processBook(writeBook(directory).toString());
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(CounterMetrics.OBJECT_NAME);
+        metrics.register();
+        try {
+            assertEquals(counter.totalWordCount(), server.getAttribute(name, "WordsRead"), "Expected the words read");
+            assertArrayEquals(metrics.getDistinctWordGrowth(), (long[]) server.getAttribute(name, "DistinctWordGrowth"),
+                "Expected the growth");
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, server.getAttribute(name, "Books"), "Expected a reset over JMX");
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(server.isRegistered(name), "Expected the metrics unregistered");
+
+        String json = new CounterMetrics().toJson();
+        assertTrue(json.startsWith("{") && json.endsWith("}"), "Expected a JSON object");
+        assertTrue(json.contains("\"wordsRead\": 0,"), "Expected the words read");
+        assertTrue(json.contains("\"timeMillis\": {\"io\": 0, \"tokenize\": 0, \"count\": 0, \"output\": 0}"),
+            "Expected the time split");
+        assertTrue(json.contains("\"allocatedBytesPerWord\": null"), "Expected null before anything is read");
+        assertTrue(json.contains("\"distinctWordGrowth\": []"), "Expected an empty growth");
+    }
+}
@@ -0,0 +1,38 @@
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * DefinitionFetcher looks up the definition of a word from a source such as
+ * an online dictionary. DefinitionService caches what it returns, so a
+ * fetcher does not need to cache anything itself, and tests can pass a
+ * stub instead of going to the network.
+ *
+ * @author Zak Sheikh
+ */
+public interface DefinitionFetcher {
+
+    /**
+     * Fetches the definition of a word.
+     *
+     * @param word The word to define.
+     * @return The definition, formatted for display.
+     * @throws IOException If the definition could not be fetched.
+     */
+    String fetch(String word) throws IOException;
+
+    /**
+     * Fetches the definition of a word, passing on each part of it as soon
+     * as it arrives, so it can be shown while the rest is fetched. By
+     * default the whole definition is passed on at once.
+     *
+     * @param word    The word to define.
+     * @param partial Receives the parts of the definition, in order.
+     * @return The whole definition, formatted for display.
+     * @throws IOException If the definition could not be fetched.
+     */
+    default String fetch(String word, Consumer<String> partial) throws IOException {
+        String definition = fetch(word);
+        partial.accept(definition);
+        return definition;
+    }
+}
@@ -0,0 +1,414 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DefinitionJsonParser pulls definitions out of a Free Dictionary API
+ * response while it is being read.
+ *
+ * A response is an array of entries, each with "meanings" that have a
+ * "partOfSpeech" and a list of "definitions", each with a "definition" and
+ * an optional "example":
+ *
+ *   [{"word": "cat", "meanings": [{"partOfSpeech": "noun",
+ *       "definitions": [{"definition": "...", "example": "..."}]}]}]
+ *
+ * Only the first entry is read, as the dialog has always shown. Each
+ * definition is handed to the listener as soon as its object is closed, and
+ * everything else (phonetics, synonyms, licenses, ...) is skipped over
+ * without being kept, so no document tree is built. An error response such
+ * as {"title": "No Definitions Found", "message": "..."} is reported as an
+ * IOException with its message.
+ *
+ * @author Zak Sheikh
+ */
+public class DefinitionJsonParser {
+
+    /**
+     * Receives each definition as it is parsed.
+     */
+    public interface Listener {
+
+        /**
+         * Called once per definition, in the order of the response.
+         *
+         * @param partOfSpeech The part of speech, such as "noun".
+         * @param definition   The definition.
+         * @param example      An example of use, or null if there is none.
+         */
+        void definition(String partOfSpeech, String definition, String example) throws IOException;
+    }
+
+    /** Where the JSON is read from */
+    private final Reader in;
+
+    /** Receives the definitions */
+    private final Listener listener;
+
+    /** A character read ahead, or -2 if none */
+    private int next = -2;
+
+    /** Holds the characters of the string being read */
+    private final StringBuilder text = new StringBuilder();
+
+    /** Number of definitions found */
+    private int found;
+
+    private DefinitionJsonParser(Reader in, Listener listener) {
+        this.in = in;
+        this.listener = listener;
+    }
+
+    /**
+     * Reads the definitions of the first entry of a response.
+     *
+     * @param in       The response.
+     * @param listener Receives each definition.
+     * @return The number of definitions found.
+     * @throws IOException If the response is not a list of definitions.
+     */
+    public static int parse(Reader in, Listener listener) throws IOException {
+        DefinitionJsonParser parser = new DefinitionJsonParser(in, listener);
+        parser.parseResponse();
+        return parser.found;
+    }
+
+    /**
+     * Formats a definition the way the dialog shows it.
+     *
+     * @param partOfSpeech The part of speech.
+     * @param definition   The definition.
+     * @param example      An example of use, or null.
+     * @return The lines for the definition, ending with a blank line.
+     */
+    public static String format(String partOfSpeech, String definition, String example) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(partOfSpeech).append(": ").append(definition).append("\n");
+        if (example != null) {
+            sb.append("Example: ").append(example).append("\n");
+        }
+        return sb.append("\n").toString();
+    }
+
+    /**
+     * Reads the first entry of the response, or the message of an error.
+     */
+    private void parseResponse() throws IOException {
+        int c = peek();
+        if (c == '{') {
+            throw new IOException(parseError());
+        }
+        expect('[');
+        if (peek() == ']') {
+            throw new IOException("No definitions in the response");
+        }
+        // reads the first entry and stops, leaving the rest unread
+        parseEntry();
+    }
+
+    /**
+     * Reads an entry, looking only at its meanings.
+     */
+    private void parseEntry() throws IOException {
+        expect('{');
+        if (consume('}')) {
+            return;
+        }
+        do {
+            String key = readKey();
+            if (key.equals("meanings") && peek() == '[') {
+                read();
+                if (!consume(']')) {
+                    do {
+                        parseMeaning();
+                    } while (consume(','));
+                    expect(']');
+                }
+            } else {
+                skipValue();
+            }
+        } while (consume(','));
+        expect('}');
+    }
+
+    /**
+     * Reads a meaning. Definitions are passed on at once if the part of
+     * speech came first, as it does from the API, and otherwise once the
+     * meaning is closed.
+     */
+    private void parseMeaning() throws IOException {
+        if (peek() != '{') {
+            skipValue();
+            return;
+        }
+        read();
+        String partOfSpeech = null;
+        List<String[]> waiting = new ArrayList<>();
+        if (!consume('}')) {
+            do {
+                String key = readKey();
+                if (key.equals("partOfSpeech") && peek() == '"') {
+                    partOfSpeech = readString();
+                } else if (key.equals("definitions") && peek() == '[') {
+                    read();
+                    if (!consume(']')) {
+                        do {
+                            String[] definition = parseDefinition();
+                            if (definition == null) {
+                                continue;
+                            }
+                            if (partOfSpeech != null) {
+                                emit(partOfSpeech, definition);
+                            } else {
+                                waiting.add(definition);
+                            }
+                        } while (consume(','));
+                        expect(']');
+                    }
+                } else {
+                    skipValue();
+                }
+            } while (consume(','));
+            expect('}');
+        }
+        for (String[] definition : waiting) {
+            emit(partOfSpeech == null ? "" : partOfSpeech, definition);
+        }
+    }
+
+    /**
+     * Reads a definition and its example, or returns null if it has no
+     * definition text.
+     */
+    private String[] parseDefinition() throws IOException {
+        if (peek() != '{') {
+            skipValue();
+            return null;
+        }
+        read();
+        String definition = null;
+        String example = null;
+        if (!consume('}')) {
+            do {
+                String key = readKey();
+                if (key.equals("definition") && peek() == '"') {
+                    definition = readString();
+                } else if (key.equals("example") && peek() == '"') {
+                    example = readString();
+                } else {
+                    skipValue();
+                }
+            } while (consume(','));
+            expect('}');
+        }
+        return definition == null ? null : new String[] {definition, example};
+    }
+
+    /**
+     * Reads the message of an error response.
+     */
+    private String parseError() throws IOException {
+        String title = null;
+        String message = null;
+        expect('{');
+        if (!consume('}')) {
+            do {
+                String key = readKey();
+                if (key.equals("title") && peek() == '"') {
+                    title = readString();
+                } else if (key.equals("message") && peek() == '"') {
+                    message = readString();
+                } else {
+                    skipValue();
+                }
+            } while (consume(','));
+        }
+        if (message != null) {
+            return message;
+        }
+        return title != null ? title : "Unexpected response";
+    }
+
+    /**
+     * Passes a definition on to the listener.
+     */
+    private void emit(String partOfSpeech, String[] definition) throws IOException {
+        found++;
+        listener.definition(partOfSpeech, definition[0], definition[1]);
+    }
+
+    /**
+     * Reads an object key and the colon after it.
+     */
+    private String readKey() throws IOException {
+        if (peek() != '"') {
+            throw syntaxError("a key");
+        }
+        String key = readString();
+        expect(':');
+        return key;
+    }
+
+    /**
+     * Skips a value of any type, without keeping it.
+     */
+    private void skipValue() throws IOException {
+        int c = peek();
+        if (c == '"') {
+            skipString();
+        } else if (c == '{' || c == '[') {
+            // skips to the matching bracket, stepping over strings
+            int depth = 0;
+            do {
+                c = read();
+                if (c == '"') {
+                    next = c;
+                    skipString();
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                } else if (c == -1) {
+                    throw syntaxError("the end of a value");
+                }
+            } while (depth > 0);
+        } else {
+            // skips a number, true, false or null
+            while (c != ',' && c != '}' && c != ']' && c != -1 && !Character.isWhitespace(c)) {
+                in();
+                c = peekRaw();
+            }
+        }
+    }
+
+    /**
+     * Reads a string, decoding escapes.
+     */
+    private String readString() throws IOException {
+        expect('"');
+        text.setLength(0);
+        while (true) {
+            int c = in();
+            if (c == '"') {
+                return text.toString();
+            }
+            if (c == '\\') {
+                c = in();
+                switch (c) {
+                    case 'n': text.append('\n'); break;
+                    case 't': text.append('\t'); break;
+                    case 'r': text.append('\r'); break;
+                    case 'b': text.append('\b'); break;
+                    case 'f': text.append('\f'); break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(in(), 16);
+                            if (digit < 0) {
+                                throw syntaxError("a \\u escape");
+                            }
+                            code = code * 16 + digit;
+                        }
+                        text.append((char) code);
+                        break;
+                    default: text.append((char) c);
+                }
+            } else if (c == -1) {
+                throw syntaxError("the end of a string");
+            } else {
+                text.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * Skips a string without keeping its characters.
+     */
+    private void skipString() throws IOException {
+        expect('"');
+        while (true) {
+            int c = in();
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                in();
+            } else if (c == -1) {
+                throw syntaxError("the end of a string");
+            }
+        }
+    }
+
+    /**
+     * Reads the next character, failing at the end of the response.
+     */
+    private int in() throws IOException {
+        int c = next != -2 ? next : in.read();
+        next = -2;
+        if (c == -1) {
+            throw new IOException("The response ended early");
+        }
+        return c;
+    }
+
+    /**
+     * Returns the next character without reading it, or -1 at the end.
+     */
+    private int peekRaw() throws IOException {
+        if (next == -2) {
+            next = in.read();
+        }
+        return next;
+    }
+
+    /**
+     * Returns the next character that is not whitespace, without reading it.
+     */
+    private int peek() throws IOException {
+        int c = peekRaw();
+        while (c != -1 && Character.isWhitespace(c)) {
+            next = -2;
+            c = peekRaw();
+        }
+        return c;
+    }
+
+    /**
+     * Reads the next character that is not whitespace.
+     */
+    private int read() throws IOException {
+        int c = peek();
+        next = -2;
+        return c;
+    }
+
+    /**
+     * Reads the character if it is next.
+     */
+    private boolean consume(char expected) throws IOException {
+        if (peek() == expected) {
+            next = -2;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads a character that must be next.
+     */
+    private void expect(char expected) throws IOException {
+        if (!consume(expected)) {
+            throw syntaxError("'" + expected + "'");
+        }
+    }
+
+    /**
+     * Creates an error for an unexpected character.
+     */
+    private IOException syntaxError(String expected) throws IOException {
+        int c = peekRaw();
+        return new IOException("Bad JSON in the response: expected " + expected + " but found "
+            + (c == -1 ? "the end" : "'" + (char) c + "'"));
+    }
+}
@@ -0,0 +1,63 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests of the DefinitionJsonParser class, to be run with JUnit 5.
+ *
+ * @author Zak Sheikh
+ */
+public class DefinitionJsonParserTest {
+
+    @BeforeAll
+    public static void setUpClass() {
+        System.out.println("Running DefinitionJsonParserTest 📚");
+    }
+
+    /**
+     * Parses a response and returns the formatted definitions.
+     */
+    private static List<String> parse(String json) throws IOException {
+        List<String> definitions = new ArrayList<>();
+        DefinitionJsonParser.parse(new StringReader(json),
+            (partOfSpeech, definition, example) -> definitions.add(DefinitionJsonParser.format(partOfSpeech, definition, example)));
+        return definitions;
+    }
+
+    /**
+     * Tests that definitions and examples are found among fields that are
+     * skipped, and that escapes are decoded.
+     */
+    @Test
+    void testParse() throws IOException {
+        System.out.println("Running DefinitionJsonParser parse() test");
+        String json = "[ {\"word\": \"hat\", \"phonetics\": [{\"text\": \"/h\\u00e6t/\", \"n\": [1, 2.5e3, true, null]}],\n"
+            + "  \"meanings\": [\n"
+            + "    {\"synonyms\": [\"cap\"], \"partOfSpeech\": \"noun\", \"definitions\": [\n"
+            + "      {\"definition\": \"A covering for the head.\", \"example\": \"a \\\"top\\\" hat\\n\"},\n"
+            + "      {\"synonyms\": []}]},\n"
+            + "    {\"definitions\": [{\"example\": null, \"definition\": \"To put a hat on.\"}], \"partOfSpeech\": \"verb\"}]},\n"
+            + "  {\"meanings\": [{\"partOfSpeech\": \"noun\", \"definitions\": [{\"definition\": \"Not read.\"}]}]} ]";
+        assertEquals(List.of("noun: A covering for the head.\nExample: a \"top\" hat\n\n\n", "verb: To put a hat on.\n\n"),
+            parse(json), "Expected the definitions of the first entry");
+    }
+
+    /**
+     * Tests that errors and broken responses are reported.
+     */
+    @Test
+    void testErrors() {
+        System.out.println("Running DefinitionJsonParser error test");
+        IOException notFound = assertThrows(IOException.class,
+            () -> parse("{\"title\": \"No Definitions Found\", \"message\": \"Sorry pal\"}"));
+        assertEquals("Sorry pal", notFound.getMessage(), "Expected the message of the error response");
+        assertThrows(IOException.class, () -> parse("[]"), "Expected an empty response to fail");
+        assertThrows(IOException.class, () -> parse("[{\"meanings\": [{\"partOfSpeech\": \"no"),
+            "Expected a cut off response to fail");
+    }
+}
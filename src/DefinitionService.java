@@ -0,0 +1,487 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * DefinitionService looks up word definitions for DictionaryLookupDialog,
+ * going to the network only when it has to.
+ *
+ * A lookup tries, in order:
+ *   1. an in-memory LRU cache of recent definitions, bounded in size, whose
+ *      entries expire after a time to live;
+ *   2. definitions preloaded from a local dictionary file, which never
+ *      expire;
+ *   3. an on-disk cache with one file per word, kept between runs and
+ *      subject to the same time to live;
+ *   4. the DefinitionFetcher, whose answer is stored in both caches.
+ *
+ * So a repeat lookup is a hash map hit, and a word is fetched at most once
+ * while its definition is fresh.
+ *
+ * Lookups run on a small shared pool of daemon threads rather than a thread
+ * per request. Requests for a word that is already being fetched wait for
+ * the same fetch, and a fetch nobody is waiting for any more is cancelled.
+ *
+ * A local dictionary file is UTF-8 text with one definition per line: the
+ * word, a tab, and the definition, with \n standing for a line break.
+ * Several lines for the same word are joined. Blank lines and lines starting
+ * with # are ignored.
+ *
+ * @author Zak Sheikh
+ */
+public class DefinitionService {
+
+    /** Number of definitions kept in memory by default */
+    public static final int DEFAULT_CACHE_SIZE = 1000;
+
+    /** How long a fetched definition is used by default */
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofDays(30);
+
+    /** Number of words fetched at the same time by default */
+    public static final int DEFAULT_THREADS = 4;
+
+    /** Longest word cached on disk, so its file name stays short enough */
+    private static final int MAX_CACHED_WORD = 60;
+
+    /**
+     * A cached definition and when it was fetched.
+     */
+    private static final class Entry {
+        final String definition;
+        final long fetchedAt;
+
+        Entry(String definition, long fetchedAt) {
+            this.definition = definition;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    /**
+     * A fetch in progress, shared by every request for its word.
+     */
+    private static final class Request {
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        Future<?> task;
+        int waiters;
+
+        /** The parts of the definition fetched so far */
+        final StringBuilder soFar = new StringBuilder();
+
+        /** Receive each part as it arrives */
+        final List<Consumer<String>> listeners = new ArrayList<>();
+
+        /** Passes a part on to every listener */
+        synchronized void publish(String part) {
+            soFar.append(part);
+            for (Consumer<String> listener : listeners) {
+                listener.accept(part);
+            }
+        }
+
+        /** Adds a listener, first passing it what has arrived so far */
+        synchronized void listen(Consumer<String> listener) {
+            if (soFar.length() > 0) {
+                listener.accept(soFar.toString());
+            }
+            listeners.add(listener);
+        }
+    }
+
+    /** Fetches definitions that are not cached */
+    private final DefinitionFetcher fetcher;
+
+    /** Recently used definitions, least recently used first */
+    private final LinkedHashMap<String, Entry> recent;
+
+    /** Definitions loaded from local dictionary files */
+    private final Map<String, String> preloaded = new HashMap<>();
+
+    /** How long a fetched definition is used, in milliseconds */
+    private final long timeToLive;
+
+    /** Where definitions are cached between runs, or null */
+    private final Path cacheDirectory;
+
+    /** Tells the time in milliseconds */
+    private final LongSupplier clock;
+
+    /** Fetches in progress, by word */
+    private final Map<String, Request> inFlight = new HashMap<>();
+
+    /** Runs the fetches, on a few daemon threads shared by every lookup */
+    private final ExecutorService executor;
+
+    /**
+     * Creates a service that fetches from the Free Dictionary API and caches
+     * definitions under ~/.book-word-counter/definitions.
+     */
+    public DefinitionService() {
+        this(new DictionaryApiFetcher(), DEFAULT_CACHE_SIZE, DEFAULT_TIME_TO_LIVE, defaultCacheDirectory());
+    }
+
+    /**
+     * Creates a service that fetches up to DEFAULT_THREADS words at once.
+     *
+     * @param fetcher        Fetches definitions that are not cached.
+     * @param cacheSize      Number of definitions kept in memory.
+     * @param timeToLive     How long a fetched definition is used before it
+     *                       is fetched again.
+     * @param cacheDirectory Where to cache definitions between runs, or null
+     *                       to only cache them in memory.
+     */
+    public DefinitionService(DefinitionFetcher fetcher, int cacheSize, Duration timeToLive, Path cacheDirectory) {
+        this(fetcher, cacheSize, timeToLive, cacheDirectory, DEFAULT_THREADS);
+    }
+
+    /**
+     * Creates a service.
+     *
+     * @param fetcher        Fetches definitions that are not cached.
+     * @param cacheSize      Number of definitions kept in memory.
+     * @param timeToLive     How long a fetched definition is used before it
+     *                       is fetched again.
+     * @param cacheDirectory Where to cache definitions between runs, or null
+     *                       to only cache them in memory.
+     * @param threads        Number of words fetched at the same time.
+     */
+    public DefinitionService(DefinitionFetcher fetcher, int cacheSize, Duration timeToLive, Path cacheDirectory,
+            int threads) {
+        this(fetcher, cacheSize, timeToLive, cacheDirectory, threads, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a service with its own clock, for tests.
+     */
+    DefinitionService(DefinitionFetcher fetcher, int cacheSize, Duration timeToLive, Path cacheDirectory,
+            int threads, LongSupplier clock) {
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("cacheSize must be at least 1: " + cacheSize);
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        // uses daemon threads so a slow fetch never keeps the program open
+        this.executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "definition-lookup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.fetcher = fetcher;
+        this.timeToLive = timeToLive.toMillis();
+        this.cacheDirectory = cacheDirectory;
+        this.clock = clock;
+        // keeps the map in access order and drops the least recently used entry when full
+        this.recent = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the directory where definitions are cached by default.
+     *
+     * @return ~/.book-word-counter/definitions
+     */
+    public static Path defaultCacheDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".book-word-counter", "definitions");
+    }
+
+    /**
+     * Returns the definition of a word, fetching it only if no cache has a
+     * fresh copy. Waits for the fetch; see lookupAsync().
+     *
+     * @param word The word to define.
+     * @return The definition, formatted for display.
+     * @throws IOException If the word is not cached and could not be fetched.
+     */
+    public String lookup(String word) throws IOException {
+        try {
+            return lookupAsync(word).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted looking up '" + word + "'");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Starts looking up the definition of a word on the service's threads.
+     * A word in memory gives a future that is already done. Requests for a
+     * word that is already being fetched share that fetch, so a word is
+     * never fetched twice at once.
+     *
+     * Cancelling the returned future stops waiting for the definition. The
+     * fetch itself is cancelled once every request sharing it is cancelled.
+     *
+     * @param word The word to define.
+     * @return The definition, or an IOException if it could not be fetched.
+     */
+    public CompletableFuture<String> lookupAsync(String word) {
+        return lookupAsync(word, null);
+    }
+
+    /**
+     * Starts looking up the definition of a word, like lookupAsync(word),
+     * and passes on each part of the definition as it is fetched, so it can
+     * be shown before the whole definition arrives. A lookup that joins a
+     * fetch in progress first receives everything fetched so far.
+     *
+     * @param word    The word to define.
+     * @param partial Receives the parts of the definition on a lookup
+     *                thread, or null. Not called for a word in memory.
+     * @return The whole definition, or an IOException if it could not be
+     *         fetched.
+     */
+    public CompletableFuture<String> lookupAsync(String word, Consumer<String> partial) {
+        String key = word.toLowerCase(Locale.ROOT);
+        String definition = cached(key);
+        if (definition != null) {
+            return CompletableFuture.completedFuture(definition);
+        }
+        CompletableFuture<String> waiter = new CompletableFuture<>();
+        Request request;
+        synchronized (inFlight) {
+            request = inFlight.get(key);
+            if (request == null) {
+                request = new Request();
+                inFlight.put(key, request);
+                Request started = request;
+                request.task = executor.submit(() -> {
+                    try {
+                        started.result.complete(load(key, started));
+                    } catch (Throwable e) {
+                        started.result.completeExceptionally(e);
+                    } finally {
+                        synchronized (inFlight) {
+                            inFlight.remove(key, started);
+                        }
+                    }
+                });
+            }
+            request.waiters++;
+            if (partial != null) {
+                request.listen(partial);
+            }
+        }
+        Request shared = request;
+        shared.result.whenComplete((result, error) -> {
+            if (error != null) {
+                waiter.completeExceptionally(error);
+            } else {
+                waiter.complete(result);
+            }
+        });
+        waiter.whenComplete((result, error) -> {
+            if (waiter.isCancelled()) {
+                cancel(key, shared);
+            }
+        });
+        return waiter;
+    }
+
+    /**
+     * Looks up words in the background so they are cached before they are
+     * asked for, such as the words shown at the top of the table. Words
+     * that are cached or being fetched are left alone, and failures are
+     * ignored.
+     *
+     * @param words The words to look up.
+     */
+    public void prefetch(Collection<String> words) {
+        for (String word : words) {
+            if (cached(word) == null) {
+                lookupAsync(word);
+            }
+        }
+    }
+
+    /**
+     * Stops the service's threads, cancelling fetches in progress.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Reads a definition from the disk cache, or fetches it, and keeps it
+     * in memory.
+     */
+    private String load(String key, Request request) throws IOException {
+        String definition = readDiskCache(key);
+        if (definition == null) {
+            definition = fetcher.fetch(key, request::publish);
+            writeDiskCache(key, definition);
+        } else {
+            request.publish(definition);
+        }
+        synchronized (recent) {
+            recent.put(key, new Entry(definition, clock.getAsLong()));
+        }
+        return definition;
+    }
+
+    /**
+     * Drops one request for a word, and cancels the fetch once no request
+     * is waiting for it.
+     */
+    private void cancel(String key, Request request) {
+        synchronized (inFlight) {
+            if (--request.waiters == 0 && inFlight.remove(key, request)) {
+                request.task.cancel(true);
+                request.result.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Returns the definition of a word if it is in memory, without going to
+     * the disk or the network. The GUI uses this to show a cached
+     * definition at once.
+     *
+     * @param word The word to define.
+     * @return The definition, or null if it is not in memory.
+     */
+    public String cached(String word) {
+        String key = word.toLowerCase(Locale.ROOT);
+        synchronized (recent) {
+            Entry entry = recent.get(key);
+            if (entry != null) {
+                if (clock.getAsLong() - entry.fetchedAt < timeToLive) {
+                    return entry.definition;
+                }
+                recent.remove(key);
+            }
+            return preloaded.get(key);
+        }
+    }
+
+    /**
+     * Loads definitions from a local dictionary file, so those words are
+     * never fetched.
+     *
+     * @param dictionaryFile The file, in the format described above.
+     * @return The number of words loaded.
+     */
+    public int preload(Path dictionaryFile) throws IOException {
+        Map<String, StringBuilder> definitions = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(dictionaryFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // skips blank lines and comments
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                if (tab <= 0) {
+                    throw new IOException("Expected a word and a tab in " + dictionaryFile + ": " + line);
+                }
+                String word = line.substring(0, tab).trim().toLowerCase(Locale.ROOT);
+                String definition = line.substring(tab + 1).replace("\\n", "\n");
+                definitions.computeIfAbsent(word, w -> new StringBuilder()).append(definition).append("\n\n");
+            }
+        }
+        synchronized (recent) {
+            for (Map.Entry<String, StringBuilder> entry : definitions.entrySet()) {
+                preloaded.put(entry.getKey(), entry.getValue().toString());
+            }
+        }
+        return definitions.size();
+    }
+
+    /**
+     * Reads a definition from the disk cache, or returns null if it is not
+     * there or has expired.
+     */
+    private String readDiskCache(String word) {
+        String name = cacheFileName(word);
+        if (cacheDirectory == null || name == null) {
+            return null;
+        }
+        Path file = cacheDirectory.resolve(name);
+        try {
+            if (!Files.isRegularFile(file)
+                    || clock.getAsLong() - Files.getLastModifiedTime(file).toMillis() >= timeToLive) {
+                return null;
+            }
+            return Files.readString(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            // fetches the definition again instead
+            return null;
+        }
+    }
+
+    /**
+     * Saves a definition to the disk cache. The file is written under a
+     * temporary name and then moved into place, so a reader never sees half
+     * a definition.
+     */
+    private void writeDiskCache(String word, String definition) {
+        String name = cacheFileName(word);
+        if (cacheDirectory == null || name == null) {
+            return;
+        }
+        Path temp = null;
+        try {
+            Files.createDirectories(cacheDirectory);
+            temp = Files.createTempFile(cacheDirectory, "definition", ".tmp");
+            Files.writeString(temp, definition, StandardCharsets.UTF_8);
+            Files.move(temp, cacheDirectory.resolve(name), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the definition is still cached in memory
+            try {
+                if (temp != null) {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException ignored) {
+                // leaves the temporary file behind
+            }
+        }
+    }
+
+    /**
+     * Returns the name of a word's cache file. Words of letters, digits,
+     * hyphens and apostrophes are used as they are; others are written in
+     * hex so any word makes a safe file name. Returns null for words too
+     * long for a file name, which are only cached in memory.
+     */
+    static String cacheFileName(String word) {
+        if (word.length() > MAX_CACHED_WORD) {
+            return null;
+        }
+        if (word.matches("[a-z0-9][a-z0-9'-]*")) {
+            return word + ".txt";
+        }
+        StringBuilder hex = new StringBuilder("x-");
+        for (byte b : word.getBytes(StandardCharsets.UTF_8)) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.append(".txt").toString();
+    }
+}
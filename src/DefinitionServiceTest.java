@@ -0,0 +1,171 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests of the DefinitionService class, to be run with JUnit 5. A stub
+ * fetcher stands in for the Free Dictionary API and records each request.
+ *
+ * @author Zak Sheikh
+ */
+public class DefinitionServiceTest {
+
+    /** Words the stub fetcher was asked for */
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+    /** Answers with a made-up definition and records the request */
+    private final DefinitionFetcher stub = word -> {
+        requests.add(word);
+        return "noun: a " + word;
+    };
+
+    /** Fails every request, like having no network */
+    private static final DefinitionFetcher OFFLINE = word -> {
+        throw new IOException("No network");
+    };
+
+    @BeforeAll
+    public static void setUpClass() {
+        System.out.println("Running DefinitionServiceTest 📚");
+    }
+
+    /**
+     * Tests that a word is fetched once, that the least recently used word
+     * is evicted, and that definitions expire.
+     */
+    @Test
+    void testMemoryCache() throws IOException {
+        System.out.println("Running DefinitionService memory cache test");
+        AtomicLong now = new AtomicLong();
+        DefinitionService service = new DefinitionService(stub, 2, Duration.ofMinutes(1), null, 1, now::get);
+
+        assertEquals("noun: a cat", service.lookup("cat"), "Expected the fetched definition");
+        assertEquals("noun: a cat", service.lookup("Cat"), "Expected the cached definition");
+        assertEquals(List.of("cat"), requests, "Expected one request");
+
+        // evicts dog, the least recently used, when a third word is added
+        service.lookup("dog");
+        service.lookup("cat");
+        service.lookup("hat");
+        assertNull(service.cached("dog"), "Expected dog to be evicted");
+        assertNotNull(service.cached("cat"), "Expected cat to be kept");
+
+        // fetches again once the definition is too old
+        now.addAndGet(Duration.ofMinutes(2).toMillis());
+        assertNull(service.cached("cat"), "Expected cat to have expired");
+        service.lookup("cat");
+        assertEquals(List.of("cat", "dog", "hat", "cat"), requests, "Expected cat to be fetched again");
+    }
+
+    /**
+     * Tests that definitions are kept on disk between services.
+     */
+    @Test
+    void testDiskCache(@TempDir Path directory) throws IOException {
+        System.out.println("Running DefinitionService disk cache test");
+        new DefinitionService(stub, 10, Duration.ofDays(1), directory).lookup("cat");
+        new DefinitionService(stub, 10, Duration.ofDays(1), directory).lookup("café");
+
+        DefinitionService offline = new DefinitionService(OFFLINE, 10, Duration.ofDays(1), directory);
+        assertEquals("noun: a cat", offline.lookup("cat"), "Expected the definition from disk");
+        assertEquals("noun: a café", offline.lookup("café"), "Expected a non-ASCII word from disk");
+        assertThrows(IOException.class, () -> offline.lookup("dog"), "Expected an uncached word to be fetched");
+        assertEquals("x-636166c3a9.txt", DefinitionService.cacheFileName("café"), "Expected a hex file name");
+    }
+
+    /**
+     * Tests that preloaded definitions are used without any requests.
+     */
+    @Test
+    void testPreload(@TempDir Path directory) throws IOException {
+        System.out.println("Running DefinitionService preload() test");
+        Path dictionary = Files.writeString(directory.resolve("dictionary.tsv"),
+            "# word, tab, definition\ncat\tnoun: a small animal\\nExample: the cat sat\n\ncat\tverb: to vomit\n");
+        DefinitionService service = new DefinitionService(OFFLINE, 10, Duration.ofDays(1), null);
+        assertEquals(1, service.preload(dictionary), "Expected one word");
+        assertEquals("noun: a small animal\nExample: the cat sat\n\nverb: to vomit\n\n", service.lookup("CAT"),
+            "Expected both definitions of cat");
+    }
+
+    /**
+     * Tests that lookups of a word in flight share one fetch, and that the
+     * fetch is cancelled once every lookup is cancelled.
+     */
+    @Test
+    void testCoalescingAndCancel() throws Exception {
+        System.out.println("Running DefinitionService lookupAsync() test");
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        AtomicInteger fetches = new AtomicInteger();
+        DefinitionFetcher slow = word -> {
+            fetches.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw new InterruptedIOException();
+            }
+            return "noun: a " + word;
+        };
+        DefinitionService service = new DefinitionService(slow, 10, Duration.ofDays(1), null, 2);
+
+        // shares one fetch between three lookups
+        CompletableFuture<String> first = service.lookupAsync("cat");
+        CompletableFuture<String> second = service.lookupAsync("cat");
+        CompletableFuture<String> third = service.lookupAsync("CAT");
+        second.cancel(true);
+        release.countDown();
+        assertEquals("noun: a cat", first.get(5, TimeUnit.SECONDS), "Expected the definition");
+        assertEquals("noun: a cat", third.get(5, TimeUnit.SECONDS), "Expected the same definition");
+        assertEquals(1, fetches.get(), "Expected one fetch");
+        assertTrue(service.lookupAsync("cat").isDone(), "Expected a cached word to be done at once");
+
+        // interrupts a fetch nobody is waiting for
+        CountDownLatch started = new CountDownLatch(1);
+        DefinitionService blocked = new DefinitionService(word -> {
+            started.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            throw new InterruptedIOException();
+        }, 10, Duration.ofDays(1), null, 1);
+        CompletableFuture<String> lookup = blocked.lookupAsync("dog");
+        assertTrue(started.await(5, TimeUnit.SECONDS), "Expected the fetch to start");
+        lookup.cancel(true);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS), "Expected the fetch to be interrupted");
+        service.shutdown();
+        blocked.shutdown();
+    }
+
+    /**
+     * Tests that prefetching caches words without asking for them twice.
+     */
+    @Test
+    void testPrefetch() throws Exception {
+        System.out.println("Running DefinitionService prefetch() test");
+        DefinitionService service = new DefinitionService(stub, 10, Duration.ofDays(1), null);
+        service.prefetch(List.of("cat", "dog"));
+        assertEquals("noun: a dog", service.lookup("dog"), "Expected the prefetched definition");
+        assertEquals("noun: a cat", service.lookup("cat"), "Expected the prefetched definition");
+        service.prefetch(List.of("cat", "dog"));
+        assertEquals(2, requests.size(), "Expected each word to be fetched once");
+        service.shutdown();
+    }
+}
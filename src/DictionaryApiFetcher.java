@@ -0,0 +1,170 @@
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * DictionaryApiFetcher fetches definitions from the Free Dictionary API.
+ *
+ * Each definition is formatted as its part of speech and definition,
+ * followed by an example if the API has one. The response is parsed by a
+ * DefinitionJsonParser as it arrives, so each definition can be shown
+ * before the rest is read, and a response over a size limit is cut off.
+ * Connecting and reading both time out, so a slow server cannot hold a
+ * lookup thread for long.
+ *
+ * Example API: https://api.dictionaryapi.dev/api/v2/entries/en/<word>
+ *
+ * @author Zak Sheikh
+ */
+public class DictionaryApiFetcher implements DefinitionFetcher {
+
+    /** The API address, to which the word is added */
+    public static final String API_URL = "https://api.dictionaryapi.dev/api/v2/entries/en/";
+
+    /** Largest response read by default */
+    public static final int DEFAULT_MAX_RESPONSE_BYTES = 1 << 20;
+
+    /** How long to wait for a connection by default */
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+
+    /** How long to wait for the response by default */
+    public static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(10);
+
+    /** How long to wait for a connection */
+    private final Duration connectTimeout;
+
+    /** How long to wait for data once connected */
+    private final Duration readTimeout;
+
+    /** The address the word is added to */
+    private final String apiUrl;
+
+    /** Largest response read */
+    private final int maxResponseBytes;
+
+    /**
+     * Creates a fetcher with the default timeouts.
+     */
+    public DictionaryApiFetcher() {
+        this(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+    }
+
+    /**
+     * Creates a fetcher.
+     *
+     * @param connectTimeout How long to wait for a connection.
+     * @param readTimeout    How long to wait for data once connected.
+     */
+    public DictionaryApiFetcher(Duration connectTimeout, Duration readTimeout) {
+        this(API_URL, connectTimeout, readTimeout, DEFAULT_MAX_RESPONSE_BYTES);
+    }
+
+    /**
+     * Creates a fetcher for another server with the same API, such as a
+     * local stub in tests.
+     *
+     * @param apiUrl           The address the word is added to.
+     * @param connectTimeout   How long to wait for a connection.
+     * @param readTimeout      How long to wait for data once connected.
+     * @param maxResponseBytes Largest response to read.
+     */
+    public DictionaryApiFetcher(String apiUrl, Duration connectTimeout, Duration readTimeout, int maxResponseBytes) {
+        this.apiUrl = apiUrl;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.maxResponseBytes = maxResponseBytes;
+    }
+
+    @Override
+    public String fetch(String word) throws IOException {
+        return fetch(word, part -> { });
+    }
+
+    @Override
+    public String fetch(String word, Consumer<String> partial) throws IOException {
+        // builds the URL for API request
+        String apiUrl = this.apiUrl + URLEncoder.encode(word, StandardCharsets.UTF_8);
+        HttpURLConnection conn = (HttpURLConnection) new URL(apiUrl).openConnection();
+        conn.setRequestMethod("GET");
+        // gives up on a slow server rather than holding a thread forever
+        conn.setConnectTimeout((int) connectTimeout.toMillis());
+        conn.setReadTimeout((int) readTimeout.toMillis());
+
+        try {
+            // reads an error response too, for its message
+            boolean ok = conn.getResponseCode() < 400;
+            InputStream body = ok ? conn.getInputStream() : conn.getErrorStream();
+            if (body == null) {
+                throw new IOException("HTTP " + conn.getResponseCode() + " looking up '" + word + "'");
+            }
+
+            // parses the definitions as the response arrives, passing each one on
+            StringBuilder definitions = new StringBuilder();
+            try (Reader in = new InputStreamReader(new CappedInputStream(body, maxResponseBytes), StandardCharsets.UTF_8)) {
+                DefinitionJsonParser.parse(in, (partOfSpeech, definition, example) -> {
+                    // stops if the lookup was cancelled
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("Lookup of '" + word + "' cancelled");
+                    }
+                    String formatted = DefinitionJsonParser.format(partOfSpeech, definition, example);
+                    definitions.append(formatted);
+                    partial.accept(formatted);
+                });
+            }
+            if (!ok) {
+                throw new IOException("HTTP " + conn.getResponseCode() + " looking up '" + word + "'");
+            }
+            return definitions.toString();
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * An input stream that fails once more than a set number of bytes is
+     * read, so a huge or endless response cannot fill the memory.
+     */
+    private static final class CappedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        CappedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) throws IOException {
+            count += n;
+            if (count > limit) {
+                throw new IOException("Response larger than " + limit + " bytes");
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests of the DictionaryApiFetcher class, to be run with JUnit 5.
+ * Recorded API responses in fixtures/dictionary, next to this class on the
+ * classpath, are served from a local HTTP server, so no test goes to the
+ * network.
+ *
+ * @author Zak Sheikh
+ */
+public class DictionaryApiFetcherTest {
+
+    /** Serves the recorded responses */
+    private static HttpServer server;
+
+    /** The API address of the local server */
+    private static String apiUrl;
+
+    /** Number of requests the server has had */
+    private static final AtomicInteger requests = new AtomicInteger();
+
+    /** The recorded response for "cat" */
+    private static byte[] catJson;
+
+    /** The recorded response for a word the API does not know */
+    private static byte[] notFoundJson;
+
+    @BeforeAll
+    public static void setUpClass() throws IOException {
+        System.out.println("Running DictionaryApiFetcherTest 📚");
+        // reads the fixtures first, so a missing one fails here rather than as a timeout
+        catJson = fixture("cat.json");
+        notFoundJson = fixture("not-found.json");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/v2/entries/en/", DictionaryApiFetcherTest::respond);
+        server.start();
+        apiUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v2/entries/en/";
+    }
+
+    @AfterAll
+    public static void tearDownClass() {
+        server.stop(0);
+    }
+
+    /**
+     * Answers a request the way the API would.
+     */
+    private static void respond(HttpExchange exchange) {
+        requests.incrementAndGet();
+        String word = exchange.getRequestURI().getPath().substring("/api/v2/entries/en/".length());
+        try (OutputStream out = exchange.getResponseBody()) {
+            switch (word) {
+                case "cat":
+                    send(exchange, 200, catJson);
+                    break;
+                case "huge":
+                    // sends a definition far over the size limit
+                    exchange.sendResponseHeaders(200, 0);
+                    out.write("[{\"meanings\": [{\"partOfSpeech\": \"noun\", \"definitions\": [{\"definition\": \"".getBytes());
+                    byte[] filler = new byte[64 * 1024];
+                    Arrays.fill(filler, (byte) 'a');
+                    for (int i = 0; i < 64; i++) {
+                        out.write(filler);
+                    }
+                    break;
+                case "slow":
+                    try {
+                        Thread.sleep(2000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    send(exchange, 200, catJson);
+                    break;
+                default:
+                    send(exchange, 404, notFoundJson);
+            }
+        } catch (IOException e) {
+            // the client gave up
+        }
+    }
+
+    /**
+     * Sends a whole response.
+     */
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Reads a recorded response from the classpath, wherever the tests are
+     * run from.
+     */
+    private static byte[] fixture(String name) throws IOException {
+        try (InputStream in = DictionaryApiFetcherTest.class.getResourceAsStream("fixtures/dictionary/" + name)) {
+            assertNotNull(in, "Expected the fixture fixtures/dictionary/" + name + " on the classpath");
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Creates a fetcher for the local server.
+     */
+    private static DictionaryApiFetcher fetcher(int maxResponseBytes) {
+        return new DictionaryApiFetcher(apiUrl, Duration.ofSeconds(2), Duration.ofMillis(500), maxResponseBytes);
+    }
+
+    /**
+     * Tests that each definition of the first entry is passed on as it is
+     * parsed, and that the whole definition matches the parts.
+     */
+    @Test
+    void testFetch() throws IOException {
+        System.out.println("Running DictionaryApiFetcher fetch() test");
+        List<String> parts = new ArrayList<>();
+        String definition = fetcher(DictionaryApiFetcher.DEFAULT_MAX_RESPONSE_BYTES).fetch("cat", parts::add);
+        assertEquals(List.of(
+            "noun: An animal of the family Felidae:\n\n",
+            "noun: A person (usually male).\nExample: He's a real cool cat, with his \"groovy\" style.\n\n",
+            "verb: To hoist (the anchor) by its ring so that it hangs at the cathead.\n\n",
+            "verb: To vomit something.\nExample: We’ll see what the cat brought in.\n\n"), parts,
+            "Expected the four definitions of the first entry");
+        assertEquals(String.join("", parts), definition, "Expected the parts to make up the definition");
+    }
+
+    /**
+     * Tests that a missing word, an oversized response and a slow server
+     * all fail with an IOException.
+     */
+    @Test
+    void testErrors() {
+        System.out.println("Running DictionaryApiFetcher error test");
+        IOException notFound = assertThrows(IOException.class, () -> fetcher(1 << 20).fetch("qwxz"));
+        assertTrue(notFound.getMessage().startsWith("Sorry pal"), "Expected the API's message: " + notFound.getMessage());
+        IOException huge = assertThrows(IOException.class, () -> fetcher(1 << 20).fetch("huge"));
+        assertEquals("Response larger than 1048576 bytes", huge.getMessage(), "Expected the size limit");
+        assertThrows(SocketTimeoutException.class, () -> fetcher(1 << 20).fetch("slow"), "Expected a read timeout");
+    }
+
+    /**
+     * Tests that a DefinitionService sends one request per word.
+     */
+    @Test
+    void testOneRequestPerWord() throws IOException {
+        System.out.println("Running DictionaryApiFetcher request count test");
+        DefinitionService service = new DefinitionService(fetcher(1 << 20), 10, Duration.ofDays(1), null);
+        int before = requests.get();
+        String first = service.lookup("cat");
+        for (int i = 0; i < 100; i++) {
+            assertEquals(first, service.lookup("cat"), "Expected the cached definition");
+        }
+        assertEquals(before + 1, requests.get(), "Expected one request");
+        service.shutdown();
+    }
+}
@@ -1,21 +1,20 @@
 import javax.swing.*;
 import java.awt.*;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 /**
  * DictionaryLookupDialog is a pop-up window that shows the definition of a word
  * using the Free Dictionary API.
  * 
  * It is triggered from the main GUI when a word is double-clicked in the table.
- * The API fetch is done asynchronously to prevent UI blocking.
- * 
- * Example API: https://api.dictionaryapi.dev/api/v2/entries/en/<word>
+ * Definitions come from a DefinitionService, so a word looked up before is
+ * shown at once; otherwise the fetch is done asynchronously to prevent UI
+ * blocking, and is cancelled if the dialog is closed first.
  * 
  * @author Zak Sheikh
  */
@@ -24,10 +23,11 @@ public class DictionaryLookupDialog extends JDialog {
     /**
      * Constructs a modal dialog to display word definitions.
      * 
-     * @param parent The parent JFrame that triggered this dialog.
-     * @param word   The word to define.
+     * @param parent      The parent JFrame that triggered this dialog.
+     * @param word        The word to define.
+     * @param definitions Where to look up the definition.
      */
-    public DictionaryLookupDialog(JFrame parent, String word) {
+    public DictionaryLookupDialog(JFrame parent, String word, DefinitionService definitions) {
         // sets dialog title and modality
         super(parent, "Definition: " + word, true);
         setLayout(new BorderLayout());
@@ -44,53 +44,73 @@ public class DictionaryLookupDialog extends JDialog {
         setSize(400, 300);
         setLocationRelativeTo(parent);
 
-        // fetches the definition in a background thread
-        new Thread(() -> {
-            try {
-                // builds the URL for API request
-                String apiUrl = "https://api.dictionaryapi.dev/api/v2/entries/en/" + word;
-                HttpURLConnection conn = (HttpURLConnection) new URL(apiUrl).openConnection();
-                conn.setRequestMethod("GET");
-
-                // reads the API response
-                BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-                StringBuilder response = new StringBuilder();
-                String inputLine;
-                while ((inputLine = in.readLine()) != null) {
-                    response.append(inputLine);
+        // fetches the definition on the service's threads, showing each part as it arrives
+        String waitingText = "Looking up '" + word + "'...";
+        definitionArea.setText(waitingText);
+        CompletableFuture<String> lookup = fetch(word, definitions, part -> SwingUtilities.invokeLater(() -> {
+            if (definitionArea.getText().equals(waitingText)) {
+                definitionArea.setText("");
+            }
+            definitionArea.append(part);
+        }));
+        // shows a definition that is already in memory straight away
+        if (lookup.isDone() && !lookup.isCompletedExceptionally()) {
+            definitionArea.setText(lookup.join());
+            return;
+        }
+        lookup.whenComplete((definition, error) -> SwingUtilities.invokeLater(() -> {
+            if (lookup.isCancelled()) {
+                return;
+            }
+            if (error == null) {
+                // shows the whole definition, in case any part was missed
+                if (!definitionArea.getText().equals(definition)) {
+                    definitionArea.setText(definition);
                 }
-                in.close();
-
-                // parses the JSON response
-                JSONArray jsonArray = new JSONArray(response.toString());
-                JSONObject firstEntry = jsonArray.getJSONObject(0);
-                JSONArray meanings = firstEntry.getJSONArray("meanings");
-
-                // formats the definition content
-                StringBuilder definitions = new StringBuilder();
-                for (int i = 0; i < meanings.length(); i++) {
-                    JSONObject meaning = meanings.getJSONObject(i);
-                    String partOfSpeech = meaning.getString("partOfSpeech");
-                    JSONArray defs = meaning.getJSONArray("definitions");
+            } else {
+                // shows error in the text area
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                definitionArea.setText("❌ Error fetching definition:\n" + cause.getMessage());
+            }
+        }));
 
-                    for (int j = 0; j < defs.length(); j++) {
-                        JSONObject def = defs.getJSONObject(j);
-                        definitions.append(partOfSpeech).append(": ").append(def.getString("definition")).append("\n");
-                        if (def.has("example")) {
-                            definitions.append("Example: ").append(def.getString("example")).append("\n");
-                        }
-                        definitions.append("\n");
-                    }
-                }
+        // stops waiting for the definition once the dialog is closed
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                lookup.cancel(true);
+            }
+        });
+    }
 
-                // updates the GUI on the Event Dispatch Thread
-                SwingUtilities.invokeLater(() -> definitionArea.setText(definitions.toString()));
-            } catch (Exception e) {
-                // shows error in the text area
-                SwingUtilities.invokeLater(() ->
-                    definitionArea.setText("❌ Error fetching definition:\n" + e.getMessage())
-                );
+    /**
+     * Looks up a definition, from memory if it is there and otherwise on the
+     * service's threads. Each lookup is a DefinitionFetch event in a flight
+     * recording, timed until the definition arrives, fails or is cancelled.
+     *
+     * @param word        The word to define.
+     * @param definitions Where to look up the definition.
+     * @param partial     Receives each part of a fetched definition as it
+     *                    arrives.
+     * @return The definition, which can be cancelled.
+     */
+    static CompletableFuture<String> fetch(String word, DefinitionService definitions, Consumer<String> partial) {
+        CounterEvents.DefinitionFetch event = new CounterEvents.DefinitionFetch();
+        event.begin();
+        String cached = definitions.cached(word);
+        CompletableFuture<String> lookup = cached != null
+            ? CompletableFuture.completedFuture(cached)
+            : definitions.lookupAsync(word, partial);
+        lookup.whenComplete((definition, error) -> {
+            if (event.shouldCommit()) {
+                event.word = word;
+                event.bytes = definition == null ? 0 : definition.getBytes(StandardCharsets.UTF_8).length;
+                event.cached = cached != null;
+                event.failed = error != null;
+                event.commit();
             }
-        }).start();
+        });
+        return lookup;
     }
 }
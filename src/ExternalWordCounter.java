@@ -0,0 +1,453 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Supplier;
+
+/**
+ * ExternalWordCounter counts words within a fixed memory budget, for inputs
+ * whose vocabulary is too big for the heap, such as web crawls full of
+ * typos, IDs and hashes.
+ *
+ * Words are counted into a WordCountTable like BookWordCounter does. Once
+ * the table's arrays reach the budget, its words are written out in
+ * dictionary order to a run file in the spill directory and counting goes
+ * on in a new table. saveResults() merges the runs, reading each one in
+ * order and adding up the counts of the same word, straight into the
+ * results format of BookWordCounter.saveResults(), so the file is the same
+ * as if every word had fit in memory. When there are too many runs to
+ * merge at once, the oldest ones are merged into one run first.
+ *
+ * The heap used is the table, which can reach up to twice the budget as
+ * its arrays grow by doubling, plus a read buffer per run being merged. It
+ * does not depend on the size of the input.
+ *
+ * @author Zak Sheikh
+ */
+public class ExternalWordCounter implements Closeable {
+
+    /** Heap the table may take by default */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+    /** Most runs merged at once by default */
+    static final int DEFAULT_MAX_RUNS = 64;
+
+    /** Size of the buffer of each run file */
+    private static final int RUN_BUFFER_SIZE = 1 << 16;
+
+    /** Creates a tokenizer for each book that is read */
+    private final Supplier<? extends Tokenizer> tokenizers;
+
+    /** Tokenizer used by processLine */
+    private final Tokenizer lineTokenizer;
+
+    /** Counts each word the tokenizer finds */
+    private final Tokenizer.TokenSink countingSink = this::countWord;
+
+    /** Words that are never counted */
+    private final StopWordFilter stopWords;
+
+    /** Heap the table may take before it is spilled */
+    private final long memoryBudget;
+
+    /** Where the run files are written */
+    private final Path spillDirectory;
+
+    /** Most runs merged at once */
+    private final int maxRuns;
+
+    /** The run files written so far, oldest first */
+    private final List<Path> runs = new ArrayList<>();
+
+    /** The words counted since the last spill */
+    private WordCountTable counts = new WordCountTable();
+
+    /** Number of words counted in all */
+    private long total;
+
+    /**
+     * Creates a counter with the default tokenizer.
+     *
+     * @param memoryBudget   Heap the table may take before it is spilled, in bytes.
+     * @param spillDirectory Where to write the run files.
+     */
+    public ExternalWordCounter(long memoryBudget, Path spillDirectory) {
+        this(WordTokenizer::new, StopWordFilter.NONE, memoryBudget, spillDirectory);
+    }
+
+    /**
+     * Creates a counter with a custom tokenizer that skips stop words.
+     *
+     * @param tokenizers     Creates the tokenizers used to split text into words.
+     * @param stopWords      The words not to count.
+     * @param memoryBudget   Heap the table may take before it is spilled, in bytes.
+     * @param spillDirectory Where to write the run files.
+     */
+    public ExternalWordCounter(Supplier<? extends Tokenizer> tokenizers, StopWordFilter stopWords,
+            long memoryBudget, Path spillDirectory) {
+        this(tokenizers, stopWords, memoryBudget, spillDirectory, DEFAULT_MAX_RUNS);
+    }
+
+    /**
+     * Creates a counter that merges at most maxRuns runs at once.
+     */
+    ExternalWordCounter(Supplier<? extends Tokenizer> tokenizers, StopWordFilter stopWords,
+            long memoryBudget, Path spillDirectory, int maxRuns) {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("The memory budget must be positive");
+        }
+        if (maxRuns < 2) {
+            throw new IllegalArgumentException("At least two runs must be merged at once");
+        }
+        this.tokenizers = tokenizers;
+        this.lineTokenizer = tokenizers.get();
+        this.stopWords = stopWords;
+        this.memoryBudget = memoryBudget;
+        this.spillDirectory = spillDirectory;
+        this.maxRuns = maxRuns;
+    }
+
+    /**
+     * Reads a text file and counts occurrences of words.
+     *
+     * @param filePath The path of the text file to be read.
+     */
+    public void processBook(String filePath) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                processLine(line);
+            }
+        }
+    }
+
+    /**
+     * Reads a text file through a memory mapping and counts occurrences of
+     * words, like BookWordCounter.processBookMapped().
+     *
+     * @param filePath The path of the text file to be read.
+     */
+    public void processBookMapped(String filePath) throws IOException {
+        Charset charset = Charset.defaultCharset();
+        if (!ParallelBookReader.supports(charset)) {
+            processBook(filePath);
+            return;
+        }
+        MappedBookReader reader = new MappedBookReader(charset, MappedBookReader.DEFAULT_WINDOW_SIZE);
+        try {
+            reader.read(Paths.get(filePath), tokenizers.get(), countingSink);
+        } catch (SpillFailedException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Processes a line of text by extracting words and counting their
+     * occurrences.
+     *
+     * @param line The line of text to process.
+     */
+    public void processLine(String line) throws IOException {
+        if (line == null || line.isEmpty()) {
+            return;
+        }
+        try {
+            lineTokenizer.tokenize(line, countingSink);
+            lineTokenizer.finish(countingSink);
+        } catch (SpillFailedException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns the total number of words counted.
+     *
+     * @return The total word count.
+     */
+    public long totalWordCount() {
+        return total;
+    }
+
+    /**
+     * Returns the number of run files on disk.
+     *
+     * @return The number of runs.
+     */
+    public int runCount() {
+        return runs.size();
+    }
+
+    /**
+     * Writes the word count result to a file in dictionary order, in the
+     * same format as BookWordCounter.saveResults(). A file name ending in
+     * .gz is written gzip-compressed. Counting can go on afterwards.
+     *
+     * @param outputFilePath The file path to save the results.
+     */
+    public void saveResults(String outputFilePath) throws IOException {
+        Path file = Paths.get(outputFilePath);
+        if (runs.isEmpty()) {
+            // everything fit in memory
+            WordCountWriter.write(counts, file);
+            return;
+        }
+        // spilling leaves at most maxRuns runs to merge
+        spill();
+        try (WordCountWriter writer = new WordCountWriter(file, WordCountWriter.Compression.forFile(file), total)) {
+            merge(runs, writer::write);
+        }
+    }
+
+    /**
+     * Deletes the run files.
+     */
+    @Override
+    public void close() throws IOException {
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+        counts = new WordCountTable();
+    }
+
+    /**
+     * Counts one word found by the tokenizer, spilling the table once it
+     * reaches the budget.
+     */
+    private void countWord(char[] buffer, int offset, int length) {
+        if (stopWords.contains(buffer, offset, length)) {
+            return;
+        }
+        counts.increment(buffer, offset, length);
+        total++;
+        if (counts.memoryUsage() > memoryBudget) {
+            try {
+                spill();
+            } catch (IOException e) {
+                // carries the error out of the tokenizer
+                throw new SpillFailedException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes the table to a new run file in dictionary order and starts a
+     * new table.
+     */
+    private void spill() throws IOException {
+        if (counts.size() == 0) {
+            return;
+        }
+        // merges older runs first, so a merge never has too many files open
+        if (runs.size() >= maxRuns) {
+            mergeRuns(maxRuns);
+        }
+        Path run = Files.createTempFile(spillDirectory, "word-counts-", ".run");
+        boolean written = false;
+        try {
+            try (RunWriter writer = new RunWriter(run)) {
+                IOException[] failure = new IOException[1];
+                counts.forEachSorted((word, count) -> {
+                    if (failure[0] == null) {
+                        try {
+                            writer.write(word, count);
+                        } catch (IOException e) {
+                            failure[0] = e;
+                        }
+                    }
+                });
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+            }
+            written = true;
+        } finally {
+            // a run that was not fully written would be cut short when merged
+            if (!written) {
+                Files.deleteIfExists(run);
+            }
+        }
+        runs.add(run);
+        counts = new WordCountTable();
+    }
+
+    /**
+     * Merges the oldest n runs into one run.
+     */
+    private void mergeRuns(int n) throws IOException {
+        List<Path> oldest = new ArrayList<>(runs.subList(0, n));
+        Path merged = Files.createTempFile(spillDirectory, "word-counts-", ".run");
+        boolean written = false;
+        try {
+            try (RunWriter writer = new RunWriter(merged)) {
+                merge(oldest, writer::write);
+            }
+            written = true;
+        } finally {
+            if (!written) {
+                Files.deleteIfExists(merged);
+            }
+        }
+        for (Path run : oldest) {
+            Files.delete(run);
+        }
+        runs.subList(0, n).clear();
+        runs.add(0, merged);
+    }
+
+    /**
+     * Reads runs in step and passes each word on once, in dictionary order,
+     * with the sum of its counts.
+     */
+    private static void merge(List<Path> files, EntrySink sink) throws IOException {
+        List<RunReader> readers = new ArrayList<>(files.size());
+        try {
+            // orders the runs by their next word
+            PriorityQueue<RunReader> queue = new PriorityQueue<>(files.size(),
+                (a, b) -> a.word.compareTo(b.word));
+            for (Path file : files) {
+                RunReader reader = new RunReader(file);
+                readers.add(reader);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            while (!queue.isEmpty()) {
+                RunReader first = queue.poll();
+                String word = first.word;
+                long count = first.count;
+                if (first.next()) {
+                    queue.add(first);
+                }
+                // adds up the same word from the other runs
+                while (!queue.isEmpty() && queue.peek().word.equals(word)) {
+                    RunReader same = queue.poll();
+                    count += same.count;
+                    if (same.next()) {
+                        queue.add(same);
+                    }
+                }
+                sink.accept(word, count);
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Receives the merged entries.
+     */
+    private interface EntrySink {
+        void accept(String word, long count) throws IOException;
+    }
+
+    /**
+     * Carries an IOException from a spill out through a TokenSink, which
+     * cannot throw one.
+     */
+    private static final class SpillFailedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        SpillFailedException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /**
+     * Writes a run file: for each word, its number of chars, its chars as
+     * UTF-16 and its count. Storing the chars as they are means any word,
+     * even one with a lone surrogate, reads back exactly.
+     */
+    private static final class RunWriter implements Closeable {
+        private final DataOutputStream out;
+        private byte[] bytes = new byte[64];
+
+        RunWriter(Path file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), RUN_BUFFER_SIZE));
+        }
+
+        void write(String word, long count) throws IOException {
+            int n = word.length();
+            if (bytes.length < 2 * n) {
+                bytes = new byte[Math.max(2 * n, 2 * bytes.length)];
+            }
+            for (int i = 0; i < n; i++) {
+                char c = word.charAt(i);
+                bytes[2 * i] = (byte) (c >> 8);
+                bytes[2 * i + 1] = (byte) c;
+            }
+            out.writeInt(n);
+            out.write(bytes, 0, 2 * n);
+            out.writeLong(count);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a run file one entry at a time.
+     */
+    private static final class RunReader implements Closeable {
+        private final DataInputStream in;
+        private byte[] bytes = new byte[64];
+        private char[] chars = new char[32];
+
+        /** The current word and its count */
+        String word;
+        long count;
+
+        RunReader(Path file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), RUN_BUFFER_SIZE));
+        }
+
+        /**
+         * Moves to the next entry, returning false at the end of the file.
+         */
+        boolean next() throws IOException {
+            int n;
+            try {
+                n = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            if (bytes.length < 2 * n) {
+                bytes = new byte[Math.max(2 * n, 2 * bytes.length)];
+                chars = new char[bytes.length / 2];
+            }
+            in.readFully(bytes, 0, 2 * n);
+            for (int i = 0; i < n; i++) {
+                chars[i] = (char) ((bytes[2 * i] & 0xFF) << 8 | (bytes[2 * i + 1] & 0xFF));
+            }
+            word = new String(chars, 0, n);
+            count = in.readLong();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Unit tests of the ExternalWordCounter class, to be run with JUnit 5.
+ *
+ * @author Zak Sheikh
+ */
+public class ExternalWordCounterTest {
+
+    @BeforeAll
+    public static void setUpClass() {
+        System.out.println("Running ExternalWordCounterTest 📚");
+    }
+
+    /**
+     * Writes a book with many distinct words, some repeated across the
+     * whole book so their counts come from several runs.
+     */
+    private static Path writeBook(Path directory) throws IOException {
+        Path book = directory.resolve("book.txt");
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(book))) {
+            for (int i = 0; i < 40_000; i++) {
+                writer.println("The w" + Integer.toString(i * 7919 % 40_000, 26).replaceAll("[0-9]", "x")
+                    + " and café " + (i % 3 == 0 ? "über" : "tag" + (char) ('a' + i % 26)));
+            }
+        }
+        return book;
+    }
+
+    /**
+     * Tests that the results match the in-memory counter byte for byte,
+     * whether the words spill to many runs, to more runs than are merged
+     * at once, or not at all.
+     */
+    @Test
+    void testSameAsInMemory(@TempDir Path directory) throws IOException {
+        System.out.println("Running ExternalWordCounter results test");
+        Path book = writeBook(directory);
+        BookWordCounter inMemory = new BookWordCounter();
+        inMemory.processBook(book.toString());
+        Path expected = directory.resolve("expected.txt");
+        inMemory.saveResults(expected.toString());
+
+        for (int maxRuns : new int[] {ExternalWordCounter.DEFAULT_MAX_RUNS, 3}) {
+            try (ExternalWordCounter counter = new ExternalWordCounter(WordTokenizer::new, StopWordFilter.NONE,
+                    64 << 10, directory, maxRuns)) {
+                counter.processBook(book.toString());
+                assertTrue(counter.runCount() > 1, "Expected the words to spill");
+                assertTrue(counter.runCount() <= maxRuns, "Expected old runs to be merged");
+                assertEquals(inMemory.totalWordCount(), counter.totalWordCount(), "Expected the same total");
+                Path written = directory.resolve("written-" + maxRuns + ".txt");
+                counter.saveResults(written.toString());
+                assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(written),
+                    "Expected the same results with " + maxRuns + " runs at once");
+            }
+        }
+
+        // checks a mapped read, a gzipped file and a counter that never spills
+        try (ExternalWordCounter counter = new ExternalWordCounter(64 << 10, directory)) {
+            counter.processBookMapped(book.toString());
+            Path gzipped = directory.resolve("written.txt.gz");
+            counter.saveResults(gzipped.toString());
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(gzipped))) {
+                assertArrayEquals(Files.readAllBytes(expected), in.readAllBytes(), "Expected the same gzipped text");
+            }
+        }
+        try (ExternalWordCounter counter = new ExternalWordCounter(ExternalWordCounter.DEFAULT_MEMORY_BUDGET, directory)) {
+            counter.processBook(book.toString());
+            assertEquals(0, counter.runCount(), "Expected no runs within the budget");
+            Path written = directory.resolve("unspilled.txt");
+            counter.saveResults(written.toString());
+            assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(written), "Expected the same results");
+        }
+    }
+
+    /**
+     * Tests that runs are deleted when the counter is closed, and that
+     * counting can go on after saving.
+     */
+    @Test
+    void testCloseDeletesRuns(@TempDir Path directory) throws IOException {
+        System.out.println("Running ExternalWordCounter close test");
+        Path book = writeBook(directory);
+        Path spill = Files.createDirectory(directory.resolve("spill"));
+        ExternalWordCounter counter = new ExternalWordCounter(64 << 10, spill);
+        counter.processBook(book.toString());
+        counter.saveResults(directory.resolve("once.txt").toString());
+        counter.processLine("Zebra zebra");
+        Path twice = directory.resolve("twice.txt");
+        counter.saveResults(twice.toString());
+        assertTrue(Files.readAllLines(twice).contains("zebra: 2"), "Expected the words counted after saving");
+        assertEquals(BookWordCounter.loadResults(directory.resolve("once.txt").toString()).getWordCount("the"),
+            BookWordCounter.loadResults(twice.toString()).getWordCount("the"), "Expected earlier counts kept");
+        counter.close();
+        try (var files = Files.list(spill)) {
+            assertEquals(0, files.count(), "Expected the run files deleted");
+        }
+    }
+}
@@ -0,0 +1,324 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HeavyHitters estimates the most frequent words of a text in fixed memory,
+ * for vocabularies too large to count exactly.
+ *
+ * It implements the Space-Saving algorithm: at most capacity words are
+ * tracked at a time, and when a new word arrives while the table is full it
+ * takes the place of the word with the lowest count, inheriting that count
+ * plus one. Estimated counts are never too low, and are too high by at most
+ * the number of words counted divided by the capacity. Any word that makes up
+ * more than 1/capacity of the text is guaranteed to be tracked.
+ *
+ * Words are looked up straight from tokenizer buffers, and each word costs
+ * O(log capacity) time.
+ *
+ * @author Zak Sheikh
+ */
+public class HeavyHitters {
+
+    /** The tracked words, by entry id */
+    private final String[] words;
+
+    /** The hash code of each tracked word */
+    private final int[] hashes;
+
+    /** The estimated count of each tracked word */
+    private final long[] counts;
+
+    /** How much of each estimated count may be inherited from evicted words */
+    private final long[] errors;
+
+    /** Entry ids ordered as a min-heap by count */
+    private final int[] heap;
+
+    /** The position of each entry id in the heap */
+    private final int[] heapPosition;
+
+    /** Open addressing index from word to entry id + 1, or 0 if empty */
+    private final int[] index;
+
+    /** Number of words tracked */
+    private int size;
+
+    /** Number of words counted */
+    private long total;
+
+    /** Splits lines into words */
+    private final Tokenizer tokenizer = new WordTokenizer();
+
+    /**
+     * Creates an estimator that tracks up to capacity words.
+     *
+     * @param capacity The number of words to track. More words give more
+     *                 accurate counts.
+     */
+    public HeavyHitters(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1: " + capacity);
+        }
+        words = new String[capacity];
+        hashes = new int[capacity];
+        counts = new long[capacity];
+        errors = new long[capacity];
+        heap = new int[capacity];
+        heapPosition = new int[capacity];
+        index = new int[Integer.highestOneBit(capacity * 2 - 1) * 2];
+    }
+
+    /**
+     * Reads a text file and counts the words in it.
+     *
+     * @param filePath The path of the text file to be read.
+     */
+    public void processBook(String filePath) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                processLine(line);
+            }
+        }
+    }
+
+    /**
+     * Counts the words in a line of text.
+     *
+     * @param line The line of text to process.
+     */
+    public void processLine(String line) {
+        if (line == null || line.isEmpty()) {
+            return;
+        }
+        tokenizer.tokenize(line, this::accept);
+        tokenizer.finish(this::accept);
+    }
+
+    /**
+     * Counts one word. Can be used directly as a Tokenizer.TokenSink.
+     *
+     * @param buffer The buffer holding the word.
+     * @param offset The index of the first character of the word.
+     * @param length The number of characters in the word.
+     */
+    public void accept(char[] buffer, int offset, int length) {
+        total++;
+        int hash = WordHashing.hash(buffer, offset, length);
+        int mask = index.length - 1;
+        int slot = WordHashing.spread(hash) & mask;
+        int id;
+        while ((id = index[slot] - 1) >= 0) {
+            if (hashes[id] == hash && WordHashing.matches(words[id], buffer, offset, length)) {
+                counts[id]++;
+                siftDown(heapPosition[id]);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        String word = new String(buffer, offset, length);
+        if (size < words.length) {
+            // still room: tracks the word with an exact count
+            id = size++;
+            counts[id] = 1;
+            errors[id] = 0;
+            heap[id] = id;
+            heapPosition[id] = id;
+        } else {
+            // replaces the word with the lowest count
+            id = heap[0];
+            removeFromIndex(id);
+            errors[id] = counts[id];
+            counts[id]++;
+        }
+        words[id] = word;
+        hashes[id] = hash;
+        addToIndex(id);
+        siftUp(heapPosition[id]);
+        siftDown(heapPosition[id]);
+    }
+
+    /**
+     * Returns the number of words counted, including words that are no
+     * longer tracked.
+     *
+     * @return The total word count.
+     */
+    public long totalWordCount() {
+        return total;
+    }
+
+    /**
+     * Returns the most frequent words with their estimated counts, most
+     * frequent first. Ties are broken alphabetically.
+     *
+     * @param k The number of words to return.
+     * @return Up to k word-count pairs.
+     */
+    public List<Map.Entry<String, Long>> top(int k) {
+        // keeps the best k entries in a min-heap, with the weakest at the root
+        int[] best = new int[Math.max(0, Math.min(k, size))];
+        int n = 0;
+        for (int id = 0; id < size && best.length > 0; id++) {
+            if (n < best.length) {
+                best[n] = id;
+                for (int i = n++; i > 0 && ranksAbove(best[(i - 1) / 2], best[i]); i = (i - 1) / 2) {
+                    int parent = best[(i - 1) / 2];
+                    best[(i - 1) / 2] = best[i];
+                    best[i] = parent;
+                }
+            } else if (ranksAbove(id, best[0])) {
+                // replaces the weakest entry kept so far
+                best[0] = id;
+                siftDownBest(best, n);
+            }
+        }
+
+        // takes the weakest entry off the heap until it is empty
+        int[] order = new int[n];
+        for (int i = n - 1; i >= 0; i--) {
+            order[i] = best[0];
+            best[0] = best[i];
+            siftDownBest(best, i);
+        }
+        List<Map.Entry<String, Long>> result = new ArrayList<>(n);
+        for (int id : order) {
+            result.add(Map.entry(words[id], counts[id]));
+        }
+        return result;
+    }
+
+    /**
+     * Returns how much the estimated count of a word may exceed its true
+     * count.
+     *
+     * @param word The word to look up.
+     * @return The possible overcount, or -1 if the word is not tracked.
+     */
+    public long getError(String word) {
+        int hash = word.hashCode();
+        int mask = index.length - 1;
+        int id;
+        for (int slot = WordHashing.spread(hash) & mask; (id = index[slot] - 1) >= 0; slot = (slot + 1) & mask) {
+            if (hashes[id] == hash && words[id].equals(word)) {
+                return errors[id];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds an entry to the word index.
+     */
+    private void addToIndex(int id) {
+        int mask = index.length - 1;
+        int slot = WordHashing.spread(hashes[id]) & mask;
+        while (index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = id + 1;
+    }
+
+    /**
+     * Removes an entry from the word index, shifting back later entries of
+     * the same probe run so lookups still find them.
+     */
+    private void removeFromIndex(int id) {
+        int mask = index.length - 1;
+        int hole = WordHashing.spread(hashes[id]) & mask;
+        while (index[hole] != id + 1) {
+            hole = (hole + 1) & mask;
+        }
+        for (int next = (hole + 1) & mask; index[next] != 0; next = (next + 1) & mask) {
+            int home = WordHashing.spread(hashes[index[next] - 1]) & mask;
+            // moves the entry if the hole lies between its home slot and where it is now
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                index[hole] = index[next];
+                hole = next;
+            }
+        }
+        index[hole] = 0;
+    }
+
+    /**
+     * Moves a heap entry up while it has a lower count than its parent.
+     */
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (counts[heap[parent]] <= counts[heap[position]]) {
+                return;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    /**
+     * Moves a heap entry down while it has a higher count than a child.
+     */
+    private void siftDown(int position) {
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[heap[position]] <= counts[heap[child]]) {
+                return;
+            }
+            swap(position, child);
+            position = child;
+        }
+    }
+
+    /**
+     * Checks whether entry a comes before entry b in top(): a higher count,
+     * or the same count and an earlier word.
+     */
+    private boolean ranksAbove(int a, int b) {
+        return counts[a] != counts[b] ? counts[a] > counts[b] : words[a].compareTo(words[b]) < 0;
+    }
+
+    /**
+     * Moves the root of a min-heap of entries from top() down to its place.
+     *
+     * @param best The heap, ordered so the lowest ranked entry is at the root.
+     * @param n    The number of entries in the heap.
+     */
+    private void siftDownBest(int[] best, int n) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n) {
+                return;
+            }
+            if (child + 1 < n && ranksAbove(best[child], best[child + 1])) {
+                child++;
+            }
+            if (!ranksAbove(best[i], best[child])) {
+                return;
+            }
+            int entry = best[i];
+            best[i] = best[child];
+            best[child] = entry;
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int a = heap[i];
+        int b = heap[j];
+        heap[i] = b;
+        heap[j] = a;
+        heapPosition[b] = i;
+        heapPosition[a] = j;
+    }
+}
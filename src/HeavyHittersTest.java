@@ -0,0 +1,64 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Unit tests of the HeavyHitters class, to be run with JUnit 5.
+ *
+ * @author Zak Sheikh
+ */
+public class HeavyHittersTest {
+
+    @BeforeAll
+    public static void setUpClass() {
+        System.out.println("Running HeavyHittersTest 📚");
+    }
+
+    /**
+     * Tests that the frequent words of a long skewed text are found with
+     * counts that are never too low and within the error bound.
+     */
+    @Test
+    void testFindsFrequentWords() {
+        System.out.println("Running HeavyHitters top() test");
+        HeavyHitters heavyHitters = new HeavyHitters(100);
+        BookWordCounter exact = new BookWordCounter();
+
+        // a few common words mixed with 20,000 rare ones
+        String[] common = {"the", "and", "of", "to", "in"};
+        Random random = new Random(5);
+        for (int i = 0; i < 20_000; i++) {
+            String line = common[i % common.length] + " " + common[random.nextInt(2)] + " rare" + toLetters(i);
+            heavyHitters.processLine(line);
+            exact.processLine(line);
+        }
+
+        // checks that the top words match the exact counter
+        List<Map.Entry<String, Long>> top = heavyHitters.top(5);
+        List<Map.Entry<String, Long>> expected = exact.topWords(5);
+        long bound = heavyHitters.totalWordCount() / 100;
+        for (int i = 0; i < expected.size(); i++) {
+            String word = expected.get(i).getKey();
+            assertEquals(word, top.get(i).getKey(), "Expected the same top words");
+            long estimate = top.get(i).getValue();
+            assertTrue(estimate >= exact.getWordCount(word), "Expected the estimate to never be too low");
+            assertTrue(estimate - exact.getWordCount(word) <= bound, "Expected the estimate to be within the bound");
+            assertTrue(heavyHitters.getError(word) >= 0, "Expected the word to be tracked");
+        }
+        assertEquals(exact.totalWordCount(), heavyHitters.totalWordCount(), "Expected every word to be counted");
+    }
+
+    /** Spells a number with letters so it forms part of a word */
+    private static String toLetters(int n) {
+        StringBuilder sb = new StringBuilder();
+        do {
+            sb.append((char) ('a' + n % 26));
+            n /= 26;
+        } while (n > 0);
+        return sb.toString();
+    }
+}
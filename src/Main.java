@@ -1,37 +1,121 @@
 import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 /**
  * Main class to run the BookWordCounter program.
- *  Usage: java Main <filename>
+ *  Usage: java Main [--ngrams N] [--memory SIZE] [--metrics] [--metrics-file FILE] <filename>
+ *         java Main [--batch] [--full] [--threads N] [--output DIR] [--metrics] [--metrics-file FILE]
+ *                   <file|directory|pattern>...
+ *
+ * With one book, the results are saved and the user can then ask for the
+ * count of any word. With --ngrams N, phrases of N words are counted too,
+ * saved to WordCountResults-name-Ngrams.txt and can be asked for the same
+ * way. With several books, a directory or a pattern such as
+ * "books/*.txt", the books are counted together by a CorpusCounter, which
+ * saves each book's results and the merged corpus results without prompting.
+ * A batch run only reads the books that changed since the last run into the
+ * same output directory, unless --full is given. Each book's index is cached
+ * under DIR/index, and the indexes of books no longer counted are deleted;
+ * --full reads every book without them. With --memory SIZE, such
+ * as 512m, one book is counted by an ExternalWordCounter that spills to
+ * disk beyond that much heap, and only its results are saved.
+ *
+ * With --metrics, the counting is measured and a JSON summary of the
+ * metrics is printed once the books are counted; --metrics-file FILE
+ * writes it to FILE instead. The metrics can also be watched over JMX
+ * while the program runs. Books counted with --memory are not measured.
  * 
  * @author Zak Sheikh
  */
 public class Main {
+
+    /** Usage message */
+    private static final String USAGE = "Usage: java Main [--ngrams N] [--memory SIZE] [--metrics] "
+        + "[--metrics-file FILE] <filename>\n"
+        + "       java Main [--batch] [--full] [--threads N] [--output DIR] [--metrics] [--metrics-file FILE]\n"
+        + "                 <file|directory|pattern>...";
+
     public static void main(String[] args) {
-        // creates an instance of BookWordCounter
-        BookWordCounter counter = new BookWordCounter();
-        Scanner scanner = new Scanner(System.in);
+        BookWordCounter counter;
+
+        // splits the options from the books
+        boolean batch = false;
+        boolean full = false;
+        int ngrams = 0;
+        long memoryBudget = 0;
+        boolean metricsOn = false;
+        String metricsFile = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String outputDirectory = "../output";
+        List<String> inputs = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--batch": batch = true; break;
+                    case "--full": full = true; break;
+                    case "--ngrams": ngrams = Integer.parseInt(args[++i]); break;
+                    case "--threads": threads = Integer.parseInt(args[++i]); break;
+                    case "--output": outputDirectory = args[++i]; break;
+                    case "--memory": memoryBudget = parseSize(args[++i]); break;
+                    case "--metrics": metricsOn = true; break;
+                    case "--metrics-file": metricsOn = true; metricsFile = args[++i]; break;
+                    default: inputs.add(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            System.out.println(USAGE);
+            return;
+        }
+        if (ngrams != 0 && (ngrams < NGramCounter.MIN_N || ngrams > NGramCounter.MAX_N)) {
+            System.out.println("--ngrams must be from " + NGramCounter.MIN_N + " to " + NGramCounter.MAX_N);
+            return;
+        }
 
         // checks if a filename was given in the command-line
-        if (args.length < 1) {
-            System.out.println("Usage: java Main <filename>");
+        if (inputs.isEmpty()) {
+            System.out.println(USAGE);
             return;
         }
+        CounterMetrics metrics = metricsOn ? startMetrics() : null;
+        if (batch || inputs.size() > 1 || !new File(inputs.get(0)).isFile()) {
+            runBatch(inputs, threads, outputDirectory, full, metrics, metricsFile);
+            return;
+        }
+        Scanner scanner = new Scanner(System.in);
 
         // gets file name from command-line argument
-        String inputFile = args[0]; 
+        String inputFile = inputs.get(0); 
         File file = new File(inputFile);
         // gets the name of the book
         String fileNameOnly = file.getName().replace(".txt", ""); 
         // creates the output file name
-        String outputFile = "../output/WordCountResults-" + fileNameOnly + ".txt"; 
+        String outputFile = outputDirectory + "/WordCountResults-" + fileNameOnly + ".txt"; 
+        if (memoryBudget > 0) {
+            runWithinBudget(inputFile, outputFile, memoryBudget);
+            return;
+        }
 
         try {
-            // processes the book and saves the results
-            counter.processBook(inputFile);
+            // processes the book, or reloads its counts if it was indexed before, and saves the results
+            counter = BookWordCounter.loadOrProcessBook(inputFile, WordCountIndex.cacheFileFor(file.toPath()).toString(),
+                metrics);
             counter.saveResults(outputFile);
             System.out.println("Results saved to " + outputFile);
             System.out.println("Word count completed for " + inputFile);
+            if (metrics != null) {
+                reportMetrics(metrics, metricsFile);
+            }
+
+            // counts phrases too if asked, and saves them beside the word counts
+            NGramCounter phrases = null;
+            if (ngrams != 0) {
+                phrases = new NGramCounter(ngrams);
+                phrases.processBookMapped(inputFile);
+                String phrasesFile = outputDirectory + "/WordCountResults-" + fileNameOnly + "-" + ngrams + "grams.txt";
+                phrases.saveResults(phrasesFile);
+                System.out.println(ngrams + "-gram results saved to " + phrasesFile);
+            }
 
             // CLI: allows user to ask for word counts of specific words
             while (true) {
@@ -46,8 +130,13 @@ public class Main {
                     System.out.println("Goodbye");
                     break;
                 }
+                // looks up a phrase if there are several words
+                if (phrases != null && word.contains(" ")) {
+                    System.out.println("The phrase '" + word + "' appears " + phrases.getCount(word) + " times.");
+                    continue;
+                }
                 // checks if the word is in the HashMap
-                int count = counter.getWordCount(word);
+                long count = counter.getWordCount(word);
                 // prints the word count for the given word
                 System.out.println("The word '" + word + "' appears " + count + " times.");
             }
@@ -58,4 +147,141 @@ public class Main {
             scanner.close();
         }
     }
+
+    /**
+     * Counts a book too big to count in memory, spilling words to the
+     * temporary directory, and saves its results.
+     *
+     * @param inputFile    The book to count.
+     * @param outputFile   Where to save the results.
+     * @param memoryBudget Heap the counts may take, in bytes.
+     */
+    private static void runWithinBudget(String inputFile, String outputFile, long memoryBudget) {
+        Path spillDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+        try (ExternalWordCounter counter = new ExternalWordCounter(memoryBudget, spillDirectory)) {
+            long start = System.nanoTime();
+            counter.processBookMapped(inputFile);
+            int runs = counter.runCount();
+            counter.saveResults(outputFile);
+            System.out.println("Counted " + counter.totalWordCount() + " words in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms, spilling " + runs + " times");
+            System.out.println("Results saved to " + outputFile);
+        } catch (IOException e) {
+            System.err.println("An error occurred: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the metrics for this run and makes them visible over JMX.
+     *
+     * @return The metrics.
+     */
+    private static CounterMetrics startMetrics() {
+        CounterMetrics metrics = new CounterMetrics();
+        try {
+            metrics.register();
+        } catch (javax.management.JMException e) {
+            // the summary still works without JMX
+            System.err.println("Could not register metrics: " + e.getMessage());
+        }
+        return metrics;
+    }
+
+    /**
+     * Prints the metrics as JSON, or writes them to a file.
+     *
+     * @param metrics     The metrics.
+     * @param metricsFile The file to write, or null to print the metrics.
+     */
+    private static void reportMetrics(CounterMetrics metrics, String metricsFile) {
+        if (metricsFile == null) {
+            System.out.println(metrics.toJson());
+            return;
+        }
+        try (PrintWriter writer = new PrintWriter(new FileWriter(metricsFile))) {
+            writer.println(metrics.toJson());
+            System.out.println("Metrics saved to " + metricsFile);
+        } catch (IOException e) {
+            System.err.println("Could not save metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads a size such as 512m, 2g or 65536.
+     *
+     * @param text The size, in bytes or with a k, m or g suffix.
+     * @return The number of bytes.
+     */
+    private static long parseSize(String text) {
+        String lower = text.trim().toLowerCase();
+        long unit = 1;
+        if (lower.endsWith("k")) {
+            unit = 1L << 10;
+        } else if (lower.endsWith("m")) {
+            unit = 1L << 20;
+        } else if (lower.endsWith("g")) {
+            unit = 1L << 30;
+        }
+        if (unit > 1) {
+            lower = lower.substring(0, lower.length() - 1);
+        }
+        return Long.parseLong(lower) * unit;
+    }
+
+    /**
+     * Counts many books in one run and prints a summary.
+     *
+     * @param inputs          The files, directories and patterns to count.
+     * @param threads         Number of books to count at the same time.
+     * @param outputDirectory Where to save the results.
+     * @param full            Whether to count every book, rather than only
+     *                        the books changed since the last run.
+     * @param metrics         The metrics to measure the run into, or null.
+     * @param metricsFile     Where to write the metrics, or null to print them.
+     */
+    private static void runBatch(List<String> inputs, int threads, String outputDirectory, boolean full,
+            CounterMetrics metrics, String metricsFile) {
+        try {
+            long start = System.nanoTime();
+            List<Path> books = CorpusCounter.findBooks(inputs);
+            if (books.isEmpty()) {
+                System.err.println("No books found.");
+                System.exit(1);
+            }
+            Path output = Paths.get(outputDirectory);
+            // keeps the book indexes with the results they were counted for, and reads every book with --full
+            Path indexDirectory = full ? null : output.resolve("index");
+            CorpusCounter corpusCounter = new CorpusCounter(threads, output, indexDirectory);
+            corpusCounter.setMetrics(metrics);
+            BookWordCounter corpus = full ? corpusCounter.run(books) : corpusCounter.update(books);
+
+            // prints a summary of the run
+            Map<Path, String> failures = corpusCounter.getFailures();
+            int counted = books.size() - corpusCounter.getSkipped() - failures.size();
+            System.out.println("Counted " + counted + " of " + books.size() + " books in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+            if (corpusCounter.getSkipped() > 0 || corpusCounter.getRemoved() > 0) {
+                System.out.println("Skipped " + corpusCounter.getSkipped() + " unchanged books, removed "
+                    + corpusCounter.getRemoved() + " books");
+            }
+            System.out.println("Total words counted: " + corpus.totalWordCount());
+            System.out.println("Results saved to " + output.resolve(CorpusCounter.CORPUS_RESULTS_FILE));
+            for (Map.Entry<Path, String> failure : failures.entrySet()) {
+                System.err.println("Failed to count " + failure.getKey() + ": " + failure.getValue());
+            }
+            if (metrics != null) {
+                reportMetrics(metrics, metricsFile);
+            }
+            if (!failures.isEmpty()) {
+                System.exit(1);
+            }
+        } catch (IOException e) {
+            System.err.println("An error occurred: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted");
+            System.exit(1);
+        }
+    }
 }
@@ -0,0 +1,135 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MappedBookReader feeds a file to a Tokenizer through a memory mapping.
+ *
+ * ASCII bytes are tokenized straight from the mapped buffer, without a
+ * charset decoder or any per-line Strings. Only runs of non-ASCII bytes are
+ * decoded, which keeps plain English text on the fast path while UTF-8 text
+ * still counts the same as with FileReader.
+ *
+ * Large files are mapped one window at a time. Each window is cut after its
+ * last ASCII byte, so a multi-byte character is never split between two
+ * windows.
+ *
+ * @author Zak Sheikh
+ */
+public class MappedBookReader {
+
+    /** Bytes mapped at a time by default */
+    public static final int DEFAULT_WINDOW_SIZE = 256 << 20;
+
+    private final Charset charset;
+    private final int windowSize;
+
+    /**
+     * Creates a reader.
+     *
+     * @param charset    The charset of the files to read. ASCII bytes must
+     *                   always mean ASCII characters in it.
+     * @param windowSize The number of bytes to map at a time.
+     */
+    public MappedBookReader(Charset charset, int windowSize) {
+        if (!ParallelBookReader.supports(charset)) {
+            throw new IllegalArgumentException("Cannot read " + charset + " text byte by byte");
+        }
+        this.charset = charset;
+        this.windowSize = Math.max(1, windowSize);
+    }
+
+    /**
+     * Reads a whole file into a tokenizer and finishes the tokenizer.
+     *
+     * @param file      The file to read.
+     * @param tokenizer Splits the text into words.
+     * @param sink      Receives each word.
+     */
+    public void read(Path file, Tokenizer tokenizer, Tokenizer.TokenSink sink) throws IOException {
+        // replaces bad input with U+FFFD like FileReader does
+        CharsetDecoder decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(8192);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(windowSize, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int end = (int) length;
+                if (position + length < size) {
+                    end = afterLastAscii(window, end);
+                }
+                readWindow(window, end, tokenizer, sink, decoder, chars);
+                position += end;
+            }
+        }
+        tokenizer.finish(sink);
+    }
+
+    /**
+     * Tokenizes bytes [0, end) of a mapped window.
+     */
+    private void readWindow(ByteBuffer window, int end, Tokenizer tokenizer, Tokenizer.TokenSink sink,
+                            CharsetDecoder decoder, CharBuffer chars) {
+        ByteBuffer run = window.duplicate();
+        int i = 0;
+        while (i < end) {
+            // tokenizes ASCII bytes in place until a non-ASCII byte
+            i = tokenizer.tokenizeAscii(window, i, end, sink);
+            if (i == end) {
+                break;
+            }
+            // decodes the run of non-ASCII bytes
+            int runStart = i;
+            while (i < end && window.get(i) < 0) {
+                i++;
+            }
+            run.limit(i).position(runStart);
+            decoder.reset();
+            CoderResult result;
+            do {
+                result = decoder.decode(run, chars, true);
+                drain(chars, tokenizer, sink);
+            } while (result.isOverflow());
+            while (decoder.flush(chars).isOverflow()) {
+                drain(chars, tokenizer, sink);
+            }
+            drain(chars, tokenizer, sink);
+        }
+    }
+
+    /**
+     * Finds the index after the last ASCII byte before end, so the window
+     * can be cut there without splitting a character.
+     *
+     * @return The cut index, or end if the window has no ASCII bytes at all.
+     */
+    private static int afterLastAscii(ByteBuffer window, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (window.get(i) >= 0) {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Tokenizes the decoded characters and empties the buffer.
+     */
+    private static void drain(CharBuffer chars, Tokenizer tokenizer, Tokenizer.TokenSink sink) {
+        tokenizer.tokenize(chars.array(), 0, chars.position(), sink);
+        chars.clear();
+    }
+}
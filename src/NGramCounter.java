@@ -0,0 +1,451 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * NGramCounter counts phrases of n consecutive words, such as "of the" or
+ * "in the middle of", for n from 2 to 5.
+ *
+ * Books are split into words by the same Tokenizer that BookWordCounter
+ * uses. Each word is given an int ID by a Vocabulary, and an n-gram is kept
+ * as its n IDs packed side by side in one int array, so an n-gram costs
+ * n + 2 ints in the table (its IDs, hash code and count) rather than a
+ * String of the joined words. Phrase Strings are only built for results.
+ *
+ * Phrases run on from one line to the next, as sentences do in a book;
+ * each processBook() call starts afresh. Phrases are written with single
+ * spaces between words, such as "of the", and saved in the same results
+ * format as word counts, with the number of n-grams as the total.
+ *
+ * @author Zak Sheikh
+ */
+public class NGramCounter {
+
+    /** Shortest n-gram counted */
+    public static final int MIN_N = 2;
+
+    /** Longest n-gram counted */
+    public static final int MAX_N = 5;
+
+    /** Number of slots in a new table, always a power of two */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Number of words in each n-gram */
+    private final int n;
+
+    /** Gives each word an ID */
+    private final Vocabulary vocabulary = new Vocabulary();
+
+    /** Creates a tokenizer for each book that is read */
+    private final Supplier<? extends Tokenizer> tokenizers;
+
+    /** Tokenizer used by processLine */
+    private final Tokenizer lineTokenizer;
+
+    /** Counts each word the tokenizer finds */
+    private final Tokenizer.TokenSink countingSink = this::countWord;
+
+    /** The IDs of the last n words read, oldest first */
+    private final int[] window;
+
+    /** Number of words in the window, up to n */
+    private int filled;
+
+    /** The IDs of the n-gram in each slot, n ints per slot */
+    private int[] keys;
+
+    /** The hash code of the n-gram in each slot */
+    private int[] hashes;
+
+    /** The count of the n-gram in each slot, or 0 if the slot is empty */
+    private long[] counts;
+
+    /** Number of distinct n-grams */
+    private int size;
+
+    /** Number of n-grams counted */
+    private long total;
+
+    /**
+     * Creates a counter of n-grams.
+     *
+     * @param n The number of words in each n-gram, from 2 to 5.
+     */
+    public NGramCounter(int n) {
+        this(n, WordTokenizer::new);
+    }
+
+    /**
+     * Creates a counter of n-grams that splits text with the given
+     * tokenizers.
+     *
+     * @param n          The number of words in each n-gram, from 2 to 5.
+     * @param tokenizers Creates a tokenizer for each input that is read.
+     */
+    public NGramCounter(int n, Supplier<? extends Tokenizer> tokenizers) {
+        if (n < MIN_N || n > MAX_N) {
+            throw new IllegalArgumentException("n must be from " + MIN_N + " to " + MAX_N + ": " + n);
+        }
+        this.n = n;
+        this.tokenizers = tokenizers;
+        this.lineTokenizer = tokenizers.get();
+        this.window = new int[n];
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Returns the number of words in each n-gram.
+     *
+     * @return n.
+     */
+    public int getN() {
+        return n;
+    }
+
+    /**
+     * Reads a text file line by line and counts its n-grams.
+     *
+     * @param filePath The path of the text file to be read.
+     */
+    public void processBook(String filePath) throws IOException {
+        filled = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                processLine(line);
+            }
+        }
+        filled = 0;
+    }
+
+    /**
+     * Reads a text file through a memory mapping and counts its n-grams,
+     * the same as processBook().
+     *
+     * @param filePath The path of the text file to be read.
+     */
+    public void processBookMapped(String filePath) throws IOException {
+        Charset charset = Charset.defaultCharset();
+        if (!ParallelBookReader.supports(charset)) {
+            processBook(filePath);
+            return;
+        }
+        filled = 0;
+        new MappedBookReader(charset, MappedBookReader.DEFAULT_WINDOW_SIZE)
+            .read(Paths.get(filePath), tokenizers.get(), countingSink);
+        filled = 0;
+    }
+
+    /**
+     * Counts the n-grams of a line. Phrases continue from the words of the
+     * previous line.
+     *
+     * @param line The line of text to be processed.
+     */
+    public void processLine(String line) {
+        if (line == null || line.isEmpty()) {
+            return;
+        }
+        lineTokenizer.tokenize(line, countingSink);
+        // a word cannot continue past the end of the line
+        lineTokenizer.finish(countingSink);
+    }
+
+    /**
+     * Returns the count of a phrase.
+     *
+     * @param phrase n words separated by whitespace, in any case.
+     * @return The number of times the phrase was counted, or 0.
+     */
+    public long getCount(String phrase) {
+        String[] words = phrase.trim().toLowerCase().split("\\s+");
+        if (words.length != n) {
+            return 0;
+        }
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = vocabulary.get(words[i]);
+            if (ids[i] < 0) {
+                return 0;
+            }
+        }
+        return counts[find(ids, 0, hash(ids, 0))];
+    }
+
+    /**
+     * Returns the number of n-grams counted.
+     *
+     * @return The total of all counts.
+     */
+    public long totalCount() {
+        return total;
+    }
+
+    /**
+     * Returns the number of distinct n-grams.
+     *
+     * @return The number of different phrases counted.
+     */
+    public int distinctCount() {
+        return size;
+    }
+
+    /**
+     * Finds the most frequent phrases, most frequent first. Ties are broken
+     * alphabetically.
+     *
+     * Uses a min-heap that never holds more than k slots, like
+     * WordCountTable.top(), so this takes O(m log k) time for m n-grams.
+     *
+     * @param k The number of phrases to return.
+     * @return Up to k phrase-count pairs.
+     */
+    public List<Map.Entry<String, Long>> topNGrams(int k) {
+        int[] heap = new int[Math.max(0, Math.min(k, size))];
+        int m = 0;
+        if (heap.length > 0) {
+            for (int slot = 0; slot < counts.length; slot++) {
+                if (counts[slot] == 0) {
+                    continue;
+                }
+                if (m < heap.length) {
+                    // fills the heap, then restores order from the new leaf up
+                    heap[m] = slot;
+                    for (int i = m++; i > 0 && ranksAbove(heap[(i - 1) / 2], heap[i]); i = (i - 1) / 2) {
+                        swap(heap, i, (i - 1) / 2);
+                    }
+                } else if (ranksAbove(slot, heap[0])) {
+                    // replaces the weakest phrase kept so far
+                    heap[0] = slot;
+                    siftDown(heap, m);
+                }
+            }
+        }
+
+        // takes the weakest phrase off the heap until it is empty
+        int[] order = new int[m];
+        for (int i = m - 1; i >= 0; i--) {
+            order[i] = heap[0];
+            heap[0] = heap[i];
+            siftDown(heap, i);
+        }
+        List<Map.Entry<String, Long>> result = new ArrayList<>(m);
+        for (int slot : order) {
+            result.add(Map.entry(phrase(slot), counts[slot]));
+        }
+        return result;
+    }
+
+    /**
+     * Returns every phrase with its count.
+     *
+     * @return A new map from each phrase to its count.
+     */
+    public Map<String, Long> getAllCounts() {
+        Map<String, Long> map = new HashMap<>(size * 2);
+        for (int slot = 0; slot < counts.length; slot++) {
+            if (counts[slot] != 0) {
+                map.put(phrase(slot), counts[slot]);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Writes the phrase counts to a file in dictionary order, in the same
+     * format as BookWordCounter.saveResults(). A file name ending in .gz is
+     * written gzip-compressed.
+     *
+     * @param outputFilePath The file path to save the results.
+     */
+    public void saveResults(String outputFilePath) throws IOException {
+        String[] phrases = new String[size];
+        long[] phraseCounts = new long[size];
+        int i = 0;
+        for (int slot = 0; slot < counts.length; slot++) {
+            if (counts[slot] != 0) {
+                phrases[i] = phrase(slot);
+                phraseCounts[i++] = counts[slot];
+            }
+        }
+        Path file = Paths.get(outputFilePath);
+        WordCountWriter.write(phrases, phraseCounts, file, WordCountWriter.Compression.forFile(file));
+    }
+
+    /**
+     * Adds a word to the window and counts the n-gram it completes.
+     */
+    private void countWord(char[] buffer, int offset, int length) {
+        int id = vocabulary.add(buffer, offset, length);
+        if (filled < n) {
+            window[filled++] = id;
+            if (filled < n) {
+                return;
+            }
+        } else {
+            System.arraycopy(window, 1, window, 0, n - 1);
+            window[n - 1] = id;
+        }
+        increment(window);
+    }
+
+    /**
+     * Adds one to the count of an n-gram, adding it if it is new.
+     */
+    private void increment(int[] ids) {
+        int hash = hash(ids, 0);
+        int slot = find(ids, 0, hash);
+        if (counts[slot] == 0) {
+            System.arraycopy(ids, 0, keys, slot * n, n);
+            hashes[slot] = hash;
+            counts[slot] = 1;
+            total++;
+            if (++size * 2 >= counts.length) {
+                resize();
+            }
+            return;
+        }
+        counts[slot]++;
+        total++;
+    }
+
+    /**
+     * Finds the slot holding the n-gram ids[from, from + n), or the empty
+     * slot where it belongs.
+     */
+    private int find(int[] ids, int from, int hash) {
+        int mask = counts.length - 1;
+        int slot = WordHashing.spread(hash) & mask;
+        while (counts[slot] != 0) {
+            if (hashes[slot] == hash && sameKey(slot, ids, from)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Checks whether a slot holds the n-gram ids[from, from + n).
+     */
+    private boolean sameKey(int slot, int[] ids, int from) {
+        int base = slot * n;
+        for (int i = 0; i < n; i++) {
+            if (keys[base + i] != ids[from + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes the n-gram ids[from, from + n).
+     */
+    private int hash(int[] ids, int from) {
+        int hash = 0;
+        for (int i = 0; i < n; i++) {
+            hash = 31 * hash + ids[from + i];
+        }
+        return hash;
+    }
+
+    /**
+     * Joins the words of the n-gram in a slot with spaces.
+     */
+    private String phrase(int slot) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(vocabulary.word(keys[slot * n + i]));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Doubles the table and re-inserts every n-gram.
+     */
+    private void resize() {
+        int[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        long[] oldCounts = counts;
+        allocate(oldCounts.length * 2);
+        int mask = counts.length - 1;
+        for (int i = 0; i < oldCounts.length; i++) {
+            if (oldCounts[i] != 0) {
+                int slot = WordHashing.spread(oldHashes[i]) & mask;
+                while (counts[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                System.arraycopy(oldKeys, i * n, keys, slot * n, n);
+                hashes[slot] = oldHashes[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Creates empty slot arrays of the given capacity.
+     */
+    private void allocate(int capacity) {
+        keys = new int[capacity * n];
+        hashes = new int[capacity];
+        counts = new long[capacity];
+    }
+
+    /**
+     * Checks whether the phrase in slot a comes before the phrase in slot b
+     * in a most-frequent-first ranking. Comparing word by word gives the
+     * same order as comparing the joined phrases, since a space sorts
+     * before every character of a word.
+     */
+    private boolean ranksAbove(int a, int b) {
+        if (counts[a] != counts[b]) {
+            return counts[a] > counts[b];
+        }
+        for (int i = 0; i < n; i++) {
+            int wordA = keys[a * n + i];
+            int wordB = keys[b * n + i];
+            if (wordA != wordB) {
+                return vocabulary.compare(wordA, wordB) < 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves the root of a min-heap of slots down to its place.
+     */
+    private void siftDown(int[] heap, int m) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= m) {
+                return;
+            }
+            if (child + 1 < m && ranksAbove(heap[child], heap[child + 1])) {
+                child++;
+            }
+            if (!ranksAbove(heap[i], heap[child])) {
+                return;
+            }
+            swap(heap, i, child);
+            i = child;
+        }
+    }
+
+    private static void swap(int[] array, int i, int j) {
+        int temp = array[i];
+        array[i] = array[j];
+        array[j] = temp;
+    }
+}
@@ -0,0 +1,101 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests of the NGramCounter and Vocabulary classes, to be run with
+ * JUnit 5.
+ *
+ * @author Zak Sheikh
+ */
+public class NGramCounterTest {
+
+    @BeforeAll
+    public static void setUpClass() {
+        System.out.println("Running NGramCounterTest 📚");
+    }
+
+    /**
+     * Tests that words get dense IDs and are found again by String.
+     */
+    @Test
+    void testVocabulary() {
+        System.out.println("Running Vocabulary test");
+        Vocabulary vocabulary = new Vocabulary();
+        char[] buffer = "thecatthe".toCharArray();
+        assertEquals(0, vocabulary.add(buffer, 0, 3), "Expected the first ID");
+        assertEquals(1, vocabulary.add(buffer, 3, 3), "Expected the next ID");
+        assertEquals(0, vocabulary.add(buffer, 6, 3), "Expected the same ID for the same word");
+        assertEquals(1, vocabulary.get("cat"), "Expected cat's ID");
+        assertEquals(-1, vocabulary.get("dog"), "Expected no ID for a new word");
+        // grows past the first table
+        for (int i = 0; i < 5_000; i++) {
+            assertEquals(i + 2, vocabulary.add("w" + i), "Expected dense IDs");
+        }
+        assertEquals("w4999", vocabulary.word(5_001), "Expected the word of an ID");
+        assertEquals(1, vocabulary.get("cat"), "Expected cat's ID after growing");
+    }
+
+    /**
+     * Tests that phrases are counted across lines and match a count of the
+     * joined words.
+     */
+    @Test
+    void testCount() {
+        System.out.println("Running NGramCounter count test");
+        NGramCounter bigrams = new NGramCounter(2);
+        bigrams.processLine("The cat sat on the mat.");
+        bigrams.processLine("The cat ran");
+        assertEquals(8, bigrams.totalCount(), "Expected one bigram per word after the first");
+        assertEquals(2, bigrams.getCount("the cat"), "Expected: 2");
+        assertEquals(1, bigrams.getCount("MAT  the"), "Expected a phrase across lines");
+        assertEquals(0, bigrams.getCount("cat the"), "Expected 0 for an unseen phrase");
+        assertEquals(0, bigrams.getCount("the"), "Expected 0 for the wrong number of words");
+        assertEquals(List.of(Map.entry("the cat", 2L), Map.entry("cat ran", 1L)), bigrams.topNGrams(2),
+            "Expected the most frequent phrase, then ties alphabetically");
+
+        // checks a 5-gram count against the joined words of every window
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            text.append("w").append((char) ('a' + i * 7 % 11)).append(' ');
+        }
+        String[] words = text.toString().trim().split(" ");
+        Map<String, Long> expected = new HashMap<>();
+        for (int i = 0; i + 5 <= words.length; i++) {
+            expected.merge(String.join(" ", List.of(words).subList(i, i + 5)), 1L, Long::sum);
+        }
+        NGramCounter fivegrams = new NGramCounter(5);
+        fivegrams.processLine(text.toString());
+        assertEquals(expected, fivegrams.getAllCounts(), "Expected the same counts as joined Strings");
+        assertEquals(expected.size(), fivegrams.distinctCount(), "Expected the same number of phrases");
+        assertThrows(IllegalArgumentException.class, () -> new NGramCounter(6));
+    }
+
+    /**
+     * Tests that books are counted afresh and saved in the results format.
+     */
+    @Test
+    void testBookAndSave(@TempDir Path directory) throws IOException {
+        System.out.println("Running NGramCounter processBook() and saveResults() test");
+        Path book = Files.writeString(directory.resolve("book.txt"), "one two three\nfour one two\n");
+        NGramCounter trigrams = new NGramCounter(3);
+        trigrams.processBook(book.toString());
+        trigrams.processBookMapped(book.toString());
+        assertEquals(8, trigrams.totalCount(), "Expected no phrase across the two books");
+        assertEquals(2, trigrams.getCount("three four one"), "Expected a phrase across lines");
+
+        Path results = directory.resolve("results.txt");
+        trigrams.saveResults(results.toString());
+        assertEquals("Total words counted: 8", Files.readAllLines(results).get(0), "Expected the total");
+        assertEquals(trigrams.getAllCounts(), BookWordCounter.loadResults(results.toString()).getAllWordCounts(),
+            "Expected the phrases to load back");
+    }
+}
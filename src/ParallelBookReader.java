@@ -0,0 +1,246 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * ParallelBookReader counts the words of one large file on several threads.
+ *
+ * The file is split into byte ranges that start right after an ASCII
+ * whitespace byte, so no word is cut in half. Each range is decoded and
+ * counted into its own WordCountTable on a ForkJoinPool, and the partial
+ * tables are merged as the tasks join.
+ *
+ * Splitting on a whitespace byte is only safe when that byte can never be
+ * part of a multi-byte character, so this only works for charsets where
+ * ASCII bytes always mean ASCII characters (UTF-8, ISO-8859-1, ...).
+ *
+ * @author Zak Sheikh
+ */
+public class ParallelBookReader {
+
+    /** Ranges are not split below this many bytes by default */
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 1 << 20;
+
+    /** Size of the read and decode buffers of each task */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** How many ranges to aim for per thread, to even out the work */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final Supplier<? extends Tokenizer> tokenizers;
+    private final Charset charset;
+    private final int threads;
+    private final int minChunkSize;
+
+    /**
+     * Creates a reader.
+     *
+     * @param tokenizers   Creates a tokenizer for each range.
+     * @param charset      The charset of the files to read.
+     * @param threads      The number of threads to count with.
+     * @param minChunkSize Ranges smaller than this are not split further.
+     */
+    public ParallelBookReader(Supplier<? extends Tokenizer> tokenizers, Charset charset, int threads, int minChunkSize) {
+        if (!supports(charset)) {
+            throw new IllegalArgumentException("Cannot split " + charset + " text on byte boundaries");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        this.tokenizers = tokenizers;
+        this.charset = charset;
+        this.threads = threads;
+        this.minChunkSize = Math.max(1, minChunkSize);
+    }
+
+    /**
+     * Checks whether files in a charset can be split on ASCII whitespace
+     * bytes, which holds for UTF-8 and for single byte charsets that extend
+     * ASCII.
+     *
+     * @param charset The charset to check.
+     * @return true if this reader can split files in the charset.
+     */
+    public static boolean supports(Charset charset) {
+        if (charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII)) {
+            return true;
+        }
+        if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1) {
+            return false;
+        }
+        // every ASCII character must be encoded as itself
+        byte[] ascii = new byte[128];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        return new String(ascii, StandardCharsets.US_ASCII).equals(new String(ascii, charset));
+    }
+
+    /**
+     * Counts the words of a file.
+     *
+     * @param file The file to read.
+     * @return A table holding the counts of the whole file.
+     */
+    public WordCountTable count(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long chunkSize = Math.max(minChunkSize, size / ((long) threads * CHUNKS_PER_THREAD));
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                return pool.invoke(new CountTask(channel, 0, size, chunkSize));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Counts one byte range, splitting it in two while it is larger than the
+     * chunk size.
+     */
+    private class CountTask extends RecursiveTask<WordCountTable> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final long chunkSize;
+
+        CountTask(FileChannel channel, long start, long end, long chunkSize) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected WordCountTable compute() {
+            try {
+                if (end - start > chunkSize) {
+                    long middle = nextBoundary(channel, start + (end - start) / 2, end);
+                    if (middle < end) {
+                        // counts both halves and merges the smaller table into the larger
+                        CountTask left = new CountTask(channel, start, middle, chunkSize);
+                        left.fork();
+                        WordCountTable right = new CountTask(channel, middle, end, chunkSize).compute();
+                        WordCountTable counts = left.join();
+                        if (counts.size() < right.size()) {
+                            right.addAll(counts);
+                            return right;
+                        }
+                        counts.addAll(right);
+                        return counts;
+                    }
+                }
+                return countRange(channel, start, end);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Finds the first position at or after from that follows an ASCII
+     * whitespace byte.
+     *
+     * @return The boundary, or end if the range has no whitespace after from.
+     */
+    private static long nextBoundary(FileChannel channel, long from, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long position = from;
+        while (position < end) {
+            buffer.clear();
+            if (end - position < buffer.capacity()) {
+                buffer.limit((int) (end - position));
+            }
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (isWhitespace(buffer.get(i))) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return end;
+    }
+
+    /**
+     * Checks for the ASCII whitespace bytes that always end a word.
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f';
+    }
+
+    /**
+     * Decodes and counts the bytes [start, end) of a file.
+     */
+    private WordCountTable countRange(FileChannel channel, long start, long end) throws IOException {
+        WordCountTable counts = new WordCountTable();
+        Tokenizer tokenizer = tokenizers.get();
+        Tokenizer.TokenSink sink = counts::increment;
+        // replaces bad input with U+FFFD like FileReader does
+        CharsetDecoder decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+        long position = start;
+        boolean endOfInput = false;
+        while (!endOfInput) {
+            // fills the byte buffer after any bytes left over from the last decode
+            int wanted = (int) Math.min(bytes.remaining(), end - position);
+            ByteBuffer window = bytes.duplicate();
+            window.limit(window.position() + wanted);
+            int read = wanted > 0 ? channel.read(window, position) : 0;
+            if (read < 0) {
+                read = 0;
+            }
+            position += read;
+            bytes.position(bytes.position() + read);
+            endOfInput = position >= end || read == 0;
+
+            // decodes as much as possible and tokenizes the result
+            bytes.flip();
+            CoderResult result;
+            do {
+                result = decoder.decode(bytes, chars, endOfInput);
+                drain(chars, tokenizer, sink);
+            } while (result.isOverflow());
+            bytes.compact();
+        }
+        while (decoder.flush(chars).isOverflow()) {
+            drain(chars, tokenizer, sink);
+        }
+        drain(chars, tokenizer, sink);
+        tokenizer.finish(sink);
+        return counts;
+    }
+
+    /**
+     * Tokenizes the decoded characters and empties the buffer.
+     */
+    private static void drain(CharBuffer chars, Tokenizer tokenizer, Tokenizer.TokenSink sink) {
+        tokenizer.tokenize(chars.array(), 0, chars.position(), sink);
+        chars.clear();
+    }
+}
@@ -0,0 +1,186 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * StopWordFilter is a fixed set of common words, such as "the" and "and",
+ * to leave out of word counts.
+ *
+ * The words are kept in an open addressing hash table, so a word can be
+ * checked straight from a tokenizer buffer without creating a String. That
+ * lets BookWordCounter skip stop words while counting. As a Set of Strings it
+ * can also be passed wherever words are excluded when results are shown,
+ * such as topWords() and WordCountTableModel.
+ *
+ * Lists can be loaded from text files with one word per line; blank lines
+ * and lines starting with # are ignored. See stopwords/en.txt.
+ *
+ * @author Zak Sheikh
+ */
+public class StopWordFilter extends AbstractSet<String> {
+
+    /** A filter with no words */
+    public static final StopWordFilter NONE = new StopWordFilter(List.of());
+
+    /** The built-in English stop words */
+    private static final StopWordFilter ENGLISH = new StopWordFilter(List.of(
+        "a", "an", "and", "are", "as", "at", "be", "been", "being", "but", "by",
+        "do", "did", "does", "for", "from", "had", "has", "have", "he", "her", "him", "his", "i",
+        "if", "in", "into", "is", "it", "it's", "me", "my", "no", "not", "of",
+        "on", "or", "so", "such", "that", "the", "their", "them", "then", "there",
+        "these", "they", "this", "to", "was", "we", "were", "what", "when", "where",
+        "which", "who", "will", "with", "would", "you", "your"
+    ));
+
+    /** The words, by slot, or null for an empty slot */
+    private final String[] words;
+
+    /** The hash code of the word in each slot */
+    private final int[] hashes;
+
+    /** Number of words */
+    private final int size;
+
+    /**
+     * Creates a filter of the given words. Words are lowercased, and
+     * duplicates are ignored.
+     *
+     * @param stopWords The words to filter out.
+     */
+    public StopWordFilter(Collection<String> stopWords) {
+        // keeps the table at most half full so probe runs stay short
+        int capacity = Integer.highestOneBit(Math.max(1, stopWords.size()) * 4 - 1);
+        words = new String[capacity];
+        hashes = new int[capacity];
+        int n = 0;
+        for (String stopWord : stopWords) {
+            String word = stopWord.toLowerCase(Locale.ROOT);
+            int hash = word.hashCode();
+            int slot = find(word, hash);
+            if (words[slot] == null) {
+                words[slot] = word;
+                hashes[slot] = hash;
+                n++;
+            }
+        }
+        size = n;
+    }
+
+    /**
+     * Returns the built-in English stop words.
+     *
+     * @return The English filter.
+     */
+    public static StopWordFilter english() {
+        return ENGLISH;
+    }
+
+    /**
+     * Loads a stop word list from a UTF-8 text file.
+     *
+     * @param file The file, with one word per line.
+     * @return A filter of the words in the file.
+     */
+    public static StopWordFilter load(Path file) throws IOException {
+        List<String> stopWords = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                // skips blank lines and comments
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    stopWords.add(line);
+                }
+            }
+        }
+        return new StopWordFilter(stopWords);
+    }
+
+    /**
+     * Checks whether the characters buffer[offset, offset + length) are a
+     * stop word.
+     *
+     * @param buffer The buffer holding the word.
+     * @param offset The index of the first character of the word.
+     * @param length The number of characters in the word.
+     * @return true if the word is a stop word.
+     */
+    public boolean contains(char[] buffer, int offset, int length) {
+        if (size == 0) {
+            return false;
+        }
+        int hash = WordHashing.hash(buffer, offset, length);
+        int mask = words.length - 1;
+        for (int slot = WordHashing.spread(hash) & mask; words[slot] != null; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && WordHashing.matches(words[slot], buffer, offset, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (size == 0 || !(o instanceof String)) {
+            return false;
+        }
+        String word = (String) o;
+        return words[find(word, word.hashCode())] != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int slot = advance(0);
+
+            @Override
+            public boolean hasNext() {
+                return slot < words.length;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String word = words[slot];
+                slot = advance(slot + 1);
+                return word;
+            }
+
+            // skips empty slots
+            private int advance(int from) {
+                while (from < words.length && words[from] == null) {
+                    from++;
+                }
+                return from;
+            }
+        };
+    }
+
+    /**
+     * Returns the slot holding a word, or the empty slot where it would go.
+     */
+    private int find(String word, int hash) {
+        int mask = words.length - 1;
+        int slot = WordHashing.spread(hash) & mask;
+        while (words[slot] != null && !(hashes[slot] == hash && words[slot].equals(word))) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
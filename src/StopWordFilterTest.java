@@ -0,0 +1,74 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unit tests of the StopWordFilter class, to be run with JUnit 5.
+ *
+ * @author Zak Sheikh
+ */
+public class StopWordFilterTest {
+
+    @BeforeAll
+    public static void setUpClass() {
+        System.out.println("Running StopWordFilterTest 📚");
+    }
+
+    /**
+     * Tests that words are found both as Strings and as buffer slices.
+     */
+    @Test
+    void testContains() {
+        System.out.println("Running StopWordFilter contains() test");
+        StopWordFilter filter = new StopWordFilter(List.of("The", "and", "of", "and"));
+        assertEquals(Set.of("the", "and", "of"), filter, "Expected lowercased words without duplicates");
+
+        char[] buffer = "xxtheandxofthey".toCharArray();
+        assertTrue(filter.contains(buffer, 2, 3), "Expected 'the' to be a stop word");
+        assertTrue(filter.contains(buffer, 5, 3), "Expected 'and' to be a stop word");
+        assertTrue(filter.contains(buffer, 9, 2), "Expected 'of' to be a stop word");
+        assertFalse(filter.contains(buffer, 11, 4), "Expected 'they' not to be a stop word");
+        assertFalse(filter.contains("th"), "Expected 'th' not to be a stop word");
+        assertFalse(StopWordFilter.NONE.contains(buffer, 2, 3), "Expected no stop words");
+        assertTrue(StopWordFilter.english().contains("the"), "Expected 'the' in the English list");
+    }
+
+    /**
+     * Tests loading a list from a file, skipping comments and blank lines.
+     */
+    @Test
+    void testLoad() throws IOException {
+        System.out.println("Running StopWordFilter load() test");
+        String listFile = "testStopWords.txt";
+        Files.write(Paths.get(listFile), List.of("# a comment", "", "  Le ", "la", "les"));
+        assertEquals(Set.of("le", "la", "les"), StopWordFilter.load(Paths.get(listFile)), "Expected the listed words");
+        Files.deleteIfExists(Paths.get(listFile));
+    }
+
+    /**
+     * Tests that stop words are skipped while counting, but only hidden when
+     * excluded from the results.
+     */
+    @Test
+    void testIngestAndQueryTime() {
+        System.out.println("Running StopWordFilter counting test");
+        String line = "The cat and the hat sat on the mat";
+        BookWordCounter skipping = new BookWordCounter(StopWordFilter.english());
+        skipping.processLine(line);
+        assertEquals(0, skipping.getWordCount("the"), "Expected 'the' not to be counted");
+        assertEquals(4, skipping.totalWordCount(), "Expected only cat, hat, sat and mat in the total");
+
+        BookWordCounter counter = new BookWordCounter();
+        counter.processLine(line);
+        assertEquals(3, counter.getWordCount("the"), "Expected: 3");
+        assertEquals(List.of(Map.entry("cat", 1L), Map.entry("hat", 1L)), counter.topWords(2, StopWordFilter.english()),
+            "Expected stop words to be left out of the top words");
+    }
+}
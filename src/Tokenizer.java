@@ -0,0 +1,101 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Tokenizer splits text into the lowercase words that BookWordCounter counts.
+ *
+ * Words are handed to a TokenSink as a view over a char buffer
+ * (buffer, offset, length) instead of as Strings, so nothing is allocated
+ * unless the sink decides to keep the word. The buffer is only valid for the
+ * duration of the callback.
+ *
+ * A tokenizer remembers a word that is cut off at the end of its input, so
+ * text can be fed in pieces. Call finish() once the input is complete to
+ * flush that last word.
+ *
+ * @author Zak Sheikh
+ */
+public interface Tokenizer {
+
+    /**
+     * Receives each word found by a Tokenizer.
+     */
+    interface TokenSink {
+
+        /**
+         * Called once per word.
+         *
+         * @param buffer The buffer holding the lowercase word.
+         * @param offset The index of the first character of the word.
+         * @param length The number of characters in the word.
+         */
+        void accept(char[] buffer, int offset, int length);
+    }
+
+    /**
+     * Tokenizes the characters text[start, end).
+     *
+     * @param text  The text to tokenize.
+     * @param start The index of the first character to read.
+     * @param end   The index after the last character to read.
+     * @param sink  Receives each completed word.
+     */
+    void tokenize(CharSequence text, int start, int end, TokenSink sink);
+
+    /**
+     * Tokenizes the characters text[offset, offset + length).
+     *
+     * @param text   The text to tokenize.
+     * @param offset The index of the first character to read.
+     * @param length The number of characters to read.
+     * @param sink   Receives each completed word.
+     */
+    void tokenize(char[] text, int offset, int length, TokenSink sink);
+
+    /**
+     * Ends the current input, emitting the word that was still being read.
+     *
+     * @param sink Receives the last word, if any.
+     */
+    void finish(TokenSink sink);
+
+    /**
+     * Tokenizes ASCII bytes straight from a byte buffer, stopping at the
+     * first byte that is not ASCII. The buffer's position is not changed.
+     *
+     * This default copies the bytes into a char array first; tokenizers
+     * should override it to read the buffer directly.
+     *
+     * @param bytes The buffer holding the text.
+     * @param start The index of the first byte to read.
+     * @param end   The index after the last byte to read.
+     * @param sink  Receives each completed word.
+     * @return The index of the first non-ASCII byte, or end if there is none.
+     */
+    default int tokenizeAscii(ByteBuffer bytes, int start, int end, TokenSink sink) {
+        char[] chars = new char[Math.min(end - start, 4096)];
+        int i = start;
+        while (i < end) {
+            int n = 0;
+            byte b;
+            while (n < chars.length && i < end && (b = bytes.get(i)) >= 0) {
+                chars[n++] = (char) b;
+                i++;
+            }
+            tokenize(chars, 0, n, sink);
+            if (n < chars.length && i < end) {
+                break; // stopped at a non-ASCII byte
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Tokenizes a whole CharSequence.
+     *
+     * @param text The text to tokenize.
+     * @param sink Receives each completed word.
+     */
+    default void tokenize(CharSequence text, TokenSink sink) {
+        tokenize(text, 0, text.length(), sink);
+    }
+}
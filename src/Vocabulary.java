@@ -0,0 +1,564 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Vocabulary gives each distinct word a dense int ID: the first word added
+ * is 0, the next new word 1, and so on.
+ *
+ * The characters of every word are stored back to back in one byte array,
+ * the arena, encoded as UTF-8, and word i is arena[starts[i], starts[i + 1]).
+ * So a word costs its bytes plus three ints (its start, its hash code and
+ * its hash table entry, at half load two slots), instead of a String object
+ * with its own header and backing array. Counters keep their counts in an
+ * array indexed by ID, as WordCountTable does, or key on several IDs at
+ * once, as NGramCounter does.
+ *
+ * Words are added and looked up straight from a tokenizer buffer slice,
+ * comparing the slice against the arena bytes, so nothing is allocated for
+ * a word that has been seen before. Strings are only created when a word is
+ * asked for by ID. Hash codes are computed the same way as
+ * String.hashCode(), so a lookup by String can reuse the hash the String
+ * has already cached.
+ *
+ * A lone surrogate char is stored as its own three byte sequence rather
+ * than replaced, so every word reads back exactly as it was added.
+ *
+ * @author Zak Sheikh
+ */
+public class Vocabulary {
+
+    /** Number of slots in a new table, always a power of two */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** The encoded words, back to back */
+    private byte[] arena = new byte[INITIAL_CAPACITY * 8];
+
+    /** Where each word starts in the arena; starts[size] is where the next one goes */
+    private int[] starts = new int[INITIAL_CAPACITY / 2 + 1];
+
+    /** The hash code of each word, by ID */
+    private int[] hashes = new int[INITIAL_CAPACITY / 2];
+
+    /** The ID in each slot plus one, or 0 if the slot is empty */
+    private int[] slots = new int[INITIAL_CAPACITY];
+
+    /** Number of words */
+    private int size;
+
+    /** Number of times an array was grown */
+    private int resizes;
+
+    /**
+     * Returns the ID of the word buffer[offset, offset + length), adding the
+     * word if it is new.
+     *
+     * @param buffer The buffer holding the word.
+     * @param offset The index of the first character of the word.
+     * @param length The number of characters in the word.
+     * @return The word's ID.
+     */
+    public int add(char[] buffer, int offset, int length) {
+        int hash = WordHashing.hash(buffer, offset, length);
+        int slot = find(null, buffer, offset, length, hash);
+        int id = slots[slot] - 1;
+        return id >= 0 ? id : insert(slot, null, buffer, offset, length, hash);
+    }
+
+    /**
+     * Returns the ID of a word, adding the word if it is new.
+     *
+     * @param word The word.
+     * @return The word's ID.
+     */
+    public int add(String word) {
+        int hash = word.hashCode();
+        int slot = find(word, null, 0, word.length(), hash);
+        int id = slots[slot] - 1;
+        return id >= 0 ? id : insert(slot, word, null, 0, word.length(), hash);
+    }
+
+    /**
+     * Returns the ID of a word of another vocabulary, adding the word if it
+     * is new. The word's bytes are compared and copied directly, without
+     * making a String.
+     *
+     * @param other The vocabulary holding the word.
+     * @param otherId The word's ID in that vocabulary.
+     * @return The word's ID in this vocabulary.
+     */
+    public int add(Vocabulary other, int otherId) {
+        int slot = find(other, otherId);
+        int id = slots[slot] - 1;
+        if (id >= 0) {
+            return id;
+        }
+        int start = other.starts[otherId];
+        int length = other.starts[otherId + 1] - start;
+        id = newId(other.hashes[otherId], length);
+        System.arraycopy(other.arena, start, arena, starts[id], length);
+        starts[id + 1] = starts[id] + length;
+        return place(slot, id);
+    }
+
+    /**
+     * Returns the ID of a word of another vocabulary, without adding it.
+     *
+     * @param other The vocabulary holding the word.
+     * @param otherId The word's ID in that vocabulary.
+     * @return The word's ID in this vocabulary, or -1 if it is not in it.
+     */
+    public int get(Vocabulary other, int otherId) {
+        return slots[find(other, otherId)] - 1;
+    }
+
+    /**
+     * Returns the ID of a word.
+     *
+     * @param word The word.
+     * @return The word's ID, or -1 if it is not in the vocabulary.
+     */
+    public int get(String word) {
+        return slots[find(word, null, 0, word.length(), word.hashCode())] - 1;
+    }
+
+    /**
+     * Returns the word with an ID.
+     *
+     * @param id An ID given out by add().
+     * @return The word.
+     */
+    public String word(int id) {
+        checkId(id);
+        int start = starts[id];
+        int end = starts[id + 1];
+        // reads ASCII words without decoding
+        boolean ascii = true;
+        for (int i = start; i < end && ascii; i++) {
+            ascii = arena[i] >= 0;
+        }
+        if (ascii) {
+            return new String(arena, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+        char[] chars = new char[end - start];
+        return new String(chars, 0, decode(id, chars));
+    }
+
+    /**
+     * Copies the characters of a word into an array, without making a
+     * String.
+     *
+     * @param id   An ID given out by add().
+     * @param dest Where to copy the characters; must hold at least
+     *             byteLength(id) chars.
+     * @return The number of characters copied.
+     */
+    public int chars(int id, char[] dest) {
+        checkId(id);
+        return decode(id, dest);
+    }
+
+    /**
+     * Copies the UTF-8 bytes of a word, as stored in the arena. A lone
+     * surrogate is copied as its own three bytes, which is not valid UTF-8.
+     *
+     * @param id     An ID given out by add().
+     * @param dest   Where to copy the bytes; must have byteLength(id) bytes
+     *               free from offset.
+     * @param offset Where to put the first byte.
+     * @return The number of bytes copied.
+     */
+    public int copyBytes(int id, byte[] dest, int offset) {
+        checkId(id);
+        int n = starts[id + 1] - starts[id];
+        System.arraycopy(arena, starts[id], dest, offset, n);
+        return n;
+    }
+
+    /**
+     * Returns the first two chars of a word packed into an int, the first
+     * in the high 16 bits, with 0 for chars past the end of a short word.
+     * Prefixes compare, as unsigned ints, in the same order as the words
+     * do with String.compareTo(), except that words with the same prefix
+     * still need comparing.
+     *
+     * @param id An ID given out by add().
+     * @return The packed prefix.
+     */
+    public int prefix(int id) {
+        checkId(id);
+        int p = starts[id];
+        int end = starts[id + 1];
+        int prefix = 0;
+        int n = 0;
+        while (p < end && n < 2) {
+            int b = arena[p];
+            int c;
+            if (b >= 0) {
+                c = b;
+                p++;
+            } else if ((b & 0xE0) == 0xC0) {
+                c = (b & 0x1F) << 6 | (arena[p + 1] & 0x3F);
+                p += 2;
+            } else if ((b & 0xF0) == 0xE0) {
+                c = (b & 0x0F) << 12 | (arena[p + 1] & 0x3F) << 6 | (arena[p + 2] & 0x3F);
+                p += 3;
+            } else {
+                int codePoint = (b & 0x07) << 18 | (arena[p + 1] & 0x3F) << 12
+                    | (arena[p + 2] & 0x3F) << 6 | (arena[p + 3] & 0x3F);
+                // takes the high surrogate now and the low one as the next char
+                prefix |= Character.highSurrogate(codePoint) << (n == 0 ? 16 : 0);
+                n++;
+                c = Character.lowSurrogate(codePoint);
+                p += 4;
+                if (n == 2) {
+                    break;
+                }
+            }
+            prefix |= c << (n == 0 ? 16 : 0);
+            n++;
+        }
+        return prefix;
+    }
+
+    /**
+     * Returns the number of bytes the word takes in the arena, which is at
+     * least its number of characters.
+     *
+     * @param id An ID given out by add().
+     * @return The encoded length.
+     */
+    public int byteLength(int id) {
+        checkId(id);
+        return starts[id + 1] - starts[id];
+    }
+
+    /**
+     * Compares two words in the order of String.compareTo(), without making
+     * Strings.
+     *
+     * UTF-8 bytes sort in code point order, which only differs from the
+     * UTF-16 order of Strings where a character above U+FFFF meets a
+     * surrogate or a character from U+E000 to U+FFFF. Those words are rare,
+     * and are compared as Strings when the first byte that differs shows it.
+     *
+     * @param a The ID of one word.
+     * @param b The ID of the other word.
+     * @return A negative number, zero or a positive number as word a is
+     *         before, equal to or after word b.
+     */
+    public int compare(int a, int b) {
+        checkId(a);
+        checkId(b);
+        int i = starts[a];
+        int j = starts[b];
+        int endA = starts[a + 1];
+        int endB = starts[b + 1];
+        while (i < endA && j < endB) {
+            int x = arena[i++] & 0xFF;
+            int y = arena[j++] & 0xFF;
+            if (x != y) {
+                boolean pairX = x >= 0xF0;
+                boolean pairY = y >= 0xF0;
+                if (pairX != pairY && (pairX ? y : x) >= 0xED) {
+                    // compares the chars, as a lone surrogate can sort either side of a pair
+                    return word(a).compareTo(word(b));
+                }
+                return x - y;
+            }
+        }
+        return (endA - i) - (endB - j);
+    }
+
+    /**
+     * Compares two words by their stored bytes as unsigned numbers, which is
+     * the UTF-8 byte order WordCountIndex keeps its words in.
+     *
+     * @param a The ID of one word.
+     * @param b The ID of the other word.
+     * @return A negative number, zero or a positive number as word a is
+     *         before, equal to or after word b.
+     */
+    public int compareBytes(int a, int b) {
+        checkId(a);
+        checkId(b);
+        return Arrays.compareUnsigned(arena, starts[a], starts[a + 1], arena, starts[b], starts[b + 1]);
+    }
+
+    /**
+     * Returns the first four stored bytes of a word as a big-endian int,
+     * with 0 for bytes past the end of a short word. Prefixes compare, as
+     * unsigned ints, in the same order as compareBytes(), except that words
+     * with the same prefix still need comparing.
+     *
+     * @param id An ID given out by add().
+     * @return The packed prefix.
+     */
+    public int bytePrefix(int id) {
+        checkId(id);
+        int prefix = 0;
+        for (int i = 0, p = starts[id]; i < 4; i++, p++) {
+            prefix = prefix << 8 | (p < starts[id + 1] ? arena[p] & 0xFF : 0);
+        }
+        return prefix;
+    }
+
+    /**
+     * Returns the number of words.
+     *
+     * @return The number of distinct words added.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes the words take in the arena.
+     *
+     * @return The total encoded length of all words.
+     */
+    public int arenaSize() {
+        return starts[size];
+    }
+
+    /**
+     * Returns how many times the vocabulary's arrays were grown to make
+     * room for more words.
+     *
+     * @return The number of resizes so far.
+     */
+    public int resizeCount() {
+        return resizes;
+    }
+
+    /**
+     * Estimates the heap taken by the vocabulary's arrays, including the
+     * room kept for words not added yet.
+     *
+     * @return The size of the arrays in bytes.
+     */
+    public long memoryUsage() {
+        return arena.length + 4L * (starts.length + hashes.length + slots.length);
+    }
+
+    /**
+     * Returns the slot holding a word of another vocabulary, or the empty
+     * slot where it would go. The bytes are compared directly.
+     */
+    private int find(Vocabulary other, int otherId) {
+        int hash = other.hashes[otherId];
+        int start = other.starts[otherId];
+        int end = other.starts[otherId + 1];
+        int mask = slots.length - 1;
+        int slot = WordHashing.spread(hash) & mask;
+        int id;
+        while ((id = slots[slot] - 1) >= 0) {
+            if (hashes[id] == hash && Arrays.equals(arena, starts[id], starts[id + 1], other.arena, start, end)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Finds the slot holding a word, given as a String or as a buffer slice,
+     * or the empty slot where it would go.
+     */
+    private int find(String word, char[] buffer, int offset, int length, int hash) {
+        int mask = slots.length - 1;
+        int slot = WordHashing.spread(hash) & mask;
+        int id;
+        while ((id = slots[slot] - 1) >= 0) {
+            if (hashes[id] == hash && matches(id, word, buffer, offset, length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Checks whether a word in the arena equals a String or a buffer slice,
+     * decoding the arena bytes as it goes.
+     */
+    private boolean matches(int id, String word, char[] buffer, int offset, int length) {
+        int p = starts[id];
+        int end = starts[id + 1];
+        // every char takes one to three bytes
+        if (end - p < length || end - p > 3 * length) {
+            return false;
+        }
+        if (end - p == length) {
+            // one byte per char means the word is ASCII
+            if (buffer != null) {
+                for (int i = 0; i < length; i++) {
+                    if (arena[p + i] != buffer[offset + i]) {
+                        return false;
+                    }
+                }
+            } else {
+                for (int i = 0; i < length; i++) {
+                    if (arena[p + i] != word.charAt(i)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        int i = 0;
+        while (p < end) {
+            int b = arena[p];
+            int c;
+            if (b >= 0) {
+                c = b;
+                p++;
+            } else if ((b & 0xE0) == 0xC0) {
+                c = (b & 0x1F) << 6 | (arena[p + 1] & 0x3F);
+                p += 2;
+            } else if ((b & 0xF0) == 0xE0) {
+                c = (b & 0x0F) << 12 | (arena[p + 1] & 0x3F) << 6 | (arena[p + 2] & 0x3F);
+                p += 3;
+            } else {
+                int codePoint = (b & 0x07) << 18 | (arena[p + 1] & 0x3F) << 12
+                    | (arena[p + 2] & 0x3F) << 6 | (arena[p + 3] & 0x3F);
+                p += 4;
+                if (i >= length || charAt(word, buffer, offset, i++) != Character.highSurrogate(codePoint)) {
+                    return false;
+                }
+                c = Character.lowSurrogate(codePoint);
+            }
+            if (i >= length || charAt(word, buffer, offset, i++) != c) {
+                return false;
+            }
+        }
+        return i == length;
+    }
+
+    /**
+     * Returns a char of a String or of a buffer slice.
+     */
+    private static char charAt(String word, char[] buffer, int offset, int i) {
+        return buffer != null ? buffer[offset + i] : word.charAt(i);
+    }
+
+    /**
+     * Gives a new word the next ID and encodes it into the arena.
+     */
+    private int insert(int slot, String word, char[] buffer, int offset, int length, int hash) {
+        int id = newId(hash, 3 * length);
+        int p = starts[id];
+        for (int i = 0; i < length; i++) {
+            char c = charAt(word, buffer, offset, i);
+            if (c < 0x80) {
+                arena[p++] = (byte) c;
+            } else if (c < 0x800) {
+                arena[p++] = (byte) (0xC0 | c >> 6);
+                arena[p++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(charAt(word, buffer, offset, i + 1))) {
+                int codePoint = Character.toCodePoint(c, charAt(word, buffer, offset, ++i));
+                arena[p++] = (byte) (0xF0 | codePoint >> 18);
+                arena[p++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                arena[p++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                arena[p++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                arena[p++] = (byte) (0xE0 | c >> 12);
+                arena[p++] = (byte) (0x80 | c >> 6 & 0x3F);
+                arena[p++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        starts[id + 1] = p;
+        return place(slot, id);
+    }
+
+    /**
+     * Takes the next ID for a word with the given hash, making sure the
+     * arena has room for maxBytes more bytes.
+     */
+    private int newId(int hash, int maxBytes) {
+        int id = size;
+        if (id == hashes.length) {
+            starts = Arrays.copyOf(starts, hashes.length * 2 + 1);
+            hashes = Arrays.copyOf(hashes, hashes.length * 2);
+            resizes++;
+        }
+        long needed = (long) starts[id] + maxBytes;
+        if (needed > arena.length) {
+            if (needed > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Vocabulary arena is full");
+            }
+            arena = Arrays.copyOf(arena, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, 2L * arena.length)));
+            resizes++;
+        }
+        hashes[id] = hash;
+        return id;
+    }
+
+    /**
+     * Puts a new ID in its slot, growing the table once it is half full.
+     */
+    private int place(int slot, int id) {
+        slots[slot] = id + 1;
+        if (++size * 2 >= slots.length) {
+            resize();
+        }
+        return id;
+    }
+
+    /**
+     * Doubles the table and re-inserts every ID.
+     */
+    private void resize() {
+        int[] oldSlots = slots;
+        slots = new int[oldSlots.length * 2];
+        resizes++;
+        int mask = slots.length - 1;
+        for (int entry : oldSlots) {
+            if (entry != 0) {
+                int slot = WordHashing.spread(hashes[entry - 1]) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = entry;
+            }
+        }
+    }
+
+    /**
+     * Decodes a word into an array and returns its number of chars.
+     */
+    private int decode(int id, char[] dest) {
+        int n = 0;
+        int p = starts[id];
+        int end = starts[id + 1];
+        while (p < end) {
+            int b = arena[p];
+            if (b >= 0) {
+                dest[n++] = (char) b;
+                p++;
+            } else if ((b & 0xE0) == 0xC0) {
+                dest[n++] = (char) ((b & 0x1F) << 6 | (arena[p + 1] & 0x3F));
+                p += 2;
+            } else if ((b & 0xF0) == 0xE0) {
+                dest[n++] = (char) ((b & 0x0F) << 12 | (arena[p + 1] & 0x3F) << 6 | (arena[p + 2] & 0x3F));
+                p += 3;
+            } else {
+                int codePoint = (b & 0x07) << 18 | (arena[p + 1] & 0x3F) << 12
+                    | (arena[p + 2] & 0x3F) << 6 | (arena[p + 3] & 0x3F);
+                dest[n++] = Character.highSurrogate(codePoint);
+                dest[n++] = Character.lowSurrogate(codePoint);
+                p += 4;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Checks that an ID has been given out.
+     */
+    private void checkId(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No word with ID " + id);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unit tests of the Vocabulary class and the WordCountTable built on it, to
+ * be run with JUnit 5.
+ *
+ * @author Zak Sheikh
+ */
+public class VocabularyTest {
+
+    /** Words from several scripts, with a surrogate pair and a lone surrogate */
+    private static final String[] WORDS = {
+        "cat", "café", "über", "κόσμος", "слово", "日本語", "x", "�", "😀smile", "a\uD800b", "\uDC00", "\uD83D", "", "cats"
+    };
+
+    @BeforeAll
+    public static void setUpClass() {
+        System.out.println("Running VocabularyTest 📚");
+    }
+
+    /**
+     * Tests that words of any script read back exactly and are found again
+     * from a buffer slice.
+     */
+    @Test
+    void testRoundTrip() {
+        System.out.println("Running Vocabulary round trip test");
+        Vocabulary vocabulary = new Vocabulary();
+        for (int i = 0; i < WORDS.length; i++) {
+            assertEquals(i, vocabulary.add(WORDS[i]), "Expected dense IDs");
+        }
+        for (int i = 0; i < WORDS.length; i++) {
+            assertEquals(WORDS[i], vocabulary.word(i), "Expected the word back");
+            assertEquals(i, vocabulary.get(WORDS[i]), "Expected the ID of " + WORDS[i]);
+            char[] buffer = (" " + WORDS[i] + " ").toCharArray();
+            assertEquals(i, vocabulary.add(buffer, 1, WORDS[i].length()), "Expected the same ID from a buffer");
+            char[] chars = new char[vocabulary.byteLength(i)];
+            assertEquals(WORDS[i], new String(chars, 0, vocabulary.chars(i, chars)), "Expected the characters back");
+        }
+        assertEquals(-1, vocabulary.get("caf"), "Expected no ID for a prefix");
+        assertEquals(-1, vocabulary.get("a\uD801b"), "Expected no ID for another surrogate");
+        assertEquals(WORDS.length, vocabulary.size(), "Expected no new words");
+        assertThrows(IndexOutOfBoundsException.class, () -> vocabulary.word(WORDS.length));
+
+        // copies words between vocabularies
+        Vocabulary other = new Vocabulary();
+        other.add("dog");
+        for (int i = WORDS.length - 1; i >= 0; i--) {
+            assertEquals(WORDS[i], other.word(other.add(vocabulary, i)), "Expected the copied word");
+        }
+        assertEquals(WORDS.length + 1, other.size(), "Expected each word once");
+        assertEquals(other.get("café"), other.add(vocabulary, 1), "Expected the same ID again");
+    }
+
+    /**
+     * Tests that words compare in the same order as Strings.
+     */
+    @Test
+    void testCompare() {
+        System.out.println("Running Vocabulary compare test");
+        Vocabulary vocabulary = new Vocabulary();
+        for (String word : WORDS) {
+            vocabulary.add(word);
+        }
+        for (int a = 0; a < WORDS.length; a++) {
+            for (int b = 0; b < WORDS.length; b++) {
+                assertEquals(Integer.signum(WORDS[a].compareTo(WORDS[b])), Integer.signum(vocabulary.compare(a, b)),
+                    "Expected the String order of " + WORDS[a] + " and " + WORDS[b]);
+            }
+        }
+    }
+
+    /**
+     * Tests that a word costs little more than its bytes.
+     */
+    @Test
+    void testArenaSize() {
+        System.out.println("Running Vocabulary arena size test");
+        Vocabulary vocabulary = new Vocabulary();
+        int bytes = 0;
+        for (int i = 0; i < 100_000; i++) {
+            String word = "w" + Integer.toString(i, 26);
+            vocabulary.add(word);
+            bytes += word.length();
+        }
+        assertEquals(bytes, vocabulary.arenaSize(), "Expected one byte per ASCII character");
+    }
+
+    /**
+     * Tests that the table drops words whose count reaches zero, counts them
+     * again afterwards, and keeps its counts when rebuilding its vocabulary.
+     */
+    @Test
+    void testTableRemoval() {
+        System.out.println("Running WordCountTable removal test");
+        WordCountTable table = new WordCountTable();
+        WordCountTable removed = new WordCountTable();
+        for (int i = 0; i < 10_000; i++) {
+            table.add("w" + i, i + 1);
+            if (i % 10 != 0) {
+                removed.add("w" + i, i + 1);
+            }
+        }
+        table.subtractAll(removed);
+        assertEquals(1_000, table.size(), "Expected only every tenth word left");
+        assertEquals(0, table.get("w1"), "Expected a removed word to have no count");
+        assertEquals(11, table.get("w10"), "Expected a kept word's count");
+        assertEquals(1_000, table.words().length, "Expected only the words left");
+
+        table.increment("xw1".toCharArray(), 1, 2);
+        assertEquals(1, table.get("w1"), "Expected a removed word to count again");
+        List<String> words = new ArrayList<>(Arrays.asList(table.words()));
+        assertTrue(words.contains("w1") && words.contains("w9990"), "Expected both old and new words");
+        assertEquals(List.of(Map.entry("w9990", 9_991L), Map.entry("w9980", 9_981L)),
+            table.top(2, Set.of()), "Expected the most frequent words");
+        assertEquals(List.of(Map.entry("w9980", 9_981L)),
+            table.top(1, new StopWordFilter(Set.of("w9990"))), "Expected an excluded word left out");
+
+        // refuses to subtract a word the table lacks, or too much of one, and changes nothing
+        long total = table.total();
+        WordCountTable missing = new WordCountTable();
+        missing.add("w10", 1);
+        missing.add("absent", 1);
+        assertThrows(IllegalArgumentException.class, () -> table.subtractAll(missing));
+        WordCountTable tooMany = new WordCountTable();
+        tooMany.add("w10", 12);
+        assertThrows(IllegalArgumentException.class, () -> table.subtractAll(tooMany));
+        assertEquals(11, table.get("w10"), "Expected the count unchanged");
+        assertEquals(total, table.total(), "Expected the total unchanged");
+
+        // stops a count at zero and removes the word
+        table.add("w10", -20);
+        assertEquals(0, table.get("w10"), "Expected no count below zero");
+        assertEquals(total - 11, table.total(), "Expected only the count taken from the total");
+        assertEquals(1_000, table.size(), "Expected the word gone");
+    }
+}
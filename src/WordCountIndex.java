@@ -0,0 +1,472 @@
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * WordCountIndex is a compact binary file holding the word counts of one
+ * book, so the book does not have to be read and tokenized again.
+ *
+ * The header records the size, modification time and CRC-32C checksum of the
+ * source file, so a stale index can be detected. The words are stored sorted
+ * by their UTF-8 bytes in blocks of 16: the first word of a block is stored
+ * in full and every other word only stores what differs from the word before
+ * it (front coding). Lengths and counts are varints, counts of up to 64
+ * bits. A table of block offsets
+ * at the end of the file allows a binary search over the blocks.
+ *
+ * An opened index is memory-mapped, so looking up a word only touches the
+ * blocks on its search path instead of loading the whole vocabulary into the
+ * heap.
+ *
+ * File layout (big-endian):
+ * <pre>
+ *   int  magic "BWCI", int version
+ *   long source size, long source modified time, long source CRC-32C
+ *   long total words, int distinct words, int block count, long block table offset
+ *   blocks...
+ *   int  block offsets[block count]
+ * </pre>
+ *
+ * @author Zak Sheikh
+ */
+public class WordCountIndex {
+
+    /** "BWCI" in ASCII */
+    private static final int MAGIC = 0x42574349;
+
+    private static final int VERSION = 1;
+
+    /** Size of the fixed header in bytes */
+    private static final int HEADER_SIZE = 56;
+
+    /** Number of words per front-coded block */
+    private static final int BLOCK_SIZE = 16;
+
+    /** The mapped index file */
+    private final MappedByteBuffer buffer;
+
+    private final long sourceSize;
+    private final long sourceModified;
+    private final long sourceChecksum;
+    private final long totalWords;
+    private final int distinctWords;
+    private final int blockCount;
+    private final int blockTableOffset;
+
+    /**
+     * Reads the header of a mapped index file.
+     */
+    private WordCountIndex(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a word count index");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported word count index version: " + buffer.getInt(4));
+        }
+        sourceSize = buffer.getLong(8);
+        sourceModified = buffer.getLong(16);
+        sourceChecksum = buffer.getLong(24);
+        totalWords = buffer.getLong(32);
+        distinctWords = buffer.getInt(40);
+        blockCount = buffer.getInt(44);
+        long tableOffset = buffer.getLong(48);
+        if (tableOffset < HEADER_SIZE || tableOffset + 4L * blockCount != buffer.capacity()) {
+            throw new IOException("Corrupt word count index");
+        }
+        blockTableOffset = (int) tableOffset;
+    }
+
+    /**
+     * Opens an index file by memory-mapping it.
+     *
+     * @param indexFile The index file.
+     * @return The opened index.
+     */
+    public static WordCountIndex open(Path indexFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Word count index too large to map: " + indexFile);
+            }
+            return new WordCountIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * The size, modification time and checksum of a source file, read before
+     * it is counted. An index stamped with the state read afterwards would
+     * pass as up to date with counts of an older version of a file edited
+     * while it was being counted.
+     */
+    public static final class SourceState {
+        final long size;
+        final long modified;
+        final long checksum;
+
+        private SourceState(long size, long modified, long checksum) {
+            this.size = size;
+            this.modified = modified;
+            this.checksum = checksum;
+        }
+
+        /**
+         * Reads the current state of a file.
+         *
+         * @param file The source file.
+         * @return Its size, modification time and checksum.
+         */
+        public static SourceState of(Path file) throws IOException {
+            // takes the time first, so a write during the checksum changes it
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            long size = Files.size(file);
+            return new SourceState(size, modified, checksum(file));
+        }
+    }
+
+    /**
+     * Writes the counts of a table to an index file, recording the state of
+     * the source file they were counted from. The file is written under a
+     * temporary name and then moved into place.
+     *
+     * @param counts    The word counts.
+     * @param source    The state of the source file, read before it was
+     *                  counted.
+     * @param indexFile The index file to write.
+     */
+    public static void write(WordCountTable counts, SourceState source, Path indexFile) throws IOException {
+        // sorts the words by their UTF-8 bytes, the order used for lookups
+        int[] ids = counts.idsInByteOrder();
+        Vocabulary vocabulary = counts.vocabulary();
+
+        Path directory = indexFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, indexFile.getFileName().toString(), ".tmp");
+        try {
+            int blockCount = (ids.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            int[] blockOffsets = new int[blockCount];
+            long total = 0;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.position(HEADER_SIZE);
+                CountingOutput out = new CountingOutput(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                // copies each word's bytes from the vocabulary, keeping the one before it
+                byte[] key = new byte[64];
+                byte[] previous = new byte[64];
+                int previousLength = 0;
+                for (int i = 0; i < ids.length; i++) {
+                    int length = vocabulary.byteLength(ids[i]);
+                    if (length > key.length) {
+                        key = new byte[length * 2];
+                    }
+                    vocabulary.copyBytes(ids[i], key, 0);
+                    long count = counts.count(ids[i]);
+                    total += count;
+                    if (i % BLOCK_SIZE == 0) {
+                        // starts a block with the whole word
+                        blockOffsets[i / BLOCK_SIZE] = (int) (HEADER_SIZE + out.written);
+                        out.writeVarint(length);
+                        out.write(key, 0, length);
+                    } else {
+                        // stores only the part that differs from the previous word
+                        int shared = sharedPrefix(previous, previousLength, key, length);
+                        out.writeVarint(shared);
+                        out.writeVarint(length - shared);
+                        out.write(key, shared, length - shared);
+                    }
+                    out.writeVarLong(count);
+                    byte[] swap = previous;
+                    previous = key;
+                    key = swap;
+                    previousLength = length;
+                }
+                long tableOffset = HEADER_SIZE + out.written;
+                if (tableOffset + 4L * blockCount > Integer.MAX_VALUE) {
+                    throw new IOException("Too many words for a word count index");
+                }
+                ByteBuffer table = ByteBuffer.allocate(4 * blockCount);
+                table.asIntBuffer().put(blockOffsets);
+                out.write(table.array(), 0, table.capacity());
+                out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION);
+                header.putLong(source.size);
+                header.putLong(source.modified);
+                header.putLong(source.checksum);
+                header.putLong(total).putInt(ids.length).putInt(blockCount).putLong(tableOffset);
+                header.flip();
+                channel.write(header, 0);
+            }
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Returns where the index of a book is cached between runs.
+     *
+     * @param sourceFile The book.
+     * @return A path under ~/.book-word-counter/index.
+     */
+    public static Path cacheFileFor(Path sourceFile) {
+        return cacheFileFor(sourceFile, defaultCacheDirectory());
+    }
+
+    /**
+     * Returns the directory where book indexes are cached by default.
+     *
+     * @return ~/.book-word-counter/index
+     */
+    public static Path defaultCacheDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".book-word-counter", "index");
+    }
+
+    /**
+     * Returns where the index of a book is cached in a given directory. The
+     * name includes a hash of the book's full path, so books with the same
+     * name in different directories do not collide.
+     *
+     * @param sourceFile The book.
+     * @param directory  The cache directory.
+     * @return A path in the directory.
+     */
+    public static Path cacheFileFor(Path sourceFile, Path directory) {
+        Path absolute = sourceFile.toAbsolutePath().normalize();
+        String name = absolute.getFileName().toString().replace(".txt", "")
+            + "-" + Integer.toHexString(absolute.toString().hashCode()) + ".bwci";
+        return directory.resolve(name);
+    }
+
+    /**
+     * Checks whether this index was built from the current contents of a
+     * file. The size and modification time are checked first; if only the
+     * time differs, the checksum decides.
+     *
+     * @param sourceFile The file to check.
+     * @return true if the counts in this index are up to date.
+     */
+    public boolean isUpToDate(Path sourceFile) throws IOException {
+        if (!Files.exists(sourceFile) || Files.size(sourceFile) != sourceSize) {
+            return false;
+        }
+        if (Files.getLastModifiedTime(sourceFile).toMillis() == sourceModified) {
+            return true;
+        }
+        return checksum(sourceFile) == sourceChecksum;
+    }
+
+    /**
+     * Looks up the count of a word with a binary search over the blocks.
+     *
+     * @param word The lowercase word.
+     * @return The count of the word, or 0 if not found.
+     */
+    public long get(String word) {
+        byte[] key = word.getBytes(StandardCharsets.UTF_8);
+        // finds the last block whose first word is not after the key
+        int low = 0;
+        int high = blockCount - 1;
+        int block = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int c = compareFirstWord(middle, key);
+            if (c == 0) {
+                block = middle;
+                break;
+            } else if (c < 0) {
+                block = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (block < 0) {
+            return 0;
+        }
+
+        // scans the block, rebuilding each word from the one before it
+        int[] position = {blockOffset(block)};
+        byte[] current = new byte[64];
+        int end = Math.min(BLOCK_SIZE, distinctWords - block * BLOCK_SIZE);
+        for (int i = 0; i < end; i++) {
+            int shared = i == 0 ? 0 : readVarint(position);
+            int suffix = readVarint(position);
+            if (shared + suffix > current.length) {
+                current = Arrays.copyOf(current, (shared + suffix) * 2);
+            }
+            buffer.get(position[0], current, shared, suffix);
+            position[0] += suffix;
+            long count = readVarLong(position);
+            int c = Arrays.compareUnsigned(current, 0, shared + suffix, key, 0, key.length);
+            if (c == 0) {
+                return count;
+            } else if (c > 0) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the total number of words counted.
+     *
+     * @return The total word count.
+     */
+    public long totalWordCount() {
+        return totalWords;
+    }
+
+    /**
+     * Returns the number of distinct words.
+     *
+     * @return The number of words.
+     */
+    public int size() {
+        return distinctWords;
+    }
+
+    /**
+     * Decodes every word and count, in UTF-8 byte order.
+     *
+     * @param visitor Receives each word and its count.
+     */
+    public void forEach(WordCountTable.EntryVisitor visitor) {
+        int[] position = {HEADER_SIZE};
+        byte[] current = new byte[64];
+        for (int i = 0; i < distinctWords; i++) {
+            int shared = i % BLOCK_SIZE == 0 ? 0 : readVarint(position);
+            int suffix = readVarint(position);
+            if (shared + suffix > current.length) {
+                current = Arrays.copyOf(current, (shared + suffix) * 2);
+            }
+            buffer.get(position[0], current, shared, suffix);
+            position[0] += suffix;
+            long count = readVarLong(position);
+            visitor.visit(new String(current, 0, shared + suffix, StandardCharsets.UTF_8), count);
+        }
+    }
+
+    /**
+     * Compares the first word of a block with a key.
+     */
+    private int compareFirstWord(int block, byte[] key) {
+        int[] position = {blockOffset(block)};
+        int length = readVarint(position);
+        int start = position[0];
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int c = Integer.compare(buffer.get(start + i) & 0xFF, key[i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private int blockOffset(int block) {
+        return buffer.getInt(blockTableOffset + 4 * block);
+    }
+
+    /**
+     * Reads an unsigned varint at position[0] and moves the position past it.
+     */
+    private int readVarint(int[] position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position[0]++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Reads an unsigned varint of up to 64 bits at position[0] and moves the
+     * position past it.
+     */
+    private long readVarLong(int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position[0]++);
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Returns the number of leading bytes two keys have in common.
+     */
+    private static int sharedPrefix(byte[] a, int aLength, byte[] b, int bLength) {
+        int mismatch = Arrays.mismatch(a, 0, aLength, b, 0, bLength);
+        return mismatch < 0 ? aLength : mismatch;
+    }
+
+    /**
+     * Computes the CRC-32C checksum of a file through a memory mapping.
+     */
+    static long checksum(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += Integer.MAX_VALUE) {
+                long length = Math.min(Integer.MAX_VALUE, size - position);
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * An output stream that counts the bytes written and can write varints.
+     */
+    private static class CountingOutput extends FilterOutputStream {
+
+        long written;
+
+        CountingOutput(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int offset, int length) throws IOException {
+            out.write(b, offset, length);
+            written += length;
+        }
+
+        void writeVarint(int value) throws IOException {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+    }
+}
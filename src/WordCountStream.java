@@ -0,0 +1,193 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Map;
+
+/**
+ * WordCountStream counts text that arrives in pieces, such as from a pipe or
+ * a socket, into a BookWordCounter.
+ *
+ * Chunks do not need to line up with words or lines: a word that is cut off
+ * at the end of one chunk is completed by the next, and bytes of a
+ * multi-byte character are held back until the rest of the character
+ * arrives. Text can be given as characters or as bytes, but bytes should not
+ * be followed by characters while a character is still incomplete.
+ *
+ * All methods are synchronized, so another thread can call snapshot() while
+ * text is being fed in. A snapshot holds every word that has been completed
+ * so far; the word still being read is counted once it ends.
+ *
+ * Call finish() (or close()) at the end of the input to count the last word.
+ *
+ * @author Zak Sheikh
+ */
+public class WordCountStream implements Closeable {
+
+    /** Size of the byte and char buffers used for decoding */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final BookWordCounter counter;
+    private final Tokenizer tokenizer;
+    private final Tokenizer.TokenSink sink;
+    private final CharsetDecoder decoder;
+
+    /** Bytes that have been received but not decoded yet */
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /** Characters that have been decoded but not tokenized yet */
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * Creates a stream. Use BookWordCounter.openStream() to get one.
+     *
+     * @param counter   The counter that is updated.
+     * @param tokenizer Splits the text into words.
+     * @param sink      Counts each word into the counter.
+     * @param charset   The charset used to decode bytes.
+     */
+    WordCountStream(BookWordCounter counter, Tokenizer tokenizer, Tokenizer.TokenSink sink, Charset charset) {
+        this.counter = counter;
+        this.tokenizer = tokenizer;
+        this.sink = sink;
+        // replaces bad input with U+FFFD like FileReader does
+        this.decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Counts a chunk of text.
+     *
+     * @param text The text to count.
+     */
+    public synchronized void accept(CharSequence text) {
+        tokenizer.tokenize(text, sink);
+    }
+
+    /**
+     * Counts the characters text[offset, offset + length).
+     *
+     * @param text   The buffer holding the text.
+     * @param offset The index of the first character to count.
+     * @param length The number of characters to count.
+     */
+    public synchronized void accept(char[] text, int offset, int length) {
+        tokenizer.tokenize(text, offset, length, sink);
+    }
+
+    /**
+     * Decodes and counts the remaining bytes of a buffer. The buffer's
+     * position is moved to its limit.
+     *
+     * @param input The bytes to count.
+     */
+    public synchronized void accept(ByteBuffer input) {
+        while (input.hasRemaining()) {
+            // copies as much as fits after the bytes held back from last time
+            int n = Math.min(input.remaining(), bytes.remaining());
+            bytes.put(bytes.position(), input, input.position(), n);
+            bytes.position(bytes.position() + n);
+            input.position(input.position() + n);
+            decode(false);
+        }
+    }
+
+    /**
+     * Reads and counts everything from an input stream until it ends. The
+     * stream is not closed, and finish() is not called.
+     *
+     * @param in The stream to read.
+     * @return The number of bytes read.
+     */
+    public long readFrom(InputStream in) throws IOException {
+        long total = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            accept(ByteBuffer.wrap(buffer, 0, read));
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Reads and counts everything from a channel until it ends. The channel
+     * is not closed, and finish() is not called.
+     *
+     * @param channel The channel to read.
+     * @return The number of bytes read.
+     */
+    public long readFrom(ReadableByteChannel channel) throws IOException {
+        long total = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        int read;
+        while ((read = channel.read(buffer)) != -1) {
+            buffer.flip();
+            accept(buffer);
+            buffer.clear();
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Takes a copy of the counts so far. Words that have not ended yet are
+     * not included.
+     *
+     * @return A HashMap containing a copy of the word counts.
+     */
+    public synchronized Map<String, Long> snapshot() {
+        return counter.getAllWordCounts();
+    }
+
+    /**
+     * Ends the input: decodes any bytes that were held back and counts the
+     * last word. The stream can then be used for a new input.
+     */
+    public synchronized void finish() {
+        decode(true);
+        while (decoder.flush(chars).isOverflow()) {
+            drain();
+        }
+        drain();
+        decoder.reset();
+        tokenizer.finish(sink);
+    }
+
+    /**
+     * Same as finish().
+     */
+    @Override
+    public void close() {
+        finish();
+    }
+
+    /**
+     * Decodes the buffered bytes, keeping back an incomplete character at
+     * the end unless this is the end of the input.
+     */
+    private void decode(boolean endOfInput) {
+        bytes.flip();
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, chars, endOfInput);
+            drain();
+        } while (result.isOverflow());
+        bytes.compact();
+    }
+
+    /**
+     * Tokenizes the decoded characters and empties the char buffer.
+     */
+    private void drain() {
+        tokenizer.tokenize(chars.array(), 0, chars.position(), sink);
+        chars.clear();
+    }
+}
@@ -0,0 +1,504 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * WordCountTable maps words to long counts for BookWordCounter.
+ *
+ * Each distinct word is given a dense int ID by a Vocabulary, which keeps
+ * the characters of all words in one byte array, and counts live in a
+ * long array indexed by ID. So a word costs its UTF-8 bytes plus three ints
+ * and a long, rather than a String, its backing array and a map entry, and
+ * counting a word looks it up straight from the tokenizer buffer without
+ * allocating. Counts and the total are 64-bit, so merging a whole corpus
+ * cannot overflow them, and the total is kept up to date as words are
+ * counted rather than added up when asked for.
+ *
+ * A word whose count drops to zero is no longer in the table, but keeps its
+ * ID so counting it again is cheap. Once such words outnumber the live ones
+ * the vocabulary is rebuilt without them.
+ *
+ * @author Zak Sheikh
+ */
+public class WordCountTable {
+
+    /** Number of IDs the count array starts with */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Receives the entries of a WordCountTable.
+     */
+    public interface EntryVisitor {
+
+        /**
+         * Called once per word in the table.
+         *
+         * @param word  The word.
+         * @param count The number of times it was counted.
+         */
+        void visit(String word, long count);
+    }
+
+    /** Gives each word its ID and holds its characters */
+    private Vocabulary vocabulary = new Vocabulary();
+
+    /** The count of each word, by ID; 0 if the word is not in the table */
+    private long[] counts = new long[INITIAL_CAPACITY];
+
+    /** Number of words in the table */
+    private int size;
+
+    /** The sum of all counts */
+    private long total;
+
+    /** Number of times the counts were grown or the vocabulary rebuilt */
+    private int resizes;
+
+    /**
+     * Creates an empty table.
+     */
+    public WordCountTable() {
+    }
+
+    /**
+     * Adds one to the count of the word buffer[offset, offset + length),
+     * adding the word if it is not in the table yet.
+     *
+     * @param buffer The buffer holding the word.
+     * @param offset The index of the first character of the word.
+     * @param length The number of characters in the word.
+     */
+    public void increment(char[] buffer, int offset, int length) {
+        add(vocabulary.add(buffer, offset, length), 1);
+    }
+
+    /**
+     * Adds delta to the count of a word, adding the word if it is not in
+     * the table yet. The delta can be negative; a word whose count drops to
+     * zero is removed, and a count never drops below zero.
+     *
+     * @param word  The word to count.
+     * @param delta The amount to add.
+     */
+    public void add(String word, long delta) {
+        if (delta != 0) {
+            add(vocabulary.add(word), delta);
+        }
+    }
+
+    /**
+     * Subtracts every count of another table from this one, removing words
+     * whose count drops to zero. Nothing is subtracted if the other table
+     * has a word this one lacks, or more of a word, since the counts would
+     * then no longer add up.
+     *
+     * @param other The table to subtract.
+     * @throws IllegalArgumentException if a count would drop below zero.
+     */
+    public void subtractAll(WordCountTable other) {
+        // checks every word first, so a failed subtraction changes nothing
+        for (int id = 0; id < other.vocabulary.size(); id++) {
+            if (other.counts[id] != 0) {
+                int mine = vocabulary.get(other.vocabulary, id);
+                if (mine < 0 || mine >= counts.length || counts[mine] < other.counts[id]) {
+                    throw new IllegalArgumentException("Cannot subtract " + other.counts[id] + " of \""
+                        + other.vocabulary.word(id) + "\" from " + (mine < 0 ? 0 : count(mine)));
+                }
+            }
+        }
+        for (int id = 0; id < other.vocabulary.size(); id++) {
+            if (other.counts[id] != 0) {
+                add(vocabulary.add(other.vocabulary, id), -other.counts[id]);
+            }
+        }
+        compactIfSparse();
+    }
+
+    /**
+     * Adds every count from another table to this one.
+     *
+     * @param other The table to add.
+     */
+    public void addAll(WordCountTable other) {
+        for (int id = 0; id < other.vocabulary.size(); id++) {
+            if (other.counts[id] != 0) {
+                add(vocabulary.add(other.vocabulary, id), other.counts[id]);
+            }
+        }
+        compactIfSparse();
+    }
+
+    /**
+     * Retrieves the count of a word.
+     *
+     * @param word The word to look up.
+     * @return The count of the word, or 0 if it is not in the table.
+     */
+    public long get(String word) {
+        int id = vocabulary.get(word);
+        return id >= 0 ? counts[id] : 0;
+    }
+
+    /**
+     * Returns the number of distinct words in the table.
+     *
+     * @return The number of words.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns how many times the table or its vocabulary had to grow, or
+     * was rebuilt to drop removed words.
+     *
+     * @return The number of resizes so far.
+     */
+    public int resizeCount() {
+        return resizes + vocabulary.resizeCount();
+    }
+
+    /**
+     * Returns the sum of all counts, which is kept as words are counted.
+     *
+     * @return The total count.
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Returns the words in the table, in no particular order.
+     *
+     * @return A new array holding every word.
+     */
+    public String[] words() {
+        String[] result = new String[size];
+        int n = 0;
+        for (int id = 0; id < vocabulary.size(); id++) {
+            if (counts[id] != 0) {
+                result[n++] = vocabulary.word(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Calls the visitor once for every word in the table, in the order the
+     * words were first counted.
+     *
+     * @param visitor Receives each word and its count.
+     */
+    public void forEach(EntryVisitor visitor) {
+        for (int id = 0; id < vocabulary.size(); id++) {
+            if (counts[id] != 0) {
+                visitor.visit(vocabulary.word(id), counts[id]);
+            }
+        }
+    }
+
+    /**
+     * Calls the visitor once for every word in the table, in dictionary
+     * order. The words are sorted by ID without making a String for each
+     * one first.
+     *
+     * @param visitor Receives each word and its count.
+     */
+    public void forEachSorted(EntryVisitor visitor) {
+        for (int id : sortedIds()) {
+            visitor.visit(vocabulary.word(id), counts[id]);
+        }
+    }
+
+    /**
+     * Returns the IDs of the words in the table in dictionary order, without
+     * making a String.
+     *
+     * @return The IDs, sorted.
+     */
+    int[] sortedIds() {
+        return sortIds(false);
+    }
+
+    /**
+     * Returns the IDs of the words in the table in the order of their UTF-8
+     * bytes, as WordCountIndex stores them, without making a String.
+     *
+     * @return The IDs, sorted.
+     */
+    int[] idsInByteOrder() {
+        return sortIds(true);
+    }
+
+    /**
+     * Sorts the IDs of the words in the table.
+     *
+     * Each ID is packed into a long behind a prefix of its word, as given by
+     * Vocabulary.prefix() or bytePrefix(), and the longs are sorted with
+     * Arrays.parallelSort. That puts the IDs in order apart from runs whose
+     * words share a prefix, and only those runs are then merge sorted by
+     * whole word; they are short for any real vocabulary.
+     */
+    private int[] sortIds(boolean byBytes) {
+        int[] ids = new int[size];
+        int n = 0;
+        for (int id = 0; id < vocabulary.size(); id++) {
+            if (counts[id] != 0) {
+                ids[n++] = id;
+            }
+        }
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) {
+            int prefix = byBytes ? vocabulary.bytePrefix(ids[i]) : vocabulary.prefix(ids[i]);
+            // flips the top bit so unsigned prefixes sort as signed longs
+            packed[i] = (long) (prefix ^ Integer.MIN_VALUE) << 32 | ids[i];
+        }
+        Arrays.parallelSort(packed);
+        for (int i = 0; i < n; i++) {
+            ids[i] = (int) packed[i];
+        }
+        int[] temp = null;
+        for (int from = 0; from < n; ) {
+            int to = from + 1;
+            while (to < n && packed[to] >>> 32 == packed[from] >>> 32) {
+                to++;
+            }
+            if (to - from > 1) {
+                if (temp == null) {
+                    temp = new int[n];
+                }
+                sort(ids, temp, from, to, byBytes);
+            }
+            from = to;
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the vocabulary that gives the IDs from sortedIds() their
+     * words. It is replaced, not changed, when the table drops removed
+     * words, so an ID read from it keeps its word.
+     *
+     * @return The vocabulary.
+     */
+    Vocabulary vocabulary() {
+        return vocabulary;
+    }
+
+    /**
+     * Returns the count of the word with an ID.
+     *
+     * @param id An ID of the current vocabulary.
+     * @return The count, or 0 if the word is not in the table.
+     */
+    long count(int id) {
+        return id < counts.length ? counts[id] : 0;
+    }
+
+    /**
+     * Estimates the heap the table takes, including the room kept for
+     * words not counted yet, so a caller can bound it.
+     *
+     * @return The size of the table's arrays in bytes.
+     */
+    public long memoryUsage() {
+        return vocabulary.memoryUsage() + 8L * counts.length;
+    }
+
+    /**
+     * Finds the k most frequent words, leaving out excluded words. Ties are
+     * broken alphabetically.
+     *
+     * Uses a min-heap that never holds more than k IDs, so this takes
+     * O(n log k) time and O(k) extra memory. Only the words returned are
+     * made into Strings, unless excluded is a plain set rather than a
+     * StopWordFilter, which can check a word's characters directly.
+     *
+     * @param k        The number of words to return.
+     * @param excluded Words to leave out.
+     * @return Up to k word-count pairs, most frequent first.
+     */
+    public List<Map.Entry<String, Long>> top(int k, Set<String> excluded) {
+        int[] heap = new int[Math.max(0, Math.min(k, size))];
+        int n = 0;
+        if (heap.length > 0) {
+            StopWordFilter filter = excluded instanceof StopWordFilter ? (StopWordFilter) excluded : null;
+            char[] chars = new char[16];
+            for (int id = 0; id < vocabulary.size(); id++) {
+                if (counts[id] == 0) {
+                    continue;
+                }
+                if (!excluded.isEmpty()) {
+                    if (filter == null) {
+                        if (excluded.contains(vocabulary.word(id))) {
+                            continue;
+                        }
+                    } else {
+                        if (chars.length < vocabulary.byteLength(id)) {
+                            chars = new char[vocabulary.byteLength(id)];
+                        }
+                        if (filter.contains(chars, 0, vocabulary.chars(id, chars))) {
+                            continue;
+                        }
+                    }
+                }
+                if (n < heap.length) {
+                    // fills the heap, then restores order from the new leaf up
+                    heap[n] = id;
+                    for (int i = n++; i > 0 && ranksAbove(heap[(i - 1) / 2], heap[i]); i = (i - 1) / 2) {
+                        swap(heap, i, (i - 1) / 2);
+                    }
+                } else if (ranksAbove(id, heap[0])) {
+                    // replaces the weakest word kept so far
+                    heap[0] = id;
+                    siftDown(heap, n);
+                }
+            }
+        }
+
+        // takes the weakest word off the heap until it is empty
+        List<Map.Entry<String, Long>> result = new ArrayList<>(n);
+        int[] order = new int[n];
+        for (int i = n - 1; i >= 0; i--) {
+            order[i] = heap[0];
+            heap[0] = heap[i];
+            siftDown(heap, i);
+        }
+        for (int id : order) {
+            result.add(Map.entry(vocabulary.word(id), counts[id]));
+        }
+        return result;
+    }
+
+    /**
+     * Copies the table into a HashMap.
+     *
+     * @return A new map from each word to its count.
+     */
+    public Map<String, Long> toMap() {
+        Map<String, Long> map = new HashMap<>(size * 2);
+        forEach(map::put);
+        return map;
+    }
+
+    /**
+     * Adds delta to the count of the word with an ID, keeping the number of
+     * words and the total in step. A count that would drop below zero is
+     * left at zero.
+     */
+    private void add(int id, long delta) {
+        if (id >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(counts.length * 2, id + 1));
+            resizes++;
+        }
+        long before = counts[id];
+        // stops at zero, so the total stays the sum of the counts
+        counts[id] = Math.max(0, before + delta);
+        total += counts[id] - before;
+        if (before == 0 && counts[id] != 0) {
+            size++;
+        } else if (before != 0 && counts[id] == 0) {
+            size--;
+        }
+    }
+
+    /**
+     * Rebuilds the vocabulary without the words that are no longer in the
+     * table, once they outnumber the words that are.
+     */
+    private void compactIfSparse() {
+        int removed = vocabulary.size() - size;
+        if (removed <= INITIAL_CAPACITY || removed <= size) {
+            return;
+        }
+        Vocabulary live = new Vocabulary();
+        long[] liveCounts = new long[Math.max(INITIAL_CAPACITY, size * 2)];
+        for (int id = 0; id < vocabulary.size(); id++) {
+            if (counts[id] != 0) {
+                liveCounts[live.add(vocabulary, id)] = counts[id];
+            }
+        }
+        // keeps the resizes of the old vocabulary, plus one for the rebuild
+        resizes += vocabulary.resizeCount() + 1;
+        vocabulary = live;
+        counts = liveCounts;
+    }
+
+    /**
+     * Sorts ids[from, to) into dictionary order, or byte order, with a
+     * merge sort, using temp as scratch space.
+     */
+    private void sort(int[] ids, int[] temp, int from, int to, boolean byBytes) {
+        if (to - from < 16) {
+            // sorts short ranges by insertion
+            for (int i = from + 1; i < to; i++) {
+                int id = ids[i];
+                int j = i;
+                for (; j > from && compare(ids[j - 1], id, byBytes) > 0; j--) {
+                    ids[j] = ids[j - 1];
+                }
+                ids[j] = id;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sort(ids, temp, from, middle, byBytes);
+        sort(ids, temp, middle, to, byBytes);
+        if (compare(ids[middle - 1], ids[middle], byBytes) <= 0) {
+            return;
+        }
+        System.arraycopy(ids, from, temp, from, to - from);
+        for (int i = from, a = from, b = middle; i < to; i++) {
+            if (b >= to || (a < middle && compare(temp[a], temp[b], byBytes) <= 0)) {
+                ids[i] = temp[a++];
+            } else {
+                ids[i] = temp[b++];
+            }
+        }
+    }
+
+    private int compare(int a, int b, boolean byBytes) {
+        return byBytes ? vocabulary.compareBytes(a, b) : vocabulary.compare(a, b);
+    }
+
+    /**
+     * Checks whether word a comes before word b in a most-frequent-first
+     * ranking.
+     */
+    private boolean ranksAbove(int a, int b) {
+        return counts[a] != counts[b] ? counts[a] > counts[b] : vocabulary.compare(a, b) < 0;
+    }
+
+    /**
+     * Moves the root of a min-heap of IDs down to its place.
+     *
+     * @param heap The heap, ordered so the lowest ranked word is at the root.
+     * @param n    The number of IDs in the heap.
+     */
+    private void siftDown(int[] heap, int n) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n) {
+                return;
+            }
+            if (child + 1 < n && ranksAbove(heap[child], heap[child + 1])) {
+                child++;
+            }
+            if (!ranksAbove(heap[i], heap[child])) {
+                return;
+            }
+            swap(heap, i, child);
+            i = child;
+        }
+    }
+
+    private static void swap(int[] array, int i, int j) {
+        int temp = array[i];
+        array[i] = array[j];
+        array[j] = temp;
+    }
+}
@@ -0,0 +1,233 @@
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Set;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * WordCountTableModel shows word counts in a JTable without copying them
+ * into table rows.
+ *
+ * The words stay in the Vocabulary of the counter's WordCountTable. The model
+ * keeps their IDs in alphabetical order next to a primitive array of their
+ * counts, and only makes a word's String when the JTable asks for its cell.
+ * The visible rows are an int array of positions in those arrays, so
+ * changing the sort order, the excluded words or the search filter rebuilds
+ * that array and nothing else. Searches go through a WordSearchIndex, which
+ * is given the words as Strings the first time it is needed.
+ *
+ * @author Zak Sheikh
+ */
+public class WordCountTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Column names of the table */
+    private static final String[] COLUMN_NAMES = {"Word", "Count"};
+
+    /** Holds the words of the IDs */
+    private final Vocabulary vocabulary;
+
+    /** The ID of every word, in alphabetical order */
+    private final int[] ids;
+
+    /** The count of each word */
+    private final long[] counts;
+
+    /** Positions of the words ordered by count, high to low, or null until needed */
+    private int[] frequencyOrder;
+
+    /** Whether rows are sorted by count */
+    private boolean byFrequency;
+
+    /** IDs of the excluded words */
+    private BitSet excludedIds = new BitSet();
+
+    /** The search filter, or "" for none */
+    private String filter = "";
+
+    /** Positions of the words matching the filter, or null for no filter */
+    private BitSet filterMatches;
+
+    /** Finds the words matching a filter, or null until the first search */
+    private WordSearchIndex searchIndex;
+
+    /** Positions of the visible words, in display order */
+    private int[] rows;
+
+    /** Number of visible words */
+    private int rowCount;
+
+    /**
+     * Creates a model of the counts of a counter.
+     *
+     * @param counter     The counter to show.
+     * @param byFrequency true to sort by count, high to low; false to sort
+     *                    alphabetically.
+     * @param excluded    Words to leave out, such as stop words.
+     */
+    public WordCountTableModel(BookWordCounter counter, boolean byFrequency, Set<String> excluded) {
+        this(counter.wordCountTable(), byFrequency, excluded);
+    }
+
+    /**
+     * Creates a model of a map of word counts.
+     *
+     * @param wordCounts  The counts to show.
+     * @param byFrequency true to sort by count, high to low; false to sort
+     *                    alphabetically.
+     * @param excluded    Words to leave out, such as stop words.
+     */
+    public WordCountTableModel(Map<String, Long> wordCounts, boolean byFrequency, Set<String> excluded) {
+        this(tableOf(wordCounts), byFrequency, excluded);
+    }
+
+    /**
+     * Creates a model of the counts in a table, copying only the counts.
+     */
+    private WordCountTableModel(WordCountTable table, boolean byFrequency, Set<String> excluded) {
+        vocabulary = table.vocabulary();
+        ids = table.sortedIds();
+        counts = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            counts[i] = table.count(ids[i]);
+        }
+        rows = new int[ids.length];
+        setOrder(byFrequency, excluded);
+    }
+
+    private static WordCountTable tableOf(Map<String, Long> wordCounts) {
+        WordCountTable table = new WordCountTable();
+        wordCounts.forEach(table::add);
+        return table;
+    }
+
+    /**
+     * Changes which words are shown and in what order, and tells the table.
+     *
+     * @param byFrequency true to sort by count, high to low, with ties in
+     *                    alphabetical order; false to sort alphabetically.
+     * @param excluded    Words to leave out, such as stop words.
+     */
+    public void setOrder(boolean byFrequency, Set<String> excluded) {
+        this.byFrequency = byFrequency;
+        // looks up the few excluded words rather than checking every word
+        excludedIds = new BitSet(vocabulary.size());
+        for (String word : excluded) {
+            int id = vocabulary.get(word);
+            if (id >= 0) {
+                excludedIds.set(id);
+            }
+        }
+        reindex();
+    }
+
+    /**
+     * Shows only the rows whose word or count contains a search term. See
+     * WordSearchIndex for the search rules.
+     *
+     * @param search The search term, or "" to show every row.
+     */
+    public void setFilter(String search) {
+        search = search.trim().toLowerCase();
+        if (search.equals(filter)) {
+            return;
+        }
+        // a longer term is searched within the previous matches when that is quicker
+        filterMatches = search.isEmpty() ? null : searchIndex().search(search, filter, filterMatches);
+        filter = search;
+        reindex();
+    }
+
+    /**
+     * Builds the search index ahead of the first search, so it can be done
+     * off the EDT.
+     */
+    public void prepareSearch() {
+        searchIndex();
+    }
+
+    /**
+     * Returns the word shown in a row.
+     *
+     * @param row The row index.
+     * @return The word.
+     */
+    public String getWord(int row) {
+        return vocabulary.word(ids[rows[checkRow(row)]]);
+    }
+
+    /**
+     * Returns the count shown in a row.
+     *
+     * @param row The row index.
+     * @return The count of the row's word.
+     */
+    public long getCount(int row) {
+        return counts[rows[checkRow(row)]];
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return column == 0 ? getWord(row) : (Object) getCount(row);
+    }
+
+    /**
+     * Rebuilds the visible rows and tells the table.
+     */
+    private void reindex() {
+        int[] order = byFrequency ? frequencyOrder() : null;
+        rowCount = 0;
+        for (int i = 0; i < ids.length; i++) {
+            int position = order != null ? order[i] : i;
+            if (!excludedIds.get(ids[position]) && (filterMatches == null || filterMatches.get(position))) {
+                rows[rowCount++] = position;
+            }
+        }
+        fireTableDataChanged();
+    }
+
+    private WordSearchIndex searchIndex() {
+        if (searchIndex == null) {
+            String[] words = new String[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                words[i] = vocabulary.word(ids[i]);
+            }
+            searchIndex = new WordSearchIndex(words, counts);
+        }
+        return searchIndex;
+    }
+
+    /**
+     * Returns the positions of the words ordered by count, high to low,
+     * sorting them the first time.
+     */
+    private int[] frequencyOrder() {
+        if (frequencyOrder == null) {
+            // ties stay in position order, which is alphabetical
+            frequencyOrder = WordSearchIndex.orderByCount(counts, true);
+        }
+        return frequencyOrder;
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("row " + row + " of " + rowCount);
+        }
+        return row;
+    }
+}
@@ -0,0 +1,88 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Unit tests of the WordCountTableModel class, to be run with JUnit 5.
+ *
+ * @author Zak Sheikh
+ */
+public class WordCountTableModelTest {
+
+    @BeforeAll
+    public static void setUpClass() {
+        System.out.println("Running WordCountTableModelTest 📚");
+    }
+
+    /**
+     * Tests that rows follow the sort order, with ties alphabetical, and
+     * that re-indexing applies a new order and excluded words.
+     */
+    @Test
+    void testOrderAndExcludedWords() {
+        System.out.println("Running WordCountTableModel setOrder() test");
+        BookWordCounter counter = new BookWordCounter();
+        counter.processLine("the the the cat cat sat on mat the");
+
+        WordCountTableModel model = new WordCountTableModel(counter, true, Set.of());
+        assertEquals(List.of("the", "cat", "mat", "on", "sat"), wordsOf(model), "Expected frequency order");
+        assertEquals(4, model.getCount(0), "Expected: 4");
+        assertEquals(4L, model.getValueAt(0, 1), "Expected the count column to hold the count");
+
+        // switches to alphabetical order without the stop words
+        model.setOrder(false, Set.of("the", "on"));
+        assertEquals(List.of("cat", "mat", "sat"), wordsOf(model), "Expected alphabetical order without stop words");
+        assertEquals(2L, model.getValueAt(0, 1), "Expected: 2");
+
+        // switches back
+        model.setOrder(true, Set.of());
+        assertEquals(5, model.getRowCount(), "Expected every word again");
+        assertThrows(IndexOutOfBoundsException.class, () -> model.getWord(5));
+    }
+
+    /**
+     * Tests that a model of counts read from an index matches a model of the
+     * same counts in memory and a model of a map.
+     */
+    @Test
+    void testSameRowsFromEverySource() throws IOException {
+        System.out.println("Running WordCountTableModel sources test");
+        BookWordCounter counter = new BookWordCounter();
+        for (int i = 0; i < 300; i++) {
+            counter.processLine("word" + (char) ('a' + i % 26) + (char) ('a' + i / 26) + " common");
+        }
+        String testFile = "testTableModel.txt";
+        String indexFile = "testTableModel.bwci";
+        Files.write(Paths.get(testFile), "unused".getBytes());
+        counter.saveIndex(indexFile, testFile);
+
+        WordCountTableModel fromTable = new WordCountTableModel(counter, true, Set.of());
+        WordCountTableModel fromIndex = new WordCountTableModel(BookWordCounter.loadIndex(indexFile), true, Set.of());
+        WordCountTableModel fromMap = new WordCountTableModel(counter.getAllWordCounts(), true, Set.of());
+        assertEquals(wordsOf(fromTable), wordsOf(fromIndex), "Expected the same rows from the index");
+        assertEquals(wordsOf(fromTable), wordsOf(fromMap), "Expected the same rows from the map");
+        assertEquals("common", fromIndex.getWord(0), "Expected the most frequent word first");
+
+        // deletes the test files
+        Files.deleteIfExists(Paths.get(testFile));
+        Files.deleteIfExists(Paths.get(indexFile));
+    }
+
+    /**
+     * Returns the words of every row.
+     */
+    private static List<String> wordsOf(WordCountTableModel model) {
+        List<String> words = new ArrayList<>();
+        for (int row = 0; row < model.getRowCount(); row++) {
+            words.add(model.getWord(row));
+        }
+        return words;
+    }
+}
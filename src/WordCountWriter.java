@@ -0,0 +1,376 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * WordCountWriter writes word counts in the results format of
+ * BookWordCounter.saveResults():
+ *
+ *   Total words counted: 11
+ *   cat: 3
+ *   ...
+ *
+ * with the words in dictionary order and one line per word.
+ *
+ * The word IDs of a table are sorted in parallel by WordCountTable, and
+ * each word's bytes are copied straight from its Vocabulary, so no String
+ * is made for a word whose bytes are already right in the output charset.
+ * Lines are formatted into a large reusable byte buffer, with counts
+ * written digit by digit. A plain file is written through a direct buffer
+ * on a FileChannel; a file ending in .gz is gzip-compressed.
+ *
+ * The bytes match what a PrintWriter over a FileWriter writes, in the
+ * platform's default charset and line separator. The charset is expected to
+ * write ASCII as single bytes, as UTF-8 and the ISO and Windows code pages
+ * do.
+ *
+ * @author Zak Sheikh
+ */
+public class WordCountWriter implements Closeable {
+
+    /** Size of the output buffer */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** Room kept free for one line of a short word, so most lines skip the bounds check */
+    private static final int LINE_ROOM = 64;
+
+    /**
+     * How a results file is compressed.
+     */
+    public enum Compression {
+
+        /** Plain text */
+        NONE,
+
+        /** gzip, as read by GZIPInputStream and gunzip */
+        GZIP;
+
+        /**
+         * Picks the compression of a file from its name: gzip for names
+         * ending in .gz, otherwise none.
+         *
+         * @param file The results file.
+         * @return The compression to use.
+         */
+        public static Compression forFile(Path file) {
+            return file.getFileName().toString().endsWith(".gz") ? GZIP : NONE;
+        }
+    }
+
+    /**
+     * A word and its count, sorted by word.
+     */
+    private static final class Entry implements Comparable<Entry> {
+        final String word;
+        final long count;
+
+        Entry(String word, long count) {
+            this.word = word;
+            this.count = count;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return word.compareTo(other.word);
+        }
+    }
+
+    /** The charset words are encoded in */
+    private final Charset charset = Charset.defaultCharset();
+
+    /** Whether vocabulary bytes can be written as they are, beyond ASCII */
+    private final boolean utf8 = charset.equals(StandardCharsets.UTF_8);
+
+    /** The line separator, encoded */
+    private final byte[] newline = System.lineSeparator().getBytes(charset);
+
+    /** Holds the digits of a count, written backwards */
+    private final byte[] digits = new byte[20];
+
+    /** Lines are formatted into this buffer */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    /** Number of bytes in the buffer */
+    private int length;
+
+    /** Where a plain file is written, or null */
+    private FileChannel channel;
+
+    /** Carries the buffer to the channel without a copy inside the channel */
+    private ByteBuffer direct;
+
+    /** Where a compressed file is written, or null */
+    private OutputStream compressed;
+
+    /**
+     * Writes the counts of a table to a results file, compressed as the
+     * file name says.
+     *
+     * @param counts The word counts.
+     * @param file   The results file, replaced if it exists.
+     */
+    public static void write(WordCountTable counts, Path file) throws IOException {
+        write(counts, file, Compression.forFile(file));
+    }
+
+    /**
+     * Writes the counts of a table to a results file.
+     *
+     * @param counts      The word counts.
+     * @param file        The results file, replaced if it exists.
+     * @param compression How to compress the file.
+     */
+    public static void write(WordCountTable counts, Path file, Compression compression) throws IOException {
+        int[] ids = counts.sortedIds();
+        Vocabulary vocabulary = counts.vocabulary();
+        try (WordCountWriter writer = new WordCountWriter(file, compression, counts.total())) {
+            for (int id : ids) {
+                writer.write(vocabulary, id, counts.count(id));
+            }
+        }
+    }
+
+    /**
+     * Writes words and their counts to a results file, sorting them first.
+     * NGramCounter uses this to save phrases.
+     *
+     * @param words       The words, in any order.
+     * @param counts      The count of each word.
+     * @param file        The results file, replaced if it exists.
+     * @param compression How to compress the file.
+     */
+    public static void write(String[] words, long[] counts, Path file, Compression compression) throws IOException {
+        Entry[] entries = new Entry[words.length];
+        long total = 0;
+        for (int i = 0; i < words.length; i++) {
+            entries[i] = new Entry(words[i], counts[i]);
+            total += counts[i];
+        }
+        Arrays.parallelSort(entries);
+        try (WordCountWriter writer = new WordCountWriter(file, compression, total)) {
+            for (Entry entry : entries) {
+                writer.write(entry.word, entry.count);
+            }
+        }
+    }
+
+    /**
+     * Opens a results file and writes its total, for entries that are
+     * written one at a time, as ExternalWordCounter does while merging.
+     * The entries must be given in dictionary order.
+     *
+     * @param file        The results file, replaced if it exists.
+     * @param compression How to compress the file.
+     * @param total       The sum of all counts that will be written.
+     */
+    WordCountWriter(Path file, Compression compression, long total) throws IOException {
+        FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            if (compression == Compression.GZIP) {
+                compressed = new GZIPOutputStream(Channels.newOutputStream(out), 1 << 16);
+            } else {
+                channel = out;
+                direct = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            }
+
+            // writes the total word count
+            writeString("Total words counted: ");
+            writeNumber(total);
+            writeNewline();
+        } catch (IOException | RuntimeException | Error e) {
+            // closes the file, which the caller never gets to close
+            try {
+                out.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a word and its count as the next line.
+     *
+     * @param word  The word, after the previous one in dictionary order.
+     * @param count Its count.
+     */
+    void write(String word, long count) throws IOException {
+        if (BUFFER_SIZE - length < LINE_ROOM + word.length()) {
+            flush();
+        }
+        writeString(word);
+        if (BUFFER_SIZE - length < LINE_ROOM) {
+            flush();
+        }
+        buffer[length++] = ':';
+        buffer[length++] = ' ';
+        writeNumber(count);
+        writeNewline();
+    }
+
+    /**
+     * Writes a word from a vocabulary and its count as the next line,
+     * copying the word's bytes when they are already right in the output
+     * charset.
+     *
+     * @param vocabulary The vocabulary holding the word.
+     * @param id         The word's ID, after the previous word in dictionary
+     *                   order.
+     * @param count      Its count.
+     */
+    void write(Vocabulary vocabulary, int id, long count) throws IOException {
+        int n = vocabulary.byteLength(id);
+        if (n > BUFFER_SIZE - LINE_ROOM) {
+            write(vocabulary.word(id), count);
+            return;
+        }
+        if (BUFFER_SIZE - length < LINE_ROOM + n) {
+            flush();
+        }
+        vocabulary.copyBytes(id, buffer, length);
+        if (!writable(length, n)) {
+            // encodes the word in the charset instead; the copied bytes are overwritten
+            write(vocabulary.word(id), count);
+            return;
+        }
+        length += n;
+        buffer[length++] = ':';
+        buffer[length++] = ' ';
+        writeNumber(count);
+        writeNewline();
+    }
+
+    /**
+     * Writes out the rest of the buffer and closes the file, closing it
+     * even if the last write fails.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            try {
+                if (compressed != null) {
+                    compressed.close();
+                }
+            } finally {
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether the n vocabulary bytes copied to the buffer at start
+     * are what the charset would write: ASCII in any charset, and any word
+     * but one with a lone surrogate in UTF-8.
+     */
+    private boolean writable(int start, int n) {
+        for (int i = start; i < start + n; i++) {
+            if (buffer[i] < 0) {
+                // a lone surrogate is stored as ED A0..BF, which UTF-8 writes as '?'
+                if (!utf8 || (buffer[i] == (byte) 0xED && (buffer[i + 1] & 0xFF) >= 0xA0)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes a string, byte by byte if it is ASCII.
+     */
+    private void writeString(String s) throws IOException {
+        int n = s.length();
+        if (n <= BUFFER_SIZE - length) {
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x80) {
+                    // encodes the whole string in the charset instead
+                    writeBytes(s.getBytes(charset));
+                    return;
+                }
+                buffer[length + i] = (byte) c;
+            }
+            length += n;
+        } else {
+            writeBytes(s.getBytes(charset));
+        }
+    }
+
+    /**
+     * Writes bytes, flushing the buffer first if they do not fit.
+     */
+    private void writeBytes(byte[] bytes) throws IOException {
+        if (bytes.length > BUFFER_SIZE - length) {
+            flush();
+        }
+        if (bytes.length > BUFFER_SIZE) {
+            // writes a string longer than the buffer on its own
+            if (compressed != null) {
+                compressed.write(bytes);
+            } else {
+                ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+                while (wrapped.hasRemaining()) {
+                    channel.write(wrapped);
+                }
+            }
+            return;
+        }
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    /**
+     * Writes a number in decimal.
+     */
+    private void writeNumber(long value) {
+        if (value < 0) {
+            buffer[length++] = '-';
+        }
+        int n = 0;
+        do {
+            digits[n++] = (byte) ('0' + Math.abs(value % 10));
+            value /= 10;
+        } while (value != 0);
+        while (n > 0) {
+            buffer[length++] = digits[--n];
+        }
+    }
+
+    /**
+     * Writes the line separator.
+     */
+    private void writeNewline() {
+        for (byte b : newline) {
+            buffer[length++] = b;
+        }
+    }
+
+    /**
+     * Writes out everything in the buffer.
+     */
+    private void flush() throws IOException {
+        if (compressed != null) {
+            compressed.write(buffer, 0, length);
+        } else {
+            direct.clear();
+            direct.put(buffer, 0, length).flip();
+            while (direct.hasRemaining()) {
+                channel.write(direct);
+            }
+        }
+        length = 0;
+    }
+}
@@ -0,0 +1,93 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Unit tests of the WordCountWriter class, to be run with JUnit 5.
+ *
+ * @author Zak Sheikh
+ */
+public class WordCountWriterTest {
+
+    @BeforeAll
+    public static void setUpClass() {
+        System.out.println("Running WordCountWriterTest 📚");
+    }
+
+    /**
+     * Tests that the output is byte for byte what a PrintWriter writes,
+     * including words longer than the output buffer, words that share their
+     * first two chars and words with surrogates.
+     */
+    @Test
+    void testSameAsPrintWriter(@TempDir Path directory) throws IOException {
+        System.out.println("Running WordCountWriter output test");
+        WordCountTable counts = new WordCountTable();
+        for (int i = 0; i < 100_000; i++) {
+            counts.add("w" + Integer.toString(i * 7919, 36), i % 1000 + 1);
+        }
+        counts.add("café", 2);
+        for (String word : new String[] {"a", "ab", "abc", "über", "日本語", "😀smile", "😀", "\uFFFDx", "a\uD800b",
+                "\uDC00", "\uD83D", "\uD83D\uDE00x"}) {
+            counts.add(word, 3);
+        }
+        counts.add("x".repeat((1 << 20) + 5), 1);
+        Path written = directory.resolve("written.txt");
+        WordCountWriter.write(counts, written);
+
+        // writes the same counts the way saveResults() used to
+        Path expected = directory.resolve("expected.txt");
+        try (PrintWriter writer = new PrintWriter(new FileWriter(expected.toFile()))) {
+            String[] words = counts.words();
+            Arrays.sort(words);
+            writer.println("Total words counted: " + counts.total());
+            for (String word : words) {
+                writer.println(word + ": " + counts.get(word));
+            }
+        }
+        assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(written), "Expected the same bytes");
+
+        // writes the same words given as Strings, in another order
+        String[] words = counts.words();
+        long[] wordCounts = new long[words.length];
+        for (int i = 0; i < words.length; i++) {
+            wordCounts[i] = counts.get(words[i]);
+        }
+        Path fromStrings = directory.resolve("strings.txt");
+        WordCountWriter.write(words, wordCounts, fromStrings, WordCountWriter.Compression.NONE);
+        assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(fromStrings), "Expected the same bytes");
+
+        // checks that a .gz file holds the same text
+        Path gzipped = directory.resolve("written.txt.gz");
+        WordCountWriter.write(counts, gzipped);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(gzipped))) {
+            assertArrayEquals(Files.readAllBytes(expected), in.readAllBytes(), "Expected the same text when gzipped");
+        }
+        assertTrue(Files.size(gzipped) < Files.size(written) / 2, "Expected the gzipped file to be smaller");
+    }
+
+    /**
+     * Tests that gzipped results load back through loadResults().
+     */
+    @Test
+    void testLoadGzippedResults(@TempDir Path directory) throws IOException {
+        System.out.println("Running WordCountWriter gzip loadResults() test");
+        BookWordCounter counter = new BookWordCounter();
+        counter.processLine("The cat sat on the mat");
+        Path results = directory.resolve("results.txt.gz");
+        counter.saveResults(results.toString());
+        BookWordCounter loaded = BookWordCounter.loadResults(results.toString());
+        assertEquals(counter.getAllWordCounts(), loaded.getAllWordCounts(), "Expected the same counts");
+        assertEquals(6, loaded.totalWordCount(), "Expected: 6");
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * WordHashing holds the hashing helpers shared by the open-addressing word
+ * tables: Vocabulary, StopWordFilter, HeavyHitters and NGramCounter. Words
+ * are looked up as slices of a char buffer, so they are hashed and compared
+ * there without making a String.
+ *
+ * @author Zak Sheikh
+ */
+final class WordHashing {
+
+    private WordHashing() {
+    }
+
+    /**
+     * Returns the hash code of the characters buffer[offset, offset + length),
+     * which is what String.hashCode() gives for the same word.
+     *
+     * @param buffer The buffer holding the word.
+     * @param offset The index of the first character of the word.
+     * @param length The number of characters in the word.
+     * @return The hash code.
+     */
+    static int hash(char[] buffer, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        return hash;
+    }
+
+    /**
+     * Mixes the high bits of a hash code into the low bits used for the slot
+     * index, since String hash codes of short words differ mostly in their
+     * low bits.
+     *
+     * @param hash A hash code.
+     * @return The mixed hash code.
+     */
+    static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Checks whether a word equals the characters buffer[offset, offset + length).
+     *
+     * @param word   The word.
+     * @param buffer The buffer holding the characters.
+     * @param offset The index of the first character.
+     * @param length The number of characters.
+     * @return true if they are the same characters.
+     */
+    static boolean matches(String word, char[] buffer, int offset, int length) {
+        if (word.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (word.charAt(i) != buffer[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
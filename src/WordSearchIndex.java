@@ -0,0 +1,409 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * WordSearchIndex finds the words of a vocabulary that match a search term,
+ * without scanning every word.
+ *
+ * The words are given in alphabetical order, so a prefix search is a binary
+ * search for the range of words starting with it. For substring searches,
+ * every word is listed under each 1, 2 and 3 letter sequence it contains;
+ * a search only checks the words under the rarest sequence of the term.
+ *
+ * A term matches a word if the word contains it, or a count if the count's
+ * digits contain it, like the table's old regex filter. A leading ^ or a
+ * trailing $ ties the term to the start or end. Any other character is
+ * matched literally.
+ *
+ * Searches for digits check each distinct count once, in count order. When
+ * a term only narrows the previous search (more letters typed), the
+ * previous matches are checked instead if there are fewer of them.
+ *
+ * @author Zak Sheikh
+ */
+public class WordSearchIndex {
+
+    /** Number of letter sequences of length 1, 2 and 3 */
+    private static final int KEYS = 26 + 26 * 26 + 26 * 26 * 26;
+
+    /** Every word, in alphabetical order */
+    private final String[] words;
+
+    /** The count of each word */
+    private final long[] counts;
+
+    /** Where the word list of each letter sequence starts in postings */
+    private final int[] postingStart;
+
+    /** Positions of the words containing each letter sequence, one list after another */
+    private final int[] postings;
+
+    /** Positions of the words ordered by count, so equal counts are next to each other */
+    private final int[] countOrder;
+
+    /** Whether every word is made of lowercase ASCII letters only */
+    private final boolean lettersOnly;
+
+    /**
+     * Builds the index of a vocabulary.
+     *
+     * @param words  Every word, in alphabetical order. Not copied.
+     * @param counts The count of each word. Not copied.
+     */
+    public WordSearchIndex(String[] words, long[] counts) {
+        this.words = words;
+        this.counts = counts;
+
+        // counts the words under each sequence, then fills the lists in word order
+        postingStart = new int[KEYS + 1];
+        int[] lastWord = new int[KEYS];
+        Arrays.fill(lastWord, -1);
+        int[] keys = new int[48];
+        boolean lettersOnly = true;
+        for (int i = 0; i < words.length; i++) {
+            if (keys.length < words[i].length() * 3) {
+                keys = new int[words[i].length() * 3];
+            }
+            int n = keys(words[i], keys);
+            // a word of only letters has a sequence of each length ending at each letter
+            int length = words[i].length();
+            lettersOnly &= n == length + Math.max(0, length - 1) + Math.max(0, length - 2);
+            for (int k = 0; k < n; k++) {
+                if (lastWord[keys[k]] != i) {
+                    lastWord[keys[k]] = i;
+                    postingStart[keys[k] + 1]++;
+                }
+            }
+        }
+        for (int key = 0; key < KEYS; key++) {
+            postingStart[key + 1] += postingStart[key];
+        }
+        postings = new int[postingStart[KEYS]];
+        int[] next = Arrays.copyOf(postingStart, KEYS);
+        Arrays.fill(lastWord, -1);
+        for (int i = 0; i < words.length; i++) {
+            int n = keys(words[i], keys);
+            for (int k = 0; k < n; k++) {
+                if (lastWord[keys[k]] != i) {
+                    lastWord[keys[k]] = i;
+                    postings[next[keys[k]]++] = i;
+                }
+            }
+        }
+        this.lettersOnly = lettersOnly;
+
+        countOrder = orderByCount(counts, false);
+    }
+
+    /**
+     * Returns positions ordered by their counts, with equal counts in
+     * position order.
+     *
+     * When every count fits in 31 bits, as it does for all but the largest
+     * corpora, each count is packed above its position so one primitive
+     * sort does the work. Otherwise the positions are sorted as objects.
+     *
+     * @param counts    The count at each position.
+     * @param highFirst true for the highest count first, false for the lowest.
+     * @return The positions, in order.
+     */
+    static int[] orderByCount(long[] counts, boolean highFirst) {
+        int[] order = new int[counts.length];
+        long max = 0;
+        for (long count : counts) {
+            max = Math.max(max, Math.abs(count));
+        }
+        if (max <= Integer.MAX_VALUE) {
+            long[] packed = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                packed[i] = ((highFirst ? -counts[i] : counts[i]) << 32) | i;
+            }
+            Arrays.sort(packed);
+            for (int i = 0; i < packed.length; i++) {
+                order[i] = (int) packed[i];
+            }
+            return order;
+        }
+        Integer[] positions = new Integer[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            positions[i] = i;
+        }
+        Arrays.sort(positions, (a, b) -> {
+            int c = highFirst ? Long.compare(counts[b], counts[a]) : Long.compare(counts[a], counts[b]);
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+        for (int i = 0; i < counts.length; i++) {
+            order[i] = positions[i];
+        }
+        return order;
+    }
+
+    /**
+     * Finds the words matching a search term.
+     *
+     * @param term The search term, already trimmed and lowercased. Must not
+     *             be empty.
+     * @return The positions of the matching words.
+     */
+    public BitSet search(String term) {
+        return search(term, null, null);
+    }
+
+    /**
+     * Finds the words matching a search term, reusing the result of the
+     * previous search if the new term can only match fewer words.
+     *
+     * @param term            The search term, already trimmed and
+     *                        lowercased. Must not be empty.
+     * @param previousTerm    The previous search term, or null.
+     * @param previousMatches The result of the previous search, or null.
+     * @return The positions of the matching words.
+     */
+    public BitSet search(String term, String previousTerm, BitSet previousMatches) {
+        Query query = new Query(term);
+        BitSet matches = new BitSet(words.length);
+        if (query.text.isEmpty()) {
+            // only anchors: every row matches, like the regex did
+            matches.set(0, words.length);
+            return matches;
+        }
+        boolean narrowing = previousMatches != null && previousTerm != null
+            && !previousTerm.isEmpty() && query.narrows(new Query(previousTerm));
+
+        if (query.isLetters() && query.prefix) {
+            // checks the range of words starting with the term
+            int from = lowerBound(query.text);
+            int to = lowerBound(query.text + Character.MAX_VALUE);
+            for (int i = from; i < to; i++) {
+                if (query.matchesWord(words[i])) {
+                    matches.set(i);
+                }
+            }
+        } else if (query.isLetters()) {
+            // checks the words under the rarest letter sequence of the term
+            int rarest = rarestKey(query.text);
+            int size = postingStart[rarest + 1] - postingStart[rarest];
+            if (query.text.length() <= 3 && !query.suffix) {
+                // the list of the term itself holds exactly the matching words
+                for (int p = postingStart[rarest]; p < postingStart[rarest + 1]; p++) {
+                    matches.set(postings[p]);
+                }
+            } else if (narrowing && previousMatches.cardinality() < size) {
+                checkAll(query, previousMatches, matches);
+            } else {
+                for (int p = postingStart[rarest]; p < postingStart[rarest + 1]; p++) {
+                    int i = postings[p];
+                    if (query.matchesWord(words[i])) {
+                        matches.set(i);
+                    }
+                }
+            }
+        } else if (query.digits && lettersOnly) {
+            // only counts can match, so each distinct count is checked once
+            for (int start = 0, end; start < countOrder.length; start = end) {
+                long count = counts[countOrder[start]];
+                end = start + 1;
+                while (end < countOrder.length && counts[countOrder[end]] == count) {
+                    end++;
+                }
+                if (query.matchesCount(count)) {
+                    for (int i = start; i < end; i++) {
+                        matches.set(countOrder[i]);
+                    }
+                }
+            }
+        } else if (narrowing) {
+            checkAll(query, previousMatches, matches);
+        } else {
+            // digits or other characters: nothing to look up, so every word is checked
+            for (int i = 0; i < words.length; i++) {
+                if (query.matches(words[i], counts[i])) {
+                    matches.set(i);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Checks each candidate position against the query.
+     */
+    private void checkAll(Query query, BitSet candidates, BitSet matches) {
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (query.matches(words[i], counts[i])) {
+                matches.set(i);
+            }
+        }
+    }
+
+    /**
+     * Returns the letter sequence of the term listing the fewest words.
+     */
+    private int rarestKey(String text) {
+        int n = Math.min(3, text.length());
+        int rarest = key(text, 0, n);
+        for (int start = 1; start + n <= text.length(); start++) {
+            int key = key(text, start, start + n);
+            if (postingStart[key + 1] - postingStart[key] < postingStart[rarest + 1] - postingStart[rarest]) {
+                rarest = key;
+            }
+        }
+        return rarest;
+    }
+
+    /**
+     * Returns the position of the first word not less than a key.
+     */
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = words.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (words[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Writes the key of every 1, 2 and 3 letter sequence of a word to keys,
+     * skipping sequences with characters other than lowercase ASCII letters.
+     *
+     * @return The number of keys written.
+     */
+    private static int keys(String word, int[] keys) {
+        int n = 0;
+        // the keys of the one and two letter sequences ending at the previous character
+        int previous1 = -1;
+        int previous2 = -1;
+        for (int i = 0; i < word.length(); i++) {
+            int letter = word.charAt(i) - 'a';
+            if (letter < 0 || letter >= 26) {
+                previous1 = -1;
+                previous2 = -1;
+                continue;
+            }
+            keys[n++] = letter;
+            if (previous2 >= 0) {
+                keys[n++] = 26 + 26 * 26 + previous2 * 26 + letter;
+            }
+            if (previous1 >= 0) {
+                previous2 = previous1 * 26 + letter;
+                keys[n++] = 26 + previous2;
+            } else {
+                previous2 = -1;
+            }
+            previous1 = letter;
+        }
+        return n;
+    }
+
+    /**
+     * Returns the key of the letters text[start, end), or -1 if one of them
+     * is not a lowercase ASCII letter.
+     */
+    private static int key(String text, int start, int end) {
+        int key = 0;
+        for (int i = start; i < end; i++) {
+            int letter = text.charAt(i) - 'a';
+            if (letter < 0 || letter >= 26) {
+                return -1;
+            }
+            key = key * 26 + letter;
+        }
+        // offsets the 2 and 3 letter keys past the shorter ones
+        switch (end - start) {
+            case 1: return key;
+            case 2: return 26 + key;
+            default: return 26 + 26 * 26 + key;
+        }
+    }
+
+    /**
+     * A search term split into its text and anchors.
+     */
+    private static final class Query {
+        final String text;
+        final boolean prefix;
+        final boolean suffix;
+        final boolean digits;
+        final long value;
+        final long modulus;
+
+        Query(String term) {
+            prefix = term.startsWith("^");
+            String text = prefix ? term.substring(1) : term;
+            suffix = text.endsWith("$");
+            this.text = suffix ? text.substring(0, text.length() - 1) : text;
+            digits = !this.text.isEmpty() && this.text.length() <= 18
+                && this.text.chars().allMatch(c -> c >= '0' && c <= '9');
+            value = digits ? Long.parseLong(this.text) : 0;
+            long modulus = 1;
+            for (int i = 0; digits && i < this.text.length(); i++) {
+                modulus *= 10;
+            }
+            this.modulus = modulus;
+        }
+
+        /**
+         * Checks whether every match of this query also matched the other.
+         */
+        boolean narrows(Query other) {
+            if ((other.prefix && !prefix) || (other.suffix && !suffix)) {
+                return false;
+            }
+            if (other.prefix && other.suffix) {
+                return text.equals(other.text);
+            }
+            if (other.prefix) {
+                return text.startsWith(other.text);
+            }
+            if (other.suffix) {
+                return text.endsWith(other.text);
+            }
+            return text.contains(other.text);
+        }
+
+        boolean isLetters() {
+            return text.chars().allMatch(c -> c >= 'a' && c <= 'z');
+        }
+
+        boolean matches(String word, long count) {
+            // a count's digits can only contain a term made of digits
+            return matchesWord(word) || (digits && matchesCount(count));
+        }
+
+        /**
+         * Checks the decimal digits of a count against the term, without
+         * turning the count into a string.
+         */
+        boolean matchesCount(long count) {
+            int length = 1;
+            for (long rest = count / 10; rest > 0; rest /= 10) {
+                length++;
+            }
+            // tries each place the term could start in the digits, counting from the right
+            for (long shift = 0, scale = 1; shift + text.length() <= length; shift++, scale *= 10) {
+                if ((!prefix || shift + text.length() == length) && (!suffix || shift == 0)
+                        && (count / scale) % modulus == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean matchesWord(String word) {
+            if (prefix && suffix) {
+                return word.equals(text);
+            } else if (prefix) {
+                return word.startsWith(text);
+            } else if (suffix) {
+                return word.endsWith(text);
+            }
+            return word.contains(text);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Unit tests of the WordSearchIndex class, to be run with JUnit 5.
+ *
+ * @author Zak Sheikh
+ */
+public class WordSearchIndexTest {
+
+    @BeforeAll
+    public static void setUpClass() {
+        System.out.println("Running WordSearchIndexTest 📚");
+    }
+
+    /**
+     * Tests that searches give the same matches as checking every word and
+     * count, including when a search narrows the previous one.
+     */
+    @Test
+    void testMatchesLikeScanning() {
+        System.out.println("Running WordSearchIndex search() test");
+        // builds a random vocabulary from a few letters, so sequences repeat
+        Random random = new Random(3);
+        TreeSet<String> vocabulary = new TreeSet<>();
+        while (vocabulary.size() < 5_000) {
+            StringBuilder word = new StringBuilder();
+            int length = 2 + random.nextInt(8);
+            for (int i = 0; i < length; i++) {
+                word.append("aeinrst".charAt(random.nextInt(7)));
+            }
+            vocabulary.add(word.toString());
+        }
+        String[] words = vocabulary.toArray(new String[0]);
+        long[] counts = new long[words.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 1 + random.nextInt(random.nextBoolean() ? 20 : 5_000);
+        }
+        WordSearchIndex index = new WordSearchIndex(words, counts);
+
+        String[] terms = {"a", "e", "ea", "ear", "eart", "earth", "^s", "^st", "^sta", "t$", "st$", "^tea$",
+            "12", "^1", "0$", "^20$", "105", "x", "a1", "^", "$", ".*"};
+        String previous = null;
+        BitSet previousMatches = null;
+        for (String term : terms) {
+            BitSet expected = scan(words, counts, term);
+            assertEquals(expected, index.search(term), "Expected the same matches for '" + term + "'");
+            // searches again, narrowing from the previous term where possible
+            BitSet matches = index.search(term, previous, previousMatches);
+            assertEquals(expected, matches, "Expected the same matches for '" + term + "' after '" + previous + "'");
+            previous = term;
+            previousMatches = matches;
+        }
+    }
+
+    /**
+     * Tests that words with other characters are still found, by digits too.
+     */
+    @Test
+    void testWordsWithOtherCharacters() {
+        System.out.println("Running WordSearchIndex other characters test");
+        String[] words = {"cafe", "caf\u00e9", "r2d2", "zak's"};
+        long[] counts = {12, 3, 1, 2};
+        WordSearchIndex index = new WordSearchIndex(words, counts);
+        for (String term : new String[] {"caf", "af\u00e9", "2", "^r2", "'s$", "s"}) {
+            assertEquals(scan(words, counts, term), index.search(term), "Expected the same matches for '" + term + "'");
+        }
+    }
+
+    /**
+     * Checks every word and count the slow way.
+     */
+    private static BitSet scan(String[] words, long[] counts, String term) {
+        boolean prefix = term.startsWith("^");
+        boolean suffix = term.length() > (prefix ? 1 : 0) && term.endsWith("$");
+        String text = term.substring(prefix ? 1 : 0, term.length() - (suffix ? 1 : 0));
+        BitSet matches = new BitSet();
+        for (int i = 0; i < words.length; i++) {
+            for (String cell : Arrays.asList(words[i], Long.toString(counts[i]))) {
+                boolean match = prefix && suffix ? cell.equals(text)
+                    : prefix ? cell.startsWith(text)
+                    : suffix ? cell.endsWith(text)
+                    : cell.contains(text);
+                if (match) {
+                    matches.set(i);
+                }
+            }
+        }
+        return matches;
+    }
+}
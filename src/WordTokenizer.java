@@ -0,0 +1,124 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * WordTokenizer is the default Tokenizer used by BookWordCounter.
+ *
+ * It makes a single pass over the input, folding case as it goes. A word is a
+ * run of the letters a-z after lowercasing; every other character, including
+ * the apostrophe, ends the word. Words of a single letter are dropped, which
+ * also covers the "'s" / "'t" contraction endings that the old regex rules
+ * excluded.
+ *
+ * Lowercasing uses Character.toLowerCase, so characters such as the Kelvin
+ * sign still fold to their ASCII letter, just like String.toLowerCase did,
+ * but without depending on the default locale. The dotted capital I is the
+ * one character String.toLowerCase expands ("i" plus a combining dot), so it
+ * ends the word right after its "i".
+ *
+ * @author Zak Sheikh
+ */
+public class WordTokenizer implements Tokenizer {
+
+    /** Words shorter than this are not counted */
+    private static final int MIN_WORD_LENGTH = 2;
+
+    /** Lowercases to "i" followed by a combining dot, which ends the word */
+    private static final char DOTTED_CAPITAL_I = '\u0130';
+
+    /** Lowercase letter for each ASCII character, or 0 if it is not a letter */
+    private static final char[] ASCII_FOLD = new char[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            ASCII_FOLD[c] = c;
+            ASCII_FOLD[Character.toUpperCase(c)] = c;
+        }
+    }
+
+    /** Holds the word that is currently being read */
+    private char[] word = new char[32];
+
+    /** Number of characters of the current word read so far */
+    private int length;
+
+    @Override
+    public void tokenize(CharSequence text, int start, int end, TokenSink sink) {
+        for (int i = start; i < end; i++) {
+            accept(text.charAt(i), sink);
+        }
+    }
+
+    @Override
+    public void tokenize(char[] text, int offset, int length, TokenSink sink) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            accept(text[i], sink);
+        }
+    }
+
+    @Override
+    public int tokenizeAscii(ByteBuffer bytes, int start, int end, TokenSink sink) {
+        for (int i = start; i < end; i++) {
+            byte b = bytes.get(i);
+            if (b < 0) {
+                return i;
+            }
+            accept((char) b, sink);
+        }
+        return end;
+    }
+
+    @Override
+    public void finish(TokenSink sink) {
+        endWord(sink);
+    }
+
+    /**
+     * Adds one character to the current word, or ends the word if the
+     * character is not a letter.
+     *
+     * @param c    The character to add.
+     * @param sink Receives the word if it ends here.
+     */
+    private void accept(char c, TokenSink sink) {
+        char folded = fold(c);
+        if (folded != 0) {
+            if (length == word.length) {
+                word = Arrays.copyOf(word, length * 2);
+            }
+            word[length++] = folded;
+            if (c == DOTTED_CAPITAL_I) {
+                endWord(sink);
+            }
+        } else if (length > 0) {
+            endWord(sink);
+        }
+    }
+
+    /**
+     * Emits the current word if it is long enough and starts a new one.
+     *
+     * @param sink Receives the word.
+     */
+    private void endWord(TokenSink sink) {
+        if (length >= MIN_WORD_LENGTH) {
+            sink.accept(word, 0, length);
+        }
+        length = 0;
+    }
+
+    /**
+     * Lowercases a character.
+     *
+     * @param c The character to fold.
+     * @return The lowercase letter a-z, or 0 if c is not a word character.
+     */
+    static char fold(char c) {
+        if (c < 128) {
+            return ASCII_FOLD[c];
+        }
+        char lower = Character.toLowerCase(c);
+        return lower >= 'a' && lower <= 'z' ? lower : 0;
+    }
+}